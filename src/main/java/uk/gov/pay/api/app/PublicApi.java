@@ -10,7 +10,6 @@ import com.google.inject.Injector;
 import io.dropwizard.Application;
 import io.dropwizard.auth.AuthDynamicFeature;
 import io.dropwizard.auth.AuthValueFactoryProvider;
-import io.dropwizard.auth.CachingAuthenticator;
 import io.dropwizard.auth.oauth.OAuthCredentialAuthFilter;
 import io.dropwizard.configuration.EnvironmentVariableSubstitutor;
 import io.dropwizard.configuration.SubstitutingSourceProvider;
@@ -18,17 +17,31 @@ import io.dropwizard.jersey.setup.JerseyEnvironment;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 import org.glassfish.jersey.CommonProperties;
+import redis.clients.jedis.JedisPool;
+import uk.gov.pay.api.app.config.AuthenticationCacheConfig;
+import uk.gov.pay.api.app.config.AuthenticationCacheSnapshotConfig;
 import uk.gov.pay.api.app.config.PublicApiConfig;
 import uk.gov.pay.api.app.config.PublicApiModule;
+import uk.gov.pay.api.app.config.RedisAuthenticationCacheConfig;
 import uk.gov.pay.api.auth.Account;
 import uk.gov.pay.api.auth.AccountAuthenticator;
+import uk.gov.pay.api.auth.AccountIdCache;
+import uk.gov.pay.api.auth.AsyncAccountAuthenticator;
+import uk.gov.pay.api.auth.AuthenticationCacheSnapshot;
+import uk.gov.pay.api.auth.PurgeRejectedTokensTask;
+import uk.gov.pay.api.auth.RedisAuthenticationCache;
+import uk.gov.pay.api.auth.RefreshingCachingAuthenticator;
 import uk.gov.pay.api.exception.mapper.BadRefundsRequestExceptionMapper;
 import uk.gov.pay.api.exception.mapper.BadRequestExceptionMapper;
+import uk.gov.pay.api.exception.mapper.BulkheadFullExceptionMapper;
 import uk.gov.pay.api.exception.mapper.CancelChargeExceptionMapper;
 import uk.gov.pay.api.exception.mapper.CaptureChargeExceptionMapper;
+import uk.gov.pay.api.exception.mapper.CircuitBreakerOpenExceptionMapper;
+import uk.gov.pay.api.exception.mapper.CollapsedRequestExceptionMapper;
 import uk.gov.pay.api.exception.mapper.CreateAgreementExceptionMapper;
 import uk.gov.pay.api.exception.mapper.CreateChargeExceptionMapper;
 import uk.gov.pay.api.exception.mapper.CreateRefundExceptionMapper;
+import uk.gov.pay.api.exception.mapper.DeadlineExceededExceptionMapper;
 import uk.gov.pay.api.exception.mapper.GetAgreementExceptionMapper;
 import uk.gov.pay.api.exception.mapper.GetChargeExceptionMapper;
 import uk.gov.pay.api.exception.mapper.GetEventsExceptionMapper;
@@ -39,9 +52,12 @@ import uk.gov.pay.api.exception.mapper.RefundsValidationExceptionMapper;
 import uk.gov.pay.api.exception.mapper.SearchChargesExceptionMapper;
 import uk.gov.pay.api.exception.mapper.SearchRefundsExceptionMapper;
 import uk.gov.pay.api.filter.AuthorizationValidationFilter;
+import uk.gov.pay.api.filter.DeadlineFilter;
+import uk.gov.pay.api.filter.LoadSheddingFilter;
 import uk.gov.pay.api.filter.LoggingFilter;
 import uk.gov.pay.api.filter.RateLimiterFilter;
 import uk.gov.pay.api.healthcheck.Ping;
+import uk.gov.pay.api.resilience.CircuitBreaker;
 import uk.gov.pay.api.resources.AgreementsResource;
 import uk.gov.pay.api.resources.DirectDebitEventsResource;
 import uk.gov.pay.api.resources.HealthCheckResource;
@@ -51,6 +67,10 @@ import uk.gov.pay.api.resources.RequestDeniedResource;
 import uk.gov.pay.api.resources.SearchRefundsResource;
 
 import javax.net.ssl.HttpsURLConnection;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static java.util.EnumSet.of;
@@ -93,6 +113,20 @@ public class PublicApi extends Application<PublicApiConfig> {
         environment.jersey().register(injector.getInstance(AgreementsResource.class));
         environment.jersey().register(injector.getInstance(SearchRefundsResource.class));
 
+        if (configuration.getLoadSheddingConfig().isEnabled()) {
+            // first, so requests that are turned away cost as little as possible
+            environment.servlets().addFilter("LoadSheddingFilter", injector.getInstance(LoadSheddingFilter.class))
+                    .addMappingForUrlPatterns(of(REQUEST), true, "/v1/*");
+        }
+
+        if (configuration.getDeadlinesConfig().isEnabled()) {
+            // before the remaining filters, so the deadline covers any time spent in them
+            environment.servlets().addFilter("DeadlineFilter",
+                    new DeadlineFilter(configuration.getDeadlinesConfig().getRequestTimeout().toMilliseconds(),
+                            configuration.getDeadlinesConfig().getMinCallerTimeout().toMilliseconds()))
+                    .addMappingForUrlPatterns(of(REQUEST), true, "/v1/*");
+        }
+
         environment.servlets().addFilter("AuthorizationValidationFilter", injector.getInstance(AuthorizationValidationFilter.class))
                 .addMappingForUrlPatterns(of(REQUEST), true, "/v1/*");
 
@@ -108,10 +142,10 @@ public class PublicApi extends Application<PublicApiConfig> {
         */
         environment.jersey().property(CommonProperties.FEATURE_AUTO_DISCOVERY_DISABLE, Boolean.TRUE);
 
-        CachingAuthenticator<String, Account> cachingAuthenticator = new CachingAuthenticator(
-                environment.metrics(),
-                injector.getInstance(AccountAuthenticator.class),
-                configuration.getAuthenticationCachePolicy());
+        RefreshingCachingAuthenticator cachingAuthenticator = buildCachingAuthenticator(
+                configuration.getAuthenticationCacheConfig(), environment, injector);
+        environment.admin().addTask(new PurgeRejectedTokensTask(cachingAuthenticator));
+        manageCacheSnapshot(configuration.getAuthenticationCacheConfig().getSnapshot(), environment, cachingAuthenticator);
 
         environment.jersey().register(new AuthDynamicFeature(
                 new OAuthCredentialAuthFilter.Builder<Account>()
@@ -137,6 +171,61 @@ public class PublicApi extends Application<PublicApiConfig> {
         HttpsURLConnection.getDefaultSSLSocketFactory();
     }
 
+    /**
+     * Refreshes are queued at most once per cached key, so the refresh queue is bounded by the cache size. With the
+     * shared Redis cache enabled, local misses and refreshes are served from Redis before going to publicauth.
+     */
+    private RefreshingCachingAuthenticator buildCachingAuthenticator(AuthenticationCacheConfig cacheConfig,
+                                                                     Environment environment,
+                                                                     Injector injector) {
+        ExecutorService refreshExecutor = environment.lifecycle().executorService("authentication-cache-refresh-%d")
+                .minThreads(cacheConfig.getRefreshThreads())
+                .maxThreads(cacheConfig.getRefreshThreads())
+                .workQueue(new LinkedBlockingQueue<>())
+                .build();
+
+        AsyncAccountAuthenticator authenticator = injector.getInstance(AccountAuthenticator.class);
+        RedisAuthenticationCacheConfig redisConfig = cacheConfig.getRedis();
+        if (redisConfig.isEnabled()) {
+            authenticator = new RedisAuthenticationCache(authenticator,
+                    injector.getInstance(JedisPool.class),
+                    redisConfig.getTtl().toMilliseconds(),
+                    new CircuitBreaker("authentication-cache.redis.circuit-breaker",
+                            redisConfig.getCircuitBreaker().getFailureThreshold(),
+                            redisConfig.getCircuitBreaker().getOpenDuration().toMilliseconds(),
+                            environment.metrics()),
+                    injector.getInstance(AccountIdCache.class),
+                    environment.metrics());
+        }
+
+        return new RefreshingCachingAuthenticator(authenticator,
+                cacheConfig.getMaximumSize(),
+                cacheConfig.getExpireAfterWrite().toMilliseconds(),
+                cacheConfig.getRefreshAfterWrite().toMilliseconds(),
+                cacheConfig.isServeStaleOnError() ? cacheConfig.getStaleGracePeriod().toMilliseconds() : 0,
+                cacheConfig.getRejectedKeyTtl().toMilliseconds(),
+                refreshExecutor,
+                environment.metrics());
+    }
+
+    /**
+     * The snapshot is loaded when managed objects start, which is before Jetty starts accepting requests.
+     */
+    private void manageCacheSnapshot(AuthenticationCacheSnapshotConfig snapshotConfig, Environment environment,
+                                     RefreshingCachingAuthenticator cachingAuthenticator) {
+        if (!snapshotConfig.isEnabled()) {
+            return;
+        }
+        ScheduledExecutorService scheduler = environment.lifecycle()
+                .scheduledExecutorService("authentication-cache-snapshot-%d")
+                .build();
+        environment.lifecycle().manage(new AuthenticationCacheSnapshot(cachingAuthenticator,
+                Paths.get(snapshotConfig.getFile()),
+                snapshotConfig.getInterval().toMilliseconds(),
+                snapshotConfig.getMaxAge().toMilliseconds(),
+                scheduler));
+    }
+
     private void attachExceptionMappersTo(JerseyEnvironment jersey) {
         jersey.register(CreateChargeExceptionMapper.class);
         jersey.register(GetChargeExceptionMapper.class);
@@ -154,6 +243,10 @@ public class PublicApi extends Application<PublicApiConfig> {
         jersey.register(CreateAgreementExceptionMapper.class);
         jersey.register(GetAgreementExceptionMapper.class);
         jersey.register(CaptureChargeExceptionMapper.class);
+        jersey.register(BulkheadFullExceptionMapper.class);
+        jersey.register(CircuitBreakerOpenExceptionMapper.class);
+        jersey.register(DeadlineExceededExceptionMapper.class);
+        jersey.register(CollapsedRequestExceptionMapper.class);
     }
 
     private void initialiseMetrics(PublicApiConfig configuration, Environment environment) {
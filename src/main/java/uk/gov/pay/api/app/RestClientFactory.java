@@ -1,12 +1,31 @@
 package uk.gov.pay.api.app;
 
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.lifecycle.setup.LifecycleEnvironment;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.glassfish.jersey.SslConfigurator;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.HttpUrlConnectorProvider;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
 import uk.gov.pay.api.app.config.RestClientConfig;
+import uk.gov.pay.api.filter.RestClientDeadlineFilter;
 import uk.gov.pay.api.filter.RestClientLoggingFilter;
 
 import javax.net.ssl.SSLContext;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
 
 import static uk.gov.pay.api.utils.TrustStoreLoader.getTrustStore;
 import static uk.gov.pay.api.utils.TrustStoreLoader.getTrustStorePassword;
@@ -14,23 +33,130 @@ import static uk.gov.pay.api.utils.TrustStoreLoader.getTrustStorePassword;
 public class RestClientFactory {
     public static final String TLSV1_2 = "TLSv1.2";
 
+    /**
+     * Builds a client whose connection pool, if it has one, is never shut down, e.g. for tests.
+     */
     public static Client buildClient(RestClientConfig clientConfig) {
+        return buildClient(clientConfig, UnaryOperator.identity(), new LifecycleEnvironment());
+    }
+
+    /**
+     * @param connectorDecorator wraps the connector requests are sent with, e.g. to add bulkheads or circuit breakers
+     * @param lifecycle          evicts idle pooled connections while the application runs, and closes them when it stops
+     */
+    public static Client buildClient(RestClientConfig clientConfig, UnaryOperator<ConnectorProvider> connectorDecorator,
+                                     LifecycleEnvironment lifecycle) {
         Client client;
-        if (clientConfig.isDisabledSecureConnection()) {
-            client = ClientBuilder.newBuilder().build();
-        } else {
-            SslConfigurator sslConfig = SslConfigurator.newInstance()
-                    .trustStore(getTrustStore())
-                    .trustStorePassword(getTrustStorePassword())
-                    .securityProtocol(TLSV1_2);
+        SSLContext sslContext = clientConfig.isDisabledSecureConnection() ? null : buildSslContext();
 
-            SSLContext sslContext = sslConfig.createSSLContext();
-            client = ClientBuilder.newBuilder().sslContext(sslContext).build();
+        if (clientConfig.isPooledConnectionsEnabled()) {
+            client = buildPooledClient(clientConfig, sslContext, connectorDecorator, lifecycle);
+        } else {
+            ClientConfig jerseyConfig = new ClientConfig()
+                    .connectorProvider(connectorDecorator.apply(new HttpUrlConnectorProvider()));
+            ClientBuilder clientBuilder = ClientBuilder.newBuilder().withConfig(jerseyConfig);
+            if (sslContext != null) {
+                clientBuilder.sslContext(sslContext);
+            }
+            client = clientBuilder.build();
+        }
+        if (clientConfig.getAsyncThreads() > 0) {
+            // bounds the threads async() requests run on, which would otherwise grow with the number in flight
+            client.property(ClientProperties.ASYNC_THREADPOOL_SIZE, clientConfig.getAsyncThreads());
         }
         client.register(RestClientLoggingFilter.class);
+        client.register(RestClientDeadlineFilter.class);
         return client;
     }
 
+    private static SSLContext buildSslContext() {
+        SslConfigurator sslConfig = SslConfigurator.newInstance()
+                .trustStore(getTrustStore())
+                .trustStorePassword(getTrustStorePassword())
+                .securityProtocol(TLSV1_2);
+
+        return sslConfig.createSSLContext();
+    }
+
+    /**
+     * Builds a client backed by a pooled Apache HttpClient connection manager, so connections (and the TLS
+     * sessions negotiated on them) to connector and publicauth are kept alive and reused across requests
+     * instead of being set up from scratch on every call.
+     */
+    private static Client buildPooledClient(RestClientConfig clientConfig, SSLContext sslContext,
+                                            UnaryOperator<ConnectorProvider> connectorDecorator,
+                                            LifecycleEnvironment lifecycle) {
+        PoolingHttpClientConnectionManager connectionManager = buildConnectionManager(clientConfig, sslContext);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) clientConfig.getConnectTimeout().toMilliseconds())
+                .setSocketTimeout((int) clientConfig.getReadTimeout().toMilliseconds())
+                .setConnectionRequestTimeout((int) clientConfig.getConnectionRequestTimeout().toMilliseconds())
+                .build();
+
+        ClientConfig jerseyConfig = new ClientConfig()
+                .connectorProvider(connectorDecorator.apply(new ApacheConnectorProvider()))
+                .property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager)
+                .property(ApacheClientProperties.REQUEST_CONFIG, requestConfig)
+                .property(ClientProperties.CONNECT_TIMEOUT, (int) clientConfig.getConnectTimeout().toMilliseconds())
+                .property(ClientProperties.READ_TIMEOUT, (int) clientConfig.getReadTimeout().toMilliseconds());
+
+        IdleConnectionEvictor idleConnectionEvictor = new IdleConnectionEvictor(connectionManager,
+                clientConfig.getIdleConnectionTimeout().toMilliseconds(), TimeUnit.MILLISECONDS,
+                clientConfig.getIdleConnectionTimeout().toMilliseconds(), TimeUnit.MILLISECONDS);
+        lifecycle.manage(new ManagedConnectionPool(connectionManager, idleConnectionEvictor));
+
+        ClientBuilder clientBuilder = ClientBuilder.newBuilder().withConfig(jerseyConfig);
+        if (sslContext != null) {
+            clientBuilder.sslContext(sslContext);
+        }
+        return clientBuilder.build();
+    }
+
+    private static PoolingHttpClientConnectionManager buildConnectionManager(RestClientConfig clientConfig, SSLContext sslContext) {
+        RegistryBuilder<ConnectionSocketFactory> registryBuilder = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory());
+
+        if (sslContext != null) {
+            sslContext.getClientSessionContext().setSessionTimeout((int) clientConfig.getTlsSessionTimeout().toSeconds());
+            registryBuilder.register("https", new SSLConnectionSocketFactory(sslContext));
+        } else {
+            registryBuilder.register("https", SSLConnectionSocketFactory.getSocketFactory());
+        }
+        Registry<ConnectionSocketFactory> registry = registryBuilder.build();
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(registry,
+                null, null, null,
+                clientConfig.getConnectionTimeToLive().toMilliseconds(), TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(clientConfig.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(clientConfig.getMaxConnectionsPerRoute());
+        connectionManager.setValidateAfterInactivity((int) clientConfig.getValidateAfterInactivity().toMilliseconds());
+        return connectionManager;
+    }
+
     private RestClientFactory() {
     }
+
+    private static class ManagedConnectionPool implements Managed {
+
+        private final PoolingHttpClientConnectionManager connectionManager;
+        private final IdleConnectionEvictor idleConnectionEvictor;
+
+        ManagedConnectionPool(PoolingHttpClientConnectionManager connectionManager,
+                              IdleConnectionEvictor idleConnectionEvictor) {
+            this.connectionManager = connectionManager;
+            this.idleConnectionEvictor = idleConnectionEvictor;
+        }
+
+        @Override
+        public void start() {
+            idleConnectionEvictor.start();
+        }
+
+        @Override
+        public void stop() {
+            idleConnectionEvictor.shutdown();
+            connectionManager.close();
+        }
+    }
 }
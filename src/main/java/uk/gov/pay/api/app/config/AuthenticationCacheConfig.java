@@ -0,0 +1,83 @@
+package uk.gov.pay.api.app.config;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.dropwizard.Configuration;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.ValidationMethod;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class AuthenticationCacheConfig extends Configuration {
+
+    @Min(1)
+    private long maximumSize = 10000;
+
+    @NotNull
+    private Duration expireAfterWrite = Duration.minutes(2);
+
+    @NotNull
+    private Duration refreshAfterWrite = Duration.minutes(1);
+
+    @Min(1)
+    private int refreshThreads = 4;
+
+    private boolean serveStaleOnError = false;
+
+    @NotNull
+    private Duration staleGracePeriod = Duration.minutes(10);
+
+    @NotNull
+    private Duration rejectedKeyTtl = Duration.seconds(10);
+
+    @Valid
+    @NotNull
+    private RedisAuthenticationCacheConfig redis = new RedisAuthenticationCacheConfig();
+
+    @Valid
+    @NotNull
+    private AuthenticationCacheSnapshotConfig snapshot = new AuthenticationCacheSnapshotConfig();
+
+    @JsonIgnore
+    @ValidationMethod(message = "redis.ttl must not be longer than refreshAfterWrite, or revoked keys outlive refreshes")
+    public boolean isRedisTtlWithinRefreshAfterWrite() {
+        return !redis.isEnabled() || redis.getTtl().toMilliseconds() <= refreshAfterWrite.toMilliseconds();
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public Duration getExpireAfterWrite() {
+        return expireAfterWrite;
+    }
+
+    public Duration getRefreshAfterWrite() {
+        return refreshAfterWrite;
+    }
+
+    public int getRefreshThreads() {
+        return refreshThreads;
+    }
+
+    public boolean isServeStaleOnError() {
+        return serveStaleOnError;
+    }
+
+    public Duration getStaleGracePeriod() {
+        return staleGracePeriod;
+    }
+
+    public Duration getRejectedKeyTtl() {
+        return rejectedKeyTtl;
+    }
+
+    public RedisAuthenticationCacheConfig getRedis() {
+        return redis;
+    }
+
+    public AuthenticationCacheSnapshotConfig getSnapshot() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,36 @@
+package uk.gov.pay.api.app.config;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.NotNull;
+
+public class AuthenticationCacheSnapshotConfig extends Configuration {
+
+    private boolean enabled = false;
+
+    @NotNull
+    private String file = "/tmp/publicapi-authentication-cache.snapshot";
+
+    @NotNull
+    private Duration interval = Duration.minutes(1);
+
+    @NotNull
+    private Duration maxAge = Duration.minutes(10);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+}
@@ -0,0 +1,32 @@
+package uk.gov.pay.api.app.config;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class BulkheadConfig extends Configuration {
+
+    @Min(1)
+    private int maxConcurrentCalls;
+
+    @NotNull
+    private Duration maxWait = Duration.milliseconds(0);
+
+    public BulkheadConfig() {
+        this(100);
+    }
+
+    BulkheadConfig(int maxConcurrentCalls) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+}
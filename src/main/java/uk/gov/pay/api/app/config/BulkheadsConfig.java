@@ -0,0 +1,39 @@
+package uk.gov.pay.api.app.config;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+public class BulkheadsConfig extends Configuration {
+
+    private boolean enabled = false;
+
+    @Valid
+    @NotNull
+    private BulkheadConfig connector = new BulkheadConfig(100);
+
+    @Valid
+    @NotNull
+    private BulkheadConfig directDebitConnector = new BulkheadConfig(25);
+
+    @Valid
+    @NotNull
+    private BulkheadConfig publicAuth = new BulkheadConfig(50);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public BulkheadConfig getConnector() {
+        return connector;
+    }
+
+    public BulkheadConfig getDirectDebitConnector() {
+        return directDebitConnector;
+    }
+
+    public BulkheadConfig getPublicAuth() {
+        return publicAuth;
+    }
+}
@@ -0,0 +1,24 @@
+package uk.gov.pay.api.app.config;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class CircuitBreakerConfig extends Configuration {
+
+    @Min(1)
+    private int failureThreshold = 5;
+
+    @NotNull
+    private Duration openDuration = Duration.seconds(10);
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public Duration getOpenDuration() {
+        return openDuration;
+    }
+}
@@ -0,0 +1,29 @@
+package uk.gov.pay.api.app.config;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.NotNull;
+
+public class DeadlinesConfig extends Configuration {
+
+    private boolean enabled = false;
+
+    @NotNull
+    private Duration requestTimeout = Duration.seconds(10);
+
+    @NotNull
+    private Duration minCallerTimeout = Duration.seconds(1);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public Duration getMinCallerTimeout() {
+        return minCallerTimeout;
+    }
+}
@@ -0,0 +1,47 @@
+package uk.gov.pay.api.app.config;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class HedgingConfig extends Configuration {
+
+    private boolean enabled = false;
+
+    @Min(50)
+    @Max(99)
+    private int percentile = 95;
+
+    @NotNull
+    private Duration minDelay = Duration.milliseconds(20);
+
+    @Min(0)
+    @Max(100)
+    private int budgetPercentage = 5;
+
+    @Min(0)
+    private int budgetMaxTokens = 10;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getPercentile() {
+        return percentile;
+    }
+
+    public Duration getMinDelay() {
+        return minDelay;
+    }
+
+    public int getBudgetPercentage() {
+        return budgetPercentage;
+    }
+
+    public int getBudgetMaxTokens() {
+        return budgetMaxTokens;
+    }
+}
@@ -0,0 +1,52 @@
+package uk.gov.pay.api.app.config;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+public class LoadSheddingConfig extends Configuration {
+
+    private boolean enabled = false;
+
+    @Min(1)
+    private int initialLimit = 100;
+
+    @Min(1)
+    private int minLimit = 20;
+
+    @Min(1)
+    private int maxLimit = 500;
+
+    @DecimalMin("1.0")
+    private double latencyTolerance = 2.0;
+
+    @DecimalMin("0.5")
+    @DecimalMax("1.0")
+    private double backoffRatio = 0.9;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+}
@@ -1,9 +1,10 @@
 package uk.gov.pay.api.app.config;
 
 import com.bendb.dropwizard.redis.JedisFactory;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.google.common.cache.CacheBuilderSpec;
 import io.dropwizard.Configuration;
+import io.dropwizard.validation.ValidationMethod;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
@@ -32,14 +33,46 @@ public class PublicApiConfig extends Configuration {
 
     private String apiKeyHmacSecret;
 
+    @Valid
     @NotNull
-    private CacheBuilderSpec authenticationCachePolicy;
+    @JsonProperty("authenticationCache")
+    private AuthenticationCacheConfig authenticationCacheConfig = new AuthenticationCacheConfig();
     
     @Valid
     @NotNull
     @JsonProperty("jerseyClientConfig")
     private RestClientConfig restClientConfig;
 
+    @Valid
+    @NotNull
+    @JsonProperty("bulkheads")
+    private BulkheadsConfig bulkheadsConfig = new BulkheadsConfig();
+
+    @Valid
+    @NotNull
+    @JsonProperty("circuitBreakers")
+    private UpstreamCircuitBreakersConfig circuitBreakersConfig = new UpstreamCircuitBreakersConfig();
+
+    @Valid
+    @NotNull
+    @JsonProperty("retries")
+    private RetriesConfig retriesConfig = new RetriesConfig();
+
+    @Valid
+    @NotNull
+    @JsonProperty("hedging")
+    private HedgingConfig hedgingConfig = new HedgingConfig();
+
+    @Valid
+    @NotNull
+    @JsonProperty("loadShedding")
+    private LoadSheddingConfig loadSheddingConfig = new LoadSheddingConfig();
+
+    @Valid
+    @NotNull
+    @JsonProperty("deadlines")
+    private DeadlinesConfig deadlinesConfig = new DeadlinesConfig();
+
     @NotNull
     @JsonProperty
     private JedisFactory redis;
@@ -84,11 +117,41 @@ public class PublicApiConfig extends Configuration {
         return restClientConfig;
     }
 
+    public BulkheadsConfig getBulkheadsConfig() {
+        return bulkheadsConfig;
+    }
+
+    public UpstreamCircuitBreakersConfig getCircuitBreakersConfig() {
+        return circuitBreakersConfig;
+    }
+
+    public RetriesConfig getRetriesConfig() {
+        return retriesConfig;
+    }
+
+    public HedgingConfig getHedgingConfig() {
+        return hedgingConfig;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "hedging.enabled requires jerseyClientConfig.asyncRequestsEnabled, as only asynchronous requests are hedged")
+    public boolean isHedgingSupportedByRestClient() {
+        return !hedgingConfig.isEnabled() || restClientConfig == null || restClientConfig.isAsyncRequestsEnabled();
+    }
+
+    public LoadSheddingConfig getLoadSheddingConfig() {
+        return loadSheddingConfig;
+    }
+
+    public DeadlinesConfig getDeadlinesConfig() {
+        return deadlinesConfig;
+    }
+
     public RateLimiterConfig getRateLimiterConfig() {
         return rateLimiterConfig;
     }
 
-    public CacheBuilderSpec getAuthenticationCachePolicy() { return authenticationCachePolicy; }
+    public AuthenticationCacheConfig getAuthenticationCacheConfig() { return authenticationCacheConfig; }
 
     public JedisFactory getJedisFactory() { return redis;  }
 }
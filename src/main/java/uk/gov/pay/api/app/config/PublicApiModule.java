@@ -1,5 +1,6 @@
 package uk.gov.pay.api.app.config;
 
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
@@ -7,19 +8,42 @@ import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import io.dropwizard.setup.Environment;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+import redis.clients.jedis.JedisPool;
 import uk.gov.pay.api.app.RestClientFactory;
+import uk.gov.pay.api.filter.LoadSheddingFilter;
+import uk.gov.pay.api.filter.ratelimit.BatchingRedisScriptExecutor;
 import uk.gov.pay.api.filter.ratelimit.LocalRateLimiter;
+import uk.gov.pay.api.filter.ratelimit.PooledRedisScriptExecutor;
+import uk.gov.pay.api.filter.ratelimit.RateLimitPolicies;
 import uk.gov.pay.api.filter.ratelimit.RateLimiter;
 import uk.gov.pay.api.filter.ratelimit.RedisRateLimiter;
+import uk.gov.pay.api.filter.ratelimit.RedisScriptExecutor;
 import uk.gov.pay.api.json.CreatePaymentRefundRequestDeserializer;
 import uk.gov.pay.api.json.CreatePaymentRequestDeserializer;
+import uk.gov.pay.api.model.ChargeFromResponse;
 import uk.gov.pay.api.model.CreatePaymentRefundRequest;
 import uk.gov.pay.api.model.ValidCreatePaymentRequest;
+import uk.gov.pay.api.resilience.AdaptiveConcurrencyLimit;
+import uk.gov.pay.api.resilience.Bulkhead;
+import uk.gov.pay.api.resilience.BulkheadConnectorProvider;
+import uk.gov.pay.api.resilience.CircuitBreaker;
+import uk.gov.pay.api.resilience.CircuitBreakerConnectorProvider;
+import uk.gov.pay.api.resilience.CircuitBreakerConnectorProvider.ReadWriteCircuitBreakers;
+import uk.gov.pay.api.resilience.HedgingConnectorProvider;
+import uk.gov.pay.api.resilience.RetryBudget;
+import uk.gov.pay.api.resilience.RetryConnectorProvider;
+import uk.gov.pay.api.utils.RequestCollapser;
 import uk.gov.pay.api.validation.PaymentRefundRequestValidator;
 import uk.gov.pay.api.validation.PaymentRequestValidator;
 import uk.gov.pay.api.validation.URLValidator;
 
 import javax.ws.rs.client.Client;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
 
 import static uk.gov.pay.api.validation.URLValidator.urlValidatorValueOf;
 
@@ -42,7 +66,139 @@ public class PublicApiModule extends AbstractModule {
     @Provides
     @Singleton
     public Client provideClient() {
-        return RestClientFactory.buildClient(configuration.getRestClientConfig());
+        return RestClientFactory.buildClient(configuration.getRestClientConfig(), this::decorateConnector,
+                environment.lifecycle());
+    }
+
+    /**
+     * Circuit breakers go outside the bulkheads, so requests to an upstream that is down are rejected without taking
+     * a bulkhead permit. Hedging and then retries go outside both, so every request sent is counted by the breaker and
+     * needs a permit, and a slow hedged read is retried as a whole.
+     */
+    private ConnectorProvider decorateConnector(ConnectorProvider connectorProvider) {
+        ConnectorProvider decorated = connectorProvider;
+        if (configuration.getBulkheadsConfig().isEnabled()) {
+            decorated = new BulkheadConnectorProvider(decorated, getBulkheadsByBaseUrl());
+        }
+        if (configuration.getCircuitBreakersConfig().isEnabled()) {
+            decorated = new CircuitBreakerConnectorProvider(decorated, getCircuitBreakersByBaseUrl());
+        }
+        if (configuration.getHedgingConfig().isEnabled()) {
+            decorated = getHedgingConnectorProvider(decorated);
+        }
+        if (configuration.getRetriesConfig().isEnabled()) {
+            decorated = getRetryConnectorProvider(decorated);
+        }
+        return decorated;
+    }
+
+    /**
+     * One bulkhead per upstream, so a slow direct debit connector cannot use up the threads card payments need.
+     */
+    private Map<String, Bulkhead> getBulkheadsByBaseUrl() {
+        BulkheadsConfig bulkheadsConfig = configuration.getBulkheadsConfig();
+        Map<String, Bulkhead> bulkheads = new HashMap<>();
+        bulkheads.put(configuration.getConnectorUrl(), getBulkhead("connector", bulkheadsConfig.getConnector()));
+        bulkheads.put(configuration.getConnectorDDUrl(), getBulkhead("direct-debit-connector", bulkheadsConfig.getDirectDebitConnector()));
+        bulkheads.put(configuration.getPublicAuthUrl(), getBulkhead("publicauth", bulkheadsConfig.getPublicAuth()));
+        return bulkheads;
+    }
+
+    private ConnectorProvider getRetryConnectorProvider(ConnectorProvider connectorProvider) {
+        RetriesConfig retriesConfig = configuration.getRetriesConfig();
+        // retried async() requests are sent from these threads, so they get as many as the first attempts do
+        ScheduledExecutorService scheduler = environment.lifecycle()
+                .scheduledExecutorService("connector-retries-%d")
+                .threads(configuration.getRestClientConfig().getAsyncThreads())
+                .build();
+        return new RetryConnectorProvider(connectorProvider,
+                retriesConfig.getMaxAttempts(),
+                retriesConfig.getInitialBackoff().toMilliseconds(),
+                retriesConfig.getMaxBackoff().toMilliseconds(),
+                retriesConfig.getMinRemainingTime().toMilliseconds(),
+                new RetryBudget(retriesConfig.getBudgetPercentage(), retriesConfig.getBudgetMaxTokens()),
+                scheduler,
+                environment.metrics(),
+                "retries");
+    }
+
+    private ConnectorProvider getHedgingConnectorProvider(ConnectorProvider connectorProvider) {
+        HedgingConfig hedgingConfig = configuration.getHedgingConfig();
+        Map<String, Timer> latencyByBaseUrl = new HashMap<>();
+        latencyByBaseUrl.put(configuration.getConnectorUrl(), environment.metrics().timer("hedging.connector.latency"));
+        latencyByBaseUrl.put(configuration.getConnectorDDUrl(), environment.metrics().timer("hedging.direct-debit-connector.latency"));
+        // only decides when to send a hedge, so one thread is enough
+        ScheduledExecutorService timer = environment.lifecycle()
+                .scheduledExecutorService("connector-hedge-timer-%d")
+                .threads(1)
+                .build();
+        // hedges are sent from these threads, and are not sent at all rather than queued when every one is busy
+        ExecutorService executor = environment.lifecycle()
+                .executorService("connector-hedges-%d")
+                .minThreads(0)
+                .maxThreads(configuration.getRestClientConfig().getAsyncThreads())
+                .workQueue(new SynchronousQueue<>())
+                .build();
+        return new HedgingConnectorProvider(connectorProvider,
+                latencyByBaseUrl,
+                hedgingConfig.getPercentile(),
+                hedgingConfig.getMinDelay().toMilliseconds(),
+                new RetryBudget(hedgingConfig.getBudgetPercentage(), hedgingConfig.getBudgetMaxTokens()),
+                timer,
+                executor,
+                environment.metrics(),
+                "hedging");
+    }
+
+    private Map<String, ReadWriteCircuitBreakers> getCircuitBreakersByBaseUrl() {
+        Map<String, ReadWriteCircuitBreakers> circuitBreakers = new HashMap<>();
+        circuitBreakers.put(configuration.getConnectorUrl(), getReadWriteCircuitBreakers("connector"));
+        circuitBreakers.put(configuration.getConnectorDDUrl(), getReadWriteCircuitBreakers("direct-debit-connector"));
+        return circuitBreakers;
+    }
+
+    private ReadWriteCircuitBreakers getReadWriteCircuitBreakers(String upstream) {
+        return new ReadWriteCircuitBreakers(
+                getUpstreamCircuitBreaker("circuit-breakers." + upstream + ".read"),
+                getUpstreamCircuitBreaker("circuit-breakers." + upstream + ".write"));
+    }
+
+    private CircuitBreaker getUpstreamCircuitBreaker(String name) {
+        CircuitBreakerConfig circuitBreakerConfig = configuration.getCircuitBreakersConfig();
+        return new CircuitBreaker(name,
+                circuitBreakerConfig.getFailureThreshold(),
+                circuitBreakerConfig.getOpenDuration().toMilliseconds(),
+                environment.metrics());
+    }
+
+    private Bulkhead getBulkhead(String upstream, BulkheadConfig bulkheadConfig) {
+        return new Bulkhead("bulkheads." + upstream,
+                bulkheadConfig.getMaxConcurrentCalls(),
+                bulkheadConfig.getMaxWait().toMilliseconds(),
+                environment.metrics());
+    }
+
+    /**
+     * Shared by every {@code GetPaymentService}, keyed by account and connector charge URI.
+     */
+    @Provides
+    @Singleton
+    public RequestCollapser<String, ChargeFromResponse> provideChargeRequestCollapser() {
+        return new RequestCollapser<>("request-collapsing.get-payment", environment.metrics());
+    }
+
+    @Provides
+    @Singleton
+    public AdaptiveConcurrencyLimit provideAdaptiveConcurrencyLimit() {
+        LoadSheddingConfig loadSheddingConfig = configuration.getLoadSheddingConfig();
+        return new AdaptiveConcurrencyLimit("load-shedding",
+                LoadSheddingFilter.LATENCY_CLASSES,
+                loadSheddingConfig.getInitialLimit(),
+                loadSheddingConfig.getMinLimit(),
+                loadSheddingConfig.getMaxLimit(),
+                loadSheddingConfig.getLatencyTolerance(),
+                loadSheddingConfig.getBackoffRatio(),
+                environment.metrics());
     }
 
     @Provides
@@ -64,13 +220,37 @@ public class PublicApiModule extends AbstractModule {
         return objectMapper;
     }
 
+    /**
+     * The one connection pool to Redis, shared by the rate limiter and the shared authentication cache.
+     */
     @Provides
-    public RateLimiter provideRateLimiter() {
+    @Singleton
+    public JedisPool provideJedisPool() {
+        return configuration.getJedisFactory().build(environment);
+    }
+
+    @Provides
+    @Singleton
+    public RateLimitPolicies provideRateLimitPolicies() {
+        return new RateLimitPolicies(configuration.getRateLimiterConfig().getPolicies());
+    }
+
+    @Provides
+    @Singleton
+    public RateLimiter provideRateLimiter(JedisPool jedisPool) {
 
         LocalRateLimiter localRateLimiter = getLocalRateLimiter();
-        RedisRateLimiter redisRateLimiter = getRedisRateLimiter();
+        RedisRateLimiter redisRateLimiter = getRedisRateLimiter(jedisPool);
 
-        return new RateLimiter(localRateLimiter, redisRateLimiter);
+        return new RateLimiter(localRateLimiter, redisRateLimiter, getRedisCircuitBreaker());
+    }
+
+    private CircuitBreaker getRedisCircuitBreaker() {
+        CircuitBreakerConfig circuitBreakerConfig = configuration.getRateLimiterConfig().getRedisCircuitBreaker();
+        return new CircuitBreaker("ratelimiter.redis.circuit-breaker",
+                circuitBreakerConfig.getFailureThreshold(),
+                circuitBreakerConfig.getOpenDuration().toMilliseconds(),
+                environment.metrics());
     }
 
     private LocalRateLimiter getLocalRateLimiter() {
@@ -81,11 +261,29 @@ public class PublicApiModule extends AbstractModule {
         );
     }
 
-    private RedisRateLimiter getRedisRateLimiter() {
+    private RedisRateLimiter getRedisRateLimiter(JedisPool jedisPool) {
         return new RedisRateLimiter(configuration.getRateLimiterConfig().getNoOfReq(),
                 configuration.getRateLimiterConfig().getNoOfReqForPost(),
                 configuration.getRateLimiterConfig().getPerMillis(),
-                configuration.getJedisFactory().build(environment));
+                configuration.getRateLimiterConfig().getAlgorithm(),
+                configuration.getRateLimiterConfig().getLeasePercentage(),
+                getRedisScriptExecutor(jedisPool));
+    }
+
+    private RedisScriptExecutor getRedisScriptExecutor(JedisPool jedisPool) {
+        RedisBatchingConfig batchingConfig = configuration.getRateLimiterConfig().getRedisBatching();
+        if (!batchingConfig.isEnabled()) {
+            return new PooledRedisScriptExecutor(jedisPool);
+        }
+
+        BatchingRedisScriptExecutor batchingExecutor = new BatchingRedisScriptExecutor(jedisPool,
+                batchingConfig.getMaxWait().toMicroseconds(),
+                batchingConfig.getMaxBatchSize(),
+                configuration.getJedisFactory().getTimeout(),
+                environment.metrics(),
+                "ratelimiter.redis.batching");
+        environment.lifecycle().manage(batchingExecutor);
+        return batchingExecutor;
     }
 
 
@@ -0,0 +1,50 @@
+package uk.gov.pay.api.app.config;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+
+public class RateLimitPolicyConfig extends Configuration {
+
+    @NotNull
+    @Pattern(regexp = "[A-Za-z0-9_.]+")
+    private String name;
+
+    private String method;
+
+    private String path;
+
+    private String accountId;
+
+    @Min(1)
+    private int noOfReq;
+
+    @Min(1)
+    private int noOfReqPerNode;
+
+    public RateLimitPolicyConfig() {
+    }
+
+    public RateLimitPolicyConfig(String name, String method, String path, String accountId, int noOfReq, int noOfReqPerNode) {
+        this.name = name;
+        this.method = method;
+        this.path = path;
+        this.accountId = accountId;
+        this.noOfReq = noOfReq;
+        this.noOfReqPerNode = noOfReqPerNode;
+    }
+
+    public String getName() { return name; }
+
+    public String getMethod() { return method; }
+
+    public String getPath() { return path; }
+
+    public String getAccountId() { return accountId; }
+
+    public int getNoOfReq() { return noOfReq; }
+
+    public int getNoOfReqPerNode() { return noOfReqPerNode; }
+}
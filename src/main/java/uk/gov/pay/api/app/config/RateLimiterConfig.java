@@ -1,9 +1,17 @@
 package uk.gov.pay.api.app.config;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.dropwizard.Configuration;
+import io.dropwizard.validation.ValidationMethod;
+import uk.gov.pay.api.filter.ratelimit.RateLimitAlgorithm;
+import uk.gov.pay.api.filter.ratelimit.RedisRateLimiter;
 
+import javax.validation.Valid;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
 
 public class RateLimiterConfig extends Configuration {
 
@@ -20,9 +28,43 @@ public class RateLimiterConfig extends Configuration {
     private int noOfReqForPostPerNode;
 
     @Min(500)
-    @Max(60000)
     private int perMillis;
 
+    @Min(0)
+    @Max(100)
+    private int leasePercentage;
+
+    @NotNull
+    private RateLimitAlgorithm algorithm = RateLimitAlgorithm.FIXED_WINDOW;
+
+    @Valid
+    @NotNull
+    private CircuitBreakerConfig redisCircuitBreaker = new CircuitBreakerConfig();
+
+    @Valid
+    @NotNull
+    private RedisBatchingConfig redisBatching = new RedisBatchingConfig();
+
+    @Valid
+    @NotNull
+    private List<RateLimitPolicyConfig> policies = new ArrayList<>();
+
+    @JsonIgnore
+    @ValidationMethod(message = "perMillis over 60000 is only supported by the GCRA algorithm")
+    public boolean isPerMillisSupportedByAlgorithm() {
+        return algorithm != RateLimitAlgorithm.FIXED_WINDOW || perMillis <= RedisRateLimiter.MAX_FIXED_WINDOW_MILLIS;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "the GCRA algorithm cannot allow more than one request per microsecond")
+    public boolean isRateSupportedByAlgorithm() {
+        if (algorithm != RateLimitAlgorithm.GCRA) {
+            return true;
+        }
+        return RedisRateLimiter.hasEmissionInterval(Math.max(noOfReq, noOfReqForPost), perMillis)
+                && policies.stream().allMatch(policy -> RedisRateLimiter.hasEmissionInterval(policy.getNoOfReq(), perMillis));
+    }
+
     public int getNoOfReq() {
         return noOfReq;
     }
@@ -38,4 +80,14 @@ public class RateLimiterConfig extends Configuration {
     public int getNoOfReqPerNode() { return noOfReqPerNode; }
 
     public int getNoOfReqForPostPerNode() { return noOfReqForPostPerNode; }
+
+    public RateLimitAlgorithm getAlgorithm() { return algorithm; }
+
+    public int getLeasePercentage() { return leasePercentage; }
+
+    public CircuitBreakerConfig getRedisCircuitBreaker() { return redisCircuitBreaker; }
+
+    public RedisBatchingConfig getRedisBatching() { return redisBatching; }
+
+    public List<RateLimitPolicyConfig> getPolicies() { return policies; }
 }
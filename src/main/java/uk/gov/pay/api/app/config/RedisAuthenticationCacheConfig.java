@@ -0,0 +1,31 @@
+package uk.gov.pay.api.app.config;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.util.Duration;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+public class RedisAuthenticationCacheConfig extends Configuration {
+
+    private boolean enabled = false;
+
+    @NotNull
+    private Duration ttl = Duration.minutes(1);
+
+    @Valid
+    @NotNull
+    private CircuitBreakerConfig circuitBreaker = new CircuitBreakerConfig();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public CircuitBreakerConfig getCircuitBreaker() {
+        return circuitBreaker;
+    }
+}
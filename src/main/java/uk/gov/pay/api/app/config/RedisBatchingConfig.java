@@ -0,0 +1,30 @@
+package uk.gov.pay.api.app.config;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class RedisBatchingConfig extends Configuration {
+
+    private boolean enabled = false;
+
+    @NotNull
+    private Duration maxWait = Duration.microseconds(200);
+
+    @Min(1)
+    private int maxBatchSize = 100;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+}
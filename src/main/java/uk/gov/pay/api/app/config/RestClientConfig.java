@@ -1,11 +1,49 @@
 package uk.gov.pay.api.app.config;
 
 import io.dropwizard.Configuration;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 
 public class RestClientConfig extends Configuration {
-    
+
     private String disabledSecureConnection = "false";
 
+    private boolean pooledConnectionsEnabled = false;
+
+    @Min(1)
+    private int maxConnections = 200;
+
+    @Min(1)
+    private int maxConnectionsPerRoute = 100;
+
+    @NotNull
+    private Duration connectTimeout = Duration.milliseconds(500);
+
+    @NotNull
+    private Duration readTimeout = Duration.seconds(10);
+
+    @NotNull
+    private Duration connectionRequestTimeout = Duration.milliseconds(500);
+
+    @NotNull
+    private Duration idleConnectionTimeout = Duration.seconds(30);
+
+    @NotNull
+    private Duration validateAfterInactivity = Duration.seconds(2);
+
+    @NotNull
+    private Duration connectionTimeToLive = Duration.minutes(5);
+
+    @NotNull
+    private Duration tlsSessionTimeout = Duration.hours(1);
+
+    private boolean asyncRequestsEnabled = false;
+
+    @Min(1)
+    private int asyncThreads = 100;
+
     public RestClientConfig() {
     }
 
@@ -17,4 +55,51 @@ public class RestClientConfig extends Configuration {
         return "true".equals(disabledSecureConnection);
     }
 
+    public boolean isPooledConnectionsEnabled() {
+        return pooledConnectionsEnabled;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public Duration getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public Duration getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    public Duration getValidateAfterInactivity() {
+        return validateAfterInactivity;
+    }
+
+    public Duration getConnectionTimeToLive() {
+        return connectionTimeToLive;
+    }
+
+    public Duration getTlsSessionTimeout() {
+        return tlsSessionTimeout;
+    }
+
+    public boolean isAsyncRequestsEnabled() {
+        return asyncRequestsEnabled;
+    }
+
+    public int getAsyncThreads() {
+        return asyncThreads;
+    }
 }
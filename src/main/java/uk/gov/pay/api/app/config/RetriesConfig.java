@@ -0,0 +1,60 @@
+package uk.gov.pay.api.app.config;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class RetriesConfig extends Configuration {
+
+    private boolean enabled = false;
+
+    @Min(1)
+    private int maxAttempts = 3;
+
+    @NotNull
+    private Duration initialBackoff = Duration.milliseconds(50);
+
+    @NotNull
+    private Duration maxBackoff = Duration.seconds(1);
+
+    @NotNull
+    private Duration minRemainingTime = Duration.milliseconds(100);
+
+    @Min(0)
+    @Max(100)
+    private int budgetPercentage = 10;
+
+    @Min(0)
+    private int budgetMaxTokens = 10;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public Duration getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public Duration getMinRemainingTime() {
+        return minRemainingTime;
+    }
+
+    public int getBudgetPercentage() {
+        return budgetPercentage;
+    }
+
+    public int getBudgetMaxTokens() {
+        return budgetMaxTokens;
+    }
+}
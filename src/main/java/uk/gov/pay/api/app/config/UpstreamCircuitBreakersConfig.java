@@ -0,0 +1,10 @@
+package uk.gov.pay.api.app.config;
+
+public class UpstreamCircuitBreakersConfig extends CircuitBreakerConfig {
+
+    private boolean enabled = false;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
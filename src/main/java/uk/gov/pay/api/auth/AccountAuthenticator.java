@@ -1,18 +1,21 @@
 package uk.gov.pay.api.auth;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import io.dropwizard.auth.Authenticator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.api.app.config.PublicApiConfig;
+import uk.gov.pay.api.model.AccountFromPublicAuth;
 import uk.gov.pay.api.model.TokenPaymentType;
 
 import javax.inject.Inject;
 import javax.ws.rs.ServiceUnavailableException;
 import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.InvocationCallback;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import static javax.ws.rs.core.HttpHeaders.AUTHORIZATION;
 import static javax.ws.rs.core.Response.Status.OK;
@@ -20,28 +23,60 @@ import static javax.ws.rs.core.Response.Status.UNAUTHORIZED;
 import static uk.gov.pay.api.model.TokenPaymentType.CARD;
 import static uk.gov.pay.api.model.TokenPaymentType.fromString;
 
-public class AccountAuthenticator implements Authenticator<String, Account> {
+public class AccountAuthenticator implements AsyncAccountAuthenticator {
     private static Logger logger = LoggerFactory.getLogger(AccountAuthenticator.class);
 
     private final Client client;
     private final String publicAuthUrl;
+    private final AccountIdCache accountIdCache;
     
     @Inject
-    public AccountAuthenticator(Client client, PublicApiConfig configuration) {
+    public AccountAuthenticator(Client client, PublicApiConfig configuration, AccountIdCache accountIdCache) {
         this.client = client;
         this.publicAuthUrl = configuration.getPublicAuthUrl();
+        this.accountIdCache = accountIdCache;
     }
 
     @Override
     public Optional<Account> authenticate(String bearerToken) {
+        return handleResponse(bearerToken, buildRequest(bearerToken).get());
+    }
+
+    /**
+     * Asks publicauth on the client's async executor, so the caller's thread is free while the request is in flight.
+     */
+    @Override
+    public CompletionStage<Optional<Account>> authenticateAsync(String bearerToken) {
+        CompletableFuture<Optional<Account>> result = new CompletableFuture<>();
+        buildRequest(bearerToken).async().get(new InvocationCallback<Response>() {
+            @Override
+            public void completed(Response response) {
+                try {
+                    result.complete(handleResponse(bearerToken, response));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            }
 
-        Response response = client.target(publicAuthUrl).request()
+            @Override
+            public void failed(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+        });
+        return result;
+    }
+
+    private Invocation.Builder buildRequest(String bearerToken) {
+        return client.target(publicAuthUrl).request()
                 .header(AUTHORIZATION, "Bearer " + bearerToken)
-                .accept(MediaType.APPLICATION_JSON)
-                .get();
+                .accept(MediaType.APPLICATION_JSON);
+    }
 
+    private Optional<Account> handleResponse(String bearerToken, Response response) {
         if (response.getStatus() == OK.getStatusCode()) {
-            return readAccountFromResponse(response);
+            Optional<Account> account = readAccountFromResponse(response);
+            account.ifPresent(value -> accountIdCache.put(TokenDigest.fromBearerToken(bearerToken), value.getAccountId()));
+            return account;
         } else if (response.getStatus() == UNAUTHORIZED.getStatusCode()) {
             response.close();
             return Optional.empty();
@@ -53,11 +88,9 @@ public class AccountAuthenticator implements Authenticator<String, Account> {
     }
 
     private Optional<Account> readAccountFromResponse(Response response) {
-        JsonNode responseEntity = response.readEntity(JsonNode.class);
-        String accountId = responseEntity.get("account_id").asText();
-        String tokenType = Optional.ofNullable(responseEntity.get("token_type"))
-                .map(JsonNode::asText).orElse(CARD.toString());
+        AccountFromPublicAuth responseEntity = response.readEntity(AccountFromPublicAuth.class);
+        String tokenType = Optional.ofNullable(responseEntity.getTokenType()).orElse(CARD.toString());
         TokenPaymentType tokenPaymentType = fromString(tokenType);
-        return Optional.of(new Account(accountId, tokenPaymentType));
+        return Optional.of(new Account(responseEntity.getAccountId(), tokenPaymentType));
     }
 }
@@ -0,0 +1,34 @@
+package uk.gov.pay.api.auth;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import javax.inject.Singleton;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Account IDs of recently authenticated API keys by {@link TokenDigest}, for servlet filters that run before
+ * Jersey has authenticated the request. Only holds keys that have already been authenticated once, so a lookup
+ * never calls publicauth.
+ */
+@Singleton
+public class AccountIdCache {
+
+    private static final int MAXIMUM_SIZE = 10_000;
+
+    private final Cache<String, String> accountIds = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
+    public void put(String tokenDigest, String accountId) {
+        accountIds.put(tokenDigest, accountId);
+    }
+
+    /**
+     * @return the account ID, or null if the key has not been authenticated recently
+     */
+    public String getAccountId(String tokenDigest) {
+        return accountIds.getIfPresent(tokenDigest);
+    }
+}
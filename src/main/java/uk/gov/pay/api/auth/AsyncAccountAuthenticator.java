@@ -0,0 +1,35 @@
+package uk.gov.pay.api.auth;
+
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.Authenticator;
+
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * An {@link Authenticator} that can also authenticate without blocking the calling thread while publicauth
+ * responds.
+ */
+public interface AsyncAccountAuthenticator extends Authenticator<String, Account> {
+
+    /**
+     * @return completes with the account, or empty if publicauth rejects the key; completes exceptionally if
+     * publicauth could not be asked
+     */
+    CompletionStage<Optional<Account>> authenticateAsync(String bearerToken);
+
+    /**
+     * Checks a key that was authenticated before again with publicauth itself, skipping any cache shared between
+     * nodes, e.g. to refresh it or to find out whether it has been revoked.
+     */
+    default Optional<Account> revalidate(String bearerToken) throws AuthenticationException {
+        return authenticate(bearerToken);
+    }
+
+    /**
+     * @see #revalidate(String)
+     */
+    default CompletionStage<Optional<Account>> revalidateAsync(String bearerToken) {
+        return authenticateAsync(bearerToken);
+    }
+}
@@ -0,0 +1,111 @@
+package uk.gov.pay.api.auth;
+
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves the accounts in a {@link RefreshingCachingAuthenticator} to a file every {@code intervalMillis} and on
+ * shutdown, and preloads them from that file on startup, so a restarted node does not send every API key in use
+ * to publicauth at once.
+ * <p>
+ * Only {@link TokenDigest token digests} and accounts are written, never API keys. Snapshots older than
+ * {@code maxAgeMillis} are ignored. Loading happens in {@link #start()}, before the server accepts requests.
+ */
+public class AuthenticationCacheSnapshot implements Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuthenticationCacheSnapshot.class);
+
+    private static final char FIELD_SEPARATOR = ' ';
+
+    private final RefreshingCachingAuthenticator cachingAuthenticator;
+    private final Path file;
+    private final long intervalMillis;
+    private final long maxAgeMillis;
+    private final ScheduledExecutorService scheduler;
+
+    public AuthenticationCacheSnapshot(RefreshingCachingAuthenticator cachingAuthenticator, Path file,
+                                       long intervalMillis, long maxAgeMillis, ScheduledExecutorService scheduler) {
+        this.cachingAuthenticator = cachingAuthenticator;
+        this.file = file;
+        this.intervalMillis = intervalMillis;
+        this.maxAgeMillis = maxAgeMillis;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void start() {
+        load();
+        scheduler.scheduleWithFixedDelay(this::save, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        save();
+    }
+
+    void load() {
+        try {
+            if (!Files.exists(file)) {
+                LOGGER.info("No authentication cache snapshot at {}", file);
+                return;
+            }
+            long ageMillis = System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis();
+            if (ageMillis > maxAgeMillis) {
+                LOGGER.info("Ignoring authentication cache snapshot at {}, it is {}s old", file, ageMillis / 1000);
+                return;
+            }
+
+            int loaded = 0;
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int separator = line.indexOf(FIELD_SEPARATOR);
+                    Optional<Account> account = separator < 0
+                            ? Optional.empty()
+                            : RedisAuthenticationCache.decode(line.substring(separator + 1));
+                    if (account.isPresent()) {
+                        cachingAuthenticator.preload(line.substring(0, separator), account.get());
+                        loaded++;
+                    }
+                }
+            }
+            LOGGER.info("Preloaded {} API keys from authentication cache snapshot", loaded);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to load authentication cache snapshot from {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Writes to a temporary file first and moves it into place, so a node stopped mid-write never leaves a partial
+     * snapshot behind.
+     */
+    void save() {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Account> entry : cachingAuthenticator.snapshot().entrySet()) {
+                    writer.write(entry.getKey());
+                    writer.write(FIELD_SEPARATOR);
+                    writer.write(RedisAuthenticationCache.encode(entry.getValue()));
+                    writer.newLine();
+                }
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to save authentication cache snapshot to {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package uk.gov.pay.api.auth;
+
+import com.google.common.collect.ImmutableMultimap;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+
+/**
+ * Admin task clearing the API keys remembered as rejected by publicauth:
+ * {@code POST /tasks/purge-rejected-api-keys} on the admin port.
+ */
+public class PurgeRejectedTokensTask extends Task {
+
+    private final RefreshingCachingAuthenticator cachingAuthenticator;
+
+    public PurgeRejectedTokensTask(RefreshingCachingAuthenticator cachingAuthenticator) {
+        super("purge-rejected-api-keys");
+        this.cachingAuthenticator = cachingAuthenticator;
+    }
+
+    @Override
+    public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) {
+        cachingAuthenticator.purgeRejectedTokens();
+        output.println("Purged rejected API keys");
+    }
+}
@@ -0,0 +1,199 @@
+package uk.gov.pay.api.auth;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.auth.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import uk.gov.pay.api.model.TokenPaymentType;
+import uk.gov.pay.api.resilience.CircuitBreaker;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Accounts of authenticated API keys shared by all publicapi nodes through Redis, so a node that has just started
+ * (or has evicted a key from its own cache) can pick up a key another node has already authenticated instead of
+ * asking publicauth again.
+ * <p>
+ * This sits between {@link RefreshingCachingAuthenticator} and {@link AccountAuthenticator}. Accounts are stored
+ * under their {@link TokenDigest} for {@code ttlMillis}. Only accepted keys are stored. {@link #revalidate
+ * Revalidation} always asks publicauth: the account it returns replaces the stored one, and a key it rejects is
+ * deleted, so once any node's refresh finds a key revoked, no other node picks it up from Redis again. Redis being slow or unavailable never fails a
+ * request: the lookup is skipped and publicauth is asked directly, and after repeated failures the circuit breaker
+ * stops trying Redis for a while.
+ */
+public class RedisAuthenticationCache implements AsyncAccountAuthenticator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisAuthenticationCache.class);
+
+    private static final String KEY_PREFIX = "auth:";
+    private static final char VALUE_SEPARATOR = ':';
+
+    private final AsyncAccountAuthenticator underlying;
+    private final JedisPool jedisPool;
+    private final long ttlMillis;
+    private final CircuitBreaker circuitBreaker;
+    private final AccountIdCache accountIdCache;
+
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter errors;
+
+    public RedisAuthenticationCache(AsyncAccountAuthenticator underlying, JedisPool jedisPool, long ttlMillis,
+                                    CircuitBreaker circuitBreaker, AccountIdCache accountIdCache,
+                                    MetricRegistry metricRegistry) {
+        this.underlying = underlying;
+        this.jedisPool = jedisPool;
+        this.ttlMillis = ttlMillis;
+        this.circuitBreaker = circuitBreaker;
+        this.accountIdCache = accountIdCache;
+
+        this.hits = metricRegistry.meter(MetricRegistry.name(getClass(), "hits"));
+        this.misses = metricRegistry.meter(MetricRegistry.name(getClass(), "misses"));
+        this.errors = metricRegistry.meter(MetricRegistry.name(getClass(), "errors"));
+    }
+
+    @Override
+    public Optional<Account> authenticate(String bearerToken) throws AuthenticationException {
+        String tokenDigest = TokenDigest.fromBearerToken(bearerToken);
+        String key = KEY_PREFIX + tokenDigest;
+
+        Lookup lookup = lookup(tokenDigest, key);
+        if (lookup.account.isPresent()) {
+            return lookup.account;
+        }
+
+        Optional<Account> account = underlying.authenticate(bearerToken);
+        if (lookup.redisAvailable && account.isPresent()) {
+            store(key, account.get());
+        }
+        return account;
+    }
+
+    @Override
+    public CompletionStage<Optional<Account>> authenticateAsync(String bearerToken) {
+        String tokenDigest = TokenDigest.fromBearerToken(bearerToken);
+        String key = KEY_PREFIX + tokenDigest;
+
+        Lookup lookup = lookup(tokenDigest, key);
+        if (lookup.account.isPresent()) {
+            return CompletableFuture.completedFuture(lookup.account);
+        }
+
+        return underlying.authenticateAsync(bearerToken).thenApply(account -> {
+            if (lookup.redisAvailable && account.isPresent()) {
+                store(key, account.get());
+            }
+            return account;
+        });
+    }
+
+    @Override
+    public Optional<Account> revalidate(String bearerToken) throws AuthenticationException {
+        Optional<Account> account = underlying.revalidate(bearerToken);
+        update(KEY_PREFIX + TokenDigest.fromBearerToken(bearerToken), account);
+        return account;
+    }
+
+    @Override
+    public CompletionStage<Optional<Account>> revalidateAsync(String bearerToken) {
+        String key = KEY_PREFIX + TokenDigest.fromBearerToken(bearerToken);
+        return underlying.revalidateAsync(bearerToken).thenApply(account -> {
+            update(key, account);
+            return account;
+        });
+    }
+
+    private Lookup lookup(String tokenDigest, String key) {
+        if (!circuitBreaker.allowRequest()) {
+            misses.mark();
+            return new Lookup(Optional.empty(), false);
+        }
+        try {
+            Optional<Account> cached = read(key);
+            if (cached.isPresent()) {
+                hits.mark();
+                accountIdCache.put(tokenDigest, cached.get().getAccountId());
+            } else {
+                misses.mark();
+            }
+            return new Lookup(cached, true);
+        } catch (Exception e) {
+            misses.mark();
+            recordFailure("read", e);
+            return new Lookup(Optional.empty(), false);
+        }
+    }
+
+    private Optional<Account> read(String key) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            String value = jedis.get(key);
+            circuitBreaker.recordSuccess();
+            return decode(value);
+        }
+    }
+
+    private void store(String key, Account account) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.psetex(key, ttlMillis, encode(account));
+        } catch (Exception e) {
+            recordFailure("write", e);
+        }
+    }
+
+    private void update(String key, Optional<Account> account) {
+        if (!circuitBreaker.allowRequest()) {
+            return;
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            if (account.isPresent()) {
+                jedis.psetex(key, ttlMillis, encode(account.get()));
+            } else {
+                jedis.del(key);
+            }
+            circuitBreaker.recordSuccess();
+        } catch (Exception e) {
+            recordFailure("update", e);
+        }
+    }
+
+    private void recordFailure(String operation, Exception e) {
+        errors.mark();
+        circuitBreaker.recordFailure();
+        LOGGER.warn("Failed to {} shared authentication cache: {}", operation, e.getMessage());
+    }
+
+    static String encode(Account account) {
+        return account.getPaymentType().name() + VALUE_SEPARATOR + account.getAccountId();
+    }
+
+    /**
+     * @return the account, or empty if there is no value or it is not in the format {@link #encode} writes
+     */
+    static Optional<Account> decode(String value) {
+        int separator = value == null ? -1 : value.indexOf(VALUE_SEPARATOR);
+        if (separator < 0) {
+            return Optional.empty();
+        }
+        try {
+            TokenPaymentType paymentType = TokenPaymentType.valueOf(value.substring(0, separator));
+            return Optional.of(new Account(value.substring(separator + 1), paymentType));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static final class Lookup {
+        private final Optional<Account> account;
+        private final boolean redisAvailable;
+
+        private Lookup(Optional<Account> account, boolean redisAvailable) {
+            this.account = account;
+            this.redisAvailable = redisAvailable;
+        }
+    }
+}
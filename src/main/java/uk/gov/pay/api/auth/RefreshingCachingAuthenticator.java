@@ -0,0 +1,365 @@
+package uk.gov.pay.api.auth;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.Authenticator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Caches the accounts of authenticated API keys, refreshing them from publicauth ahead of expiry.
+ * <p>
+ * The first request for a key authenticates it on the request thread; concurrent requests for the same key wait for
+ * that one call rather than each making their own. Once an entry is older than {@code refreshAfterWrite}, the next
+ * request for it is served from the cache and triggers a single background refresh, so keys in regular use never
+ * wait on publicauth again. Keys that are not used for {@code expireAfterWrite} drop out of the cache. A key that
+ * publicauth no longer accepts is removed as soon as a refresh finds out. Refreshes go through
+ * {@link AsyncAccountAuthenticator#revalidateAsync} when {@code underlying} supports it, and otherwise run on
+ * {@code refreshExecutor}. Refreshes and re-authentication of expired keys always reach publicauth, never a cache
+ * shared between nodes.
+ * <p>
+ * With {@code staleIfErrorMillis} set, entries are kept for that much longer after {@code expireAfterWrite}. If
+ * publicauth fails or times out while re-authenticating such an expired key, the cached account keeps being served
+ * (and counted as {@code stale-served}) until the extra time is up, so a short publicauth outage does not fail
+ * requests for keys that were valid moments before. Only one request at a time re-authenticates an expired key, and
+ * after it fails the cached account is served without asking publicauth again for a second, doubling with each
+ * further failure up to 30 seconds, so requests during an outage do not each wait for publicauth to time out.
+ * <p>
+ * Keys publicauth rejects are remembered by {@link TokenDigest} for {@code rejectedTokenTtlMillis}, so a client
+ * retrying with a revoked key is turned away without a publicauth call each time. See {@link #purgeRejectedTokens()}.
+ * <p>
+ * Accounts can be {@link #preload preloaded} by {@link TokenDigest}, e.g. from a {@link #snapshot()} taken before a
+ * restart. The first request with a preloaded key is served straight away and triggers a refresh, so the key is
+ * checked with publicauth again without the request waiting for it.
+ */
+public class RefreshingCachingAuthenticator implements Authenticator<String, Account> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RefreshingCachingAuthenticator.class);
+    private static final long INITIAL_RELOAD_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_RELOAD_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final Authenticator<String, Account> underlying;
+    private final long expireAfterWriteNanos;
+    private final long refreshAfterWriteNanos;
+    private final long staleIfErrorNanos;
+    private final Executor refreshExecutor;
+    private final Ticker ticker;
+    private final Cache<String, CachedAccount> cache;
+    private final Cache<String, Boolean> rejectedTokens;
+    private final Cache<String, Account> preloaded;
+
+    private final Meter hits;
+    private final Meter misses;
+    private final Timer loads;
+    private final Meter refreshes;
+    private final Meter refreshFailures;
+    private final Meter staleServed;
+    private final Meter rejectedHits;
+    private final Meter preloadedHits;
+
+    /**
+     * @param staleIfErrorMillis     how long past expiry a cached account may still be served if publicauth cannot
+     *                               be reached, 0 to never serve expired accounts
+     * @param rejectedTokenTtlMillis how long keys rejected by publicauth are remembered, 0 to not remember them
+     */
+    public RefreshingCachingAuthenticator(Authenticator<String, Account> underlying, long maximumSize,
+                                          long expireAfterWriteMillis, long refreshAfterWriteMillis,
+                                          long staleIfErrorMillis, long rejectedTokenTtlMillis,
+                                          Executor refreshExecutor, MetricRegistry metricRegistry) {
+        this(underlying, maximumSize, expireAfterWriteMillis, refreshAfterWriteMillis, staleIfErrorMillis,
+                rejectedTokenTtlMillis, refreshExecutor, metricRegistry, Ticker.systemTicker());
+    }
+
+    RefreshingCachingAuthenticator(Authenticator<String, Account> underlying, long maximumSize,
+                                   long expireAfterWriteMillis, long refreshAfterWriteMillis,
+                                   long staleIfErrorMillis, long rejectedTokenTtlMillis,
+                                   Executor refreshExecutor, MetricRegistry metricRegistry, Ticker ticker) {
+        this.underlying = underlying;
+        this.expireAfterWriteNanos = TimeUnit.MILLISECONDS.toNanos(expireAfterWriteMillis);
+        this.refreshAfterWriteNanos = TimeUnit.MILLISECONDS.toNanos(refreshAfterWriteMillis);
+        this.staleIfErrorNanos = TimeUnit.MILLISECONDS.toNanos(staleIfErrorMillis);
+        this.refreshExecutor = refreshExecutor;
+        this.ticker = ticker;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteMillis + staleIfErrorMillis, TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .build();
+        this.rejectedTokens = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(rejectedTokenTtlMillis, TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .build();
+        this.preloaded = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteMillis, TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .build();
+
+        this.hits = metricRegistry.meter(MetricRegistry.name(getClass(), "hits"));
+        this.misses = metricRegistry.meter(MetricRegistry.name(getClass(), "misses"));
+        this.loads = metricRegistry.timer(MetricRegistry.name(getClass(), "loads"));
+        this.refreshes = metricRegistry.meter(MetricRegistry.name(getClass(), "refreshes"));
+        this.refreshFailures = metricRegistry.meter(MetricRegistry.name(getClass(), "refresh-failures"));
+        this.staleServed = metricRegistry.meter(MetricRegistry.name(getClass(), "stale-served"));
+        this.rejectedHits = metricRegistry.meter(MetricRegistry.name(getClass(), "rejected-hits"));
+        this.preloadedHits = metricRegistry.meter(MetricRegistry.name(getClass(), "preloaded-hits"));
+    }
+
+    /**
+     * Forgets all rejected keys, e.g. after a key was rejected by mistake and has since been fixed in publicauth.
+     */
+    public void purgeRejectedTokens() {
+        rejectedTokens.invalidateAll();
+    }
+
+    /**
+     * Remembers the account of a key known only by its {@link TokenDigest}, until the key is first used or
+     * {@code expireAfterWrite} has passed.
+     */
+    public void preload(String tokenDigest, Account account) {
+        preloaded.put(tokenDigest, account);
+    }
+
+    /**
+     * @return accounts currently cached and not yet expired, plus preloaded accounts not used yet, by token digest
+     */
+    public Map<String, Account> snapshot() {
+        Map<String, Account> snapshot = new HashMap<>(preloaded.asMap());
+        long now = ticker.read();
+        cache.asMap().forEach((bearerToken, cached) -> {
+            if (now - cached.loadedAt < expireAfterWriteNanos) {
+                snapshot.put(TokenDigest.fromBearerToken(bearerToken), cached.account);
+            }
+        });
+        return snapshot;
+    }
+
+    @Override
+    public Optional<Account> authenticate(String bearerToken) throws AuthenticationException {
+        String tokenDigest = TokenDigest.fromBearerToken(bearerToken);
+        if (rejectedTokens.getIfPresent(tokenDigest) != null) {
+            rejectedHits.mark();
+            return Optional.empty();
+        }
+
+        CachedAccount cached = cache.getIfPresent(bearerToken);
+        if (cached != null) {
+            if (ticker.read() - cached.loadedAt >= expireAfterWriteNanos) {
+                misses.mark();
+                return reauthenticate(bearerToken, cached);
+            }
+            hits.mark();
+            refreshIfDue(bearerToken, cached);
+            return Optional.of(cached.account);
+        }
+
+        Account preloadedAccount = preloaded.getIfPresent(tokenDigest);
+        if (preloadedAccount != null) {
+            preloaded.invalidate(tokenDigest);
+            preloadedHits.mark();
+            // treated as due for refresh straight away, as it was never checked with this key by this node
+            CachedAccount warmed = new CachedAccount(preloadedAccount, ticker.read() - refreshAfterWriteNanos);
+            CachedAccount existing = cache.asMap().putIfAbsent(bearerToken, warmed);
+            CachedAccount current = existing != null ? existing : warmed;
+            refreshIfDue(bearerToken, current);
+            return Optional.of(current.account);
+        }
+
+        misses.mark();
+        try {
+            return Optional.of(cache.get(bearerToken, () -> load(bearerToken, false)).account);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            return handleLoadFailure(e.getCause());
+        }
+    }
+
+    /**
+     * @param revalidate whether the key was authenticated before, so must be checked with publicauth itself
+     */
+    private CachedAccount load(String bearerToken, boolean revalidate) throws AuthenticationException, UnauthorisedTokenException {
+        Timer.Context timer = loads.time();
+        try {
+            Optional<Account> account = revalidate ? revalidate(bearerToken) : underlying.authenticate(bearerToken);
+            if (!account.isPresent()) {
+                rejectedTokens.put(TokenDigest.fromBearerToken(bearerToken), Boolean.TRUE);
+                throw new UnauthorisedTokenException();
+            }
+            return new CachedAccount(account.get(), ticker.read());
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Re-authenticates a key whose entry has expired but is still held for serving if publicauth fails. The first
+     * caller does the work and any others arriving meanwhile share its outcome.
+     */
+    private Optional<Account> reauthenticate(String bearerToken, CachedAccount expired) throws AuthenticationException {
+        if (expired.failedReloads > 0 && ticker.read() - expired.nextReloadAt < 0 && isWithinStaleGracePeriod(expired)) {
+            staleServed.mark();
+            return Optional.of(expired.account);
+        }
+
+        CompletableFuture<CachedAccount> inProgress = expired.reload.get();
+        while (inProgress == null) {
+            CompletableFuture<CachedAccount> reload = new CompletableFuture<>();
+            if (expired.reload.compareAndSet(null, reload)) {
+                runReload(bearerToken, expired, reload);
+                inProgress = reload;
+            } else {
+                inProgress = expired.reload.get();
+            }
+        }
+
+        try {
+            return Optional.of(inProgress.join().account);
+        } catch (CompletionException e) {
+            if (!(e.getCause() instanceof UnauthorisedTokenException) && isWithinStaleGracePeriod(expired)) {
+                staleServed.mark();
+                LOGGER.warn("Could not re-authenticate API key, serving cached account: {}", e.getCause().getMessage());
+                return Optional.of(expired.account);
+            }
+            return handleLoadFailure(e.getCause());
+        }
+    }
+
+    private void runReload(String bearerToken, CachedAccount expired, CompletableFuture<CachedAccount> reload) {
+        try {
+            CachedAccount reloaded = load(bearerToken, true);
+            cache.asMap().replace(bearerToken, expired, reloaded);
+            reload.complete(reloaded);
+        } catch (UnauthorisedTokenException e) {
+            cache.asMap().remove(bearerToken, expired);
+            reload.completeExceptionally(e);
+        } catch (Exception e) {
+            // only the one thread running the reload updates these
+            expired.failedReloads++;
+            long backoffNanos = INITIAL_RELOAD_BACKOFF_NANOS << Math.min(expired.failedReloads - 1, 5);
+            expired.nextReloadAt = ticker.read() + Math.min(backoffNanos, MAX_RELOAD_BACKOFF_NANOS);
+            reload.completeExceptionally(e);
+        } finally {
+            // let the next request try again if this attempt failed
+            expired.reload.compareAndSet(reload, null);
+        }
+    }
+
+    private boolean isWithinStaleGracePeriod(CachedAccount expired) {
+        return ticker.read() - expired.loadedAt < expireAfterWriteNanos + staleIfErrorNanos;
+    }
+
+    private Optional<Account> handleLoadFailure(Throwable cause) throws AuthenticationException {
+        if (cause instanceof UnauthorisedTokenException) {
+            return Optional.empty();
+        }
+        if (cause instanceof AuthenticationException) {
+            throw (AuthenticationException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        throw new AuthenticationException(cause);
+    }
+
+    private void refreshIfDue(String bearerToken, CachedAccount cached) {
+        if (ticker.read() - cached.loadedAt < refreshAfterWriteNanos || !cached.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        if (underlying instanceof AsyncAccountAuthenticator) {
+            refreshAsync((AsyncAccountAuthenticator) underlying, bearerToken, cached);
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> refresh(bearerToken, cached));
+        } catch (RejectedExecutionException e) {
+            cached.refreshing.set(false);
+        }
+    }
+
+    private void refresh(String bearerToken, CachedAccount cached) {
+        refreshes.mark();
+        Timer.Context timer = loads.time();
+        try {
+            onRefreshed(bearerToken, cached, revalidate(bearerToken), null, timer);
+        } catch (Exception e) {
+            onRefreshed(bearerToken, cached, null, e, timer);
+        }
+    }
+
+    /**
+     * Refreshes without holding a refresh thread while publicauth responds.
+     */
+    private void refreshAsync(AsyncAccountAuthenticator asyncUnderlying, String bearerToken, CachedAccount cached) {
+        refreshes.mark();
+        Timer.Context timer = loads.time();
+        try {
+            asyncUnderlying.revalidateAsync(bearerToken)
+                    .whenComplete((account, error) -> onRefreshed(bearerToken, cached, account, error, timer));
+        } catch (RuntimeException e) {
+            onRefreshed(bearerToken, cached, null, e, timer);
+        }
+    }
+
+    private Optional<Account> revalidate(String bearerToken) throws AuthenticationException {
+        if (underlying instanceof AsyncAccountAuthenticator) {
+            return ((AsyncAccountAuthenticator) underlying).revalidate(bearerToken);
+        }
+        return underlying.authenticate(bearerToken);
+    }
+
+    private void onRefreshed(String bearerToken, CachedAccount cached, Optional<Account> account, Throwable error,
+                             Timer.Context timer) {
+        timer.stop();
+        if (error != null) {
+            refreshFailures.mark();
+            LOGGER.warn("Failed to refresh cached authentication, will retry on next use: {}", error.getMessage());
+            cached.refreshing.set(false);
+        } else if (account.isPresent()) {
+            cache.asMap().replace(bearerToken, cached, new CachedAccount(account.get(), ticker.read()));
+        } else {
+            rejectedTokens.put(TokenDigest.fromBearerToken(bearerToken), Boolean.TRUE);
+            cache.asMap().remove(bearerToken, cached);
+        }
+    }
+
+    private static final class CachedAccount {
+        private final Account account;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private final AtomicReference<CompletableFuture<CachedAccount>> reload = new AtomicReference<>();
+        private volatile int failedReloads;
+        private volatile long nextReloadAt;
+
+        private CachedAccount(Account account, long loadedAt) {
+            this.account = account;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * Keeps rejected keys out of the cache while still letting concurrent callers share the one publicauth call.
+     */
+    private static final class UnauthorisedTokenException extends Exception {
+        private UnauthorisedTokenException() {
+            super(null, null, false, false);
+        }
+    }
+}
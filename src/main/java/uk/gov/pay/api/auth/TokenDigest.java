@@ -0,0 +1,44 @@
+package uk.gov.pay.api.auth;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed width identifier for an API key, for use as a cache or rate limiter key without holding on to the key
+ * itself.
+ * <p>
+ * API keys are a token followed by the lower case base32hex encoding of HMAC-SHA1(token, secret). That HMAC is
+ * unique per key, has already been checked by {@link uk.gov.pay.api.filter.AuthorizationValidationFilter} before
+ * any other filter sees the request, and cannot be used to authenticate without the token it was derived from.
+ * Anything that does not look like an API key is digested with SHA-256 instead.
+ */
+public final class TokenDigest {
+
+    public static final int HMAC_SHA1_LENGTH = 32;
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    public static String fromAuthorizationHeader(String authorization) {
+        if (authorization != null
+                && authorization.startsWith(BEARER_PREFIX)
+                && authorization.length() > BEARER_PREFIX.length() + HMAC_SHA1_LENGTH) {
+            return authorization.substring(authorization.length() - HMAC_SHA1_LENGTH);
+        }
+        return sha256(String.valueOf(authorization));
+    }
+
+    public static String fromBearerToken(String apiKey) {
+        if (apiKey.length() > HMAC_SHA1_LENGTH) {
+            return apiKey.substring(apiKey.length() - HMAC_SHA1_LENGTH);
+        }
+        return sha256(apiKey);
+    }
+
+    private static String sha256(String value) {
+        return Hashing.sha256().hashString(value, StandardCharsets.UTF_8).toString();
+    }
+
+    private TokenDigest() {
+    }
+}
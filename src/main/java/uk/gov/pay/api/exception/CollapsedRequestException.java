@@ -0,0 +1,15 @@
+package uk.gov.pay.api.exception;
+
+import uk.gov.pay.api.utils.RequestCollapser;
+
+/**
+ * Thrown to a caller that waited for an identical request made by someone else (see {@link RequestCollapser}) when
+ * that request failed. Every caller gets an instance of its own, with the shared exception as its cause, and is
+ * answered as if it had thrown the cause itself.
+ */
+public class CollapsedRequestException extends RuntimeException {
+
+    public CollapsedRequestException(Throwable cause) {
+        super("Identical request in flight failed: " + cause.getMessage(), cause);
+    }
+}
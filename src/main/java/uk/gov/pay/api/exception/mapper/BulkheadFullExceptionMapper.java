@@ -0,0 +1,27 @@
+package uk.gov.pay.api.exception.mapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.api.resilience.BulkheadFullException;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static uk.gov.pay.api.resources.error.ApiErrorResponse.Code.SERVICE_BUSY_ERROR;
+import static uk.gov.pay.api.resources.error.ApiErrorResponse.anApiErrorResponse;
+
+public class BulkheadFullExceptionMapper implements ExceptionMapper<BulkheadFullException> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkheadFullExceptionMapper.class);
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    @Override
+    public Response toResponse(BulkheadFullException exception) {
+        LOGGER.info("{}. Returning http status {}", exception.getMessage(), SERVICE_UNAVAILABLE);
+        return Response.status(SERVICE_UNAVAILABLE)
+                .header("Retry-After", RETRY_AFTER_SECONDS)
+                .entity(anApiErrorResponse(SERVICE_BUSY_ERROR))
+                .build();
+    }
+}
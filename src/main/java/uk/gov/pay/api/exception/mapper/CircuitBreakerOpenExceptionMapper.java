@@ -0,0 +1,25 @@
+package uk.gov.pay.api.exception.mapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.api.resilience.CircuitBreakerOpenException;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static uk.gov.pay.api.resources.error.ApiErrorResponse.Code.SERVICE_UNAVAILABLE_ERROR;
+import static uk.gov.pay.api.resources.error.ApiErrorResponse.anApiErrorResponse;
+
+public class CircuitBreakerOpenExceptionMapper implements ExceptionMapper<CircuitBreakerOpenException> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreakerOpenExceptionMapper.class);
+
+    @Override
+    public Response toResponse(CircuitBreakerOpenException exception) {
+        LOGGER.info("{}. Returning http status {}", exception.getMessage(), SERVICE_UNAVAILABLE);
+        return Response.status(SERVICE_UNAVAILABLE)
+                .entity(anApiErrorResponse(SERVICE_UNAVAILABLE_ERROR))
+                .build();
+    }
+}
@@ -0,0 +1,29 @@
+package uk.gov.pay.api.exception.mapper;
+
+import uk.gov.pay.api.exception.CollapsedRequestException;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Providers;
+
+public class CollapsedRequestExceptionMapper implements ExceptionMapper<CollapsedRequestException> {
+
+    @Context
+    private Providers providers;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Response toResponse(CollapsedRequestException exception) {
+        Throwable cause = exception.getCause();
+        ExceptionMapper<Throwable> causeMapper = (ExceptionMapper<Throwable>) providers.getExceptionMapper(cause.getClass());
+        if (causeMapper != null) {
+            return causeMapper.toResponse(cause);
+        }
+        if (cause instanceof WebApplicationException) {
+            return ((WebApplicationException) cause).getResponse();
+        }
+        return Response.serverError().build();
+    }
+}
@@ -0,0 +1,25 @@
+package uk.gov.pay.api.exception.mapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.api.resilience.DeadlineExceededException;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+
+import static javax.ws.rs.core.Response.Status.GATEWAY_TIMEOUT;
+import static uk.gov.pay.api.resources.error.ApiErrorResponse.Code.REQUEST_TIMEOUT_ERROR;
+import static uk.gov.pay.api.resources.error.ApiErrorResponse.anApiErrorResponse;
+
+public class DeadlineExceededExceptionMapper implements ExceptionMapper<DeadlineExceededException> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeadlineExceededExceptionMapper.class);
+
+    @Override
+    public Response toResponse(DeadlineExceededException exception) {
+        LOGGER.info("{}. Returning http status {}", exception.getMessage(), GATEWAY_TIMEOUT);
+        return Response.status(GATEWAY_TIMEOUT)
+                .entity(anApiErrorResponse(REQUEST_TIMEOUT_ERROR))
+                .build();
+    }
+}
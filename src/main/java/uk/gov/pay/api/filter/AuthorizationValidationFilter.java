@@ -1,9 +1,9 @@
 package uk.gov.pay.api.filter;
 
-import com.google.common.io.BaseEncoding;
-import org.apache.commons.codec.digest.HmacUtils;
 import uk.gov.pay.api.app.config.PublicApiConfig;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import javax.inject.Inject;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -14,19 +14,33 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 
 import static javax.ws.rs.core.Response.Status.UNAUTHORIZED;
 
+/**
+ * Rejects requests whose API key does not end with the lower case base32hex encoding of HMAC-SHA1(token, secret).
+ * <p>
+ * This runs first on every request, so the check avoids per request allocation: each thread keeps a {@link Mac}
+ * initialised with the secret plus scratch buffers, the HMAC in the key is decoded to bytes in place and the two
+ * HMACs are compared in constant time.
+ */
 public class AuthorizationValidationFilter implements Filter {
 
     private static final int HMAC_SHA1_LENGTH = 32;
+    private static final int HMAC_SHA1_BYTES = 20;
+    private static final String HMAC_SHA1_ALGORITHM = "HmacSHA1";
     private static final String BEARER_PREFIX = "Bearer ";
 
-    private String apiKeyHmacSecret;
+    private final ThreadLocal<HmacState> hmacState;
 
     @Inject
     public AuthorizationValidationFilter(PublicApiConfig configuration) {
-        this.apiKeyHmacSecret = configuration.getApiKeyHmacSecret();
+        SecretKeySpec secretKey = new SecretKeySpec(
+                configuration.getApiKeyHmacSecret().getBytes(StandardCharsets.UTF_8), HMAC_SHA1_ALGORITHM);
+        this.hmacState = ThreadLocal.withInitial(() -> new HmacState(secretKey));
     }
 
     @Override
@@ -48,27 +62,104 @@ public class AuthorizationValidationFilter implements Filter {
     @Override
     public void destroy() {}
 
-    private boolean isValidAuthorizationHeader(String authorization) {
+    boolean isValidAuthorizationHeader(String authorization) {
         return authorization!= null
                 && authorization.startsWith(BEARER_PREFIX)
-                && isValidTokenIntegrity(authorization.substring(BEARER_PREFIX.length()));
+                && isValidTokenIntegrity(authorization, BEARER_PREFIX.length());
     }
 
-    private boolean isValidTokenIntegrity(String apiKey) {
-        boolean isValid = false;
-        if (apiKey.length() >= HMAC_SHA1_LENGTH + 1) {
-            int initHmacIndex = apiKey.length() - HMAC_SHA1_LENGTH;
-            String hmacFromApiKey = apiKey.substring(initHmacIndex);
-            String tokenFromApiKey = apiKey.substring(0, initHmacIndex);
-            isValid = tokenMatchesHmac(tokenFromApiKey, hmacFromApiKey);
+    /**
+     * @param apiKeyStart offset of the API key (token followed by HMAC) within {@code authorization}
+     */
+    private boolean isValidTokenIntegrity(String authorization, int apiKeyStart) {
+        int initHmacIndex = authorization.length() - HMAC_SHA1_LENGTH;
+        if (initHmacIndex < apiKeyStart + 1) {
+            return false;
         }
-        return isValid;
+        HmacState state = hmacState.get();
+        return decodeBase32Hex(authorization, initHmacIndex, state.expected)
+                && state.computeHmac(authorization, apiKeyStart, initHmacIndex)
+                && MessageDigest.isEqual(state.expected, state.computed);
     }
 
-    private boolean tokenMatchesHmac(String token, String currentHmac) {
-        final String hmacCalculatedFromToken = BaseEncoding.base32Hex()
-                .lowerCase().omitPadding()
-                .encode(HmacUtils.hmacSha1(apiKeyHmacSecret, token));
-        return hmacCalculatedFromToken.equals(currentHmac);
+    /**
+     * Decodes the {@link #HMAC_SHA1_LENGTH} lower case base32hex characters starting at {@code start} into
+     * {@code out}, 8 characters to 5 bytes at a time.
+     *
+     * @return false if any character is not lower case base32hex
+     */
+    private static boolean decodeBase32Hex(String value, int start, byte[] out) {
+        int outIndex = 0;
+        for (int group = start; group < start + HMAC_SHA1_LENGTH; group += 8) {
+            long bits = 0;
+            for (int i = group; i < group + 8; i++) {
+                int digit = base32HexDigit(value.charAt(i));
+                if (digit < 0) {
+                    return false;
+                }
+                bits = (bits << 5) | digit;
+            }
+            for (int shift = 32; shift >= 0; shift -= 8) {
+                out[outIndex++] = (byte) (bits >>> shift);
+            }
+        }
+        return true;
+    }
+
+    private static int base32HexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'v') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    private static final class HmacState {
+        private final Mac mac;
+        private final byte[] expected = new byte[HMAC_SHA1_BYTES];
+        private final byte[] computed = new byte[HMAC_SHA1_BYTES];
+        private byte[] token = new byte[64];
+
+        private HmacState(SecretKeySpec secretKey) {
+            try {
+                mac = Mac.getInstance(HMAC_SHA1_ALGORITHM);
+                mac.init(secretKey);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to initialise " + HMAC_SHA1_ALGORITHM, e);
+            }
+        }
+
+        /**
+         * HMACs the UTF-8 bytes of {@code value[start, end)} into {@link #computed}. ASCII tokens, which is all
+         * publicauth issues, are copied into a reused buffer; anything else is encoded the usual way.
+         */
+        private boolean computeHmac(String value, int start, int end) {
+            int length = end - start;
+            if (token.length < length) {
+                token = new byte[length];
+            }
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(start + i);
+                if (c >= 0x80) {
+                    mac.update(value.substring(start, end).getBytes(StandardCharsets.UTF_8));
+                    return doFinal();
+                }
+                token[i] = (byte) c;
+            }
+            mac.update(token, 0, length);
+            return doFinal();
+        }
+
+        private boolean doFinal() {
+            try {
+                mac.doFinal(computed, 0);
+                return true;
+            } catch (GeneralSecurityException e) {
+                mac.reset();
+                return false;
+            }
+        }
     }
 }
@@ -0,0 +1,59 @@
+package uk.gov.pay.api.filter;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import uk.gov.pay.api.resilience.Deadline;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * Gives every request a {@link Deadline}, {@code requestTimeoutMillis} after it arrived or sooner if the caller sent a
+ * shorter timeout (in milliseconds) in the {@code X-Request-Timeout} header. Callers cannot ask for less than
+ * {@code minCallerTimeoutMillis}, as the deadline becomes the read timeout of calls to connector, and a caller asking
+ * for a few milliseconds would otherwise only make those calls time out.
+ * <p>
+ * Calls to connector and publicauth made while serving the request are given no more than the time left, and are not
+ * made at all once it has run out, see {@link RestClientDeadlineFilter}.
+ */
+public class DeadlineFilter implements Filter {
+
+    public static final String HEADER_REQUEST_TIMEOUT = "X-Request-Timeout";
+
+    private final long requestTimeoutMillis;
+    private final long minCallerTimeoutMillis;
+
+    public DeadlineFilter(long requestTimeoutMillis, long minCallerTimeoutMillis) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.minCallerTimeoutMillis = minCallerTimeoutMillis;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
+        long timeoutMillis = requestTimeoutMillis;
+        long callerTimeoutMillis = NumberUtils.toLong(((HttpServletRequest) servletRequest).getHeader(HEADER_REQUEST_TIMEOUT), 0);
+        if (callerTimeoutMillis > 0) {
+            timeoutMillis = Math.min(timeoutMillis, Math.max(callerTimeoutMillis, minCallerTimeoutMillis));
+        }
+
+        Deadline.setCurrent(Deadline.after(timeoutMillis));
+        try {
+            filterChain.doFilter(servletRequest, servletResponse);
+        } finally {
+            Deadline.clearCurrent();
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
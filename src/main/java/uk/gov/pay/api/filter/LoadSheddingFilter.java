@@ -0,0 +1,176 @@
+package uk.gov.pay.api.filter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.api.resilience.AdaptiveConcurrencyLimit;
+import uk.gov.pay.api.resources.error.ApiErrorResponse.Code;
+
+import javax.inject.Inject;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static uk.gov.pay.api.resources.error.ApiErrorResponse.anApiErrorResponse;
+
+/**
+ * Turns requests away with 503 Service Unavailable, before any work is done on them, once the node is already working
+ * on as many as the {@link AdaptiveConcurrencyLimit} allows. This happens regardless of who sent them, unlike
+ * {@link RateLimiterFilter}.
+ * <p>
+ * Requests that create payments may use the whole limit, searches only part of it, so when the node is overloaded
+ * searches are turned away first. A request holds its place until it has completed, including requests suspended
+ * while waiting for connector.
+ * <p>
+ * The limit adapts to how long requests take, compared within each {@link Priority} so that searches are not held
+ * against single payment lookups. Requests turned away with 401 or 429 by the filters after this one never reached a
+ * resource, so how quickly they were answered says nothing about load and they are not counted.
+ */
+public class LoadSheddingFilter implements Filter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadSheddingFilter.class);
+    private static final String UTF8_CHARACTER_ENCODING = "utf-8";
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    public static final int LATENCY_CLASSES = Priority.values().length;
+
+    enum Priority {
+        CRITICAL(1.0),
+        NORMAL(0.9),
+        LOW(0.7);
+
+        private final double share;
+
+        Priority(double share) {
+            this.share = share;
+        }
+    }
+
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final String serviceBusyBody;
+
+    @Inject
+    public LoadSheddingFilter(AdaptiveConcurrencyLimit concurrencyLimit, ObjectMapper objectMapper) {
+        this.concurrencyLimit = concurrencyLimit;
+        this.serviceBusyBody = serialise(objectMapper);
+    }
+
+    private static String serialise(ObjectMapper objectMapper) {
+        try {
+            return objectMapper.writeValueAsString(anApiErrorResponse(Code.SERVICE_BUSY_ERROR));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Error processing json object to string", e);
+        }
+    }
+
+    static Priority priorityOf(String method, String path) {
+        if ("POST".equals(method) && "/v1/payments".equals(path)) {
+            return Priority.CRITICAL;
+        }
+        if ("GET".equals(method) && ("/v1/payments".equals(path) || "/v1/refunds".equals(path) || "/v1/events".equals(path))) {
+            return Priority.LOW;
+        }
+        return Priority.NORMAL;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {}
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+
+        final HttpServletRequest httpRequest = (HttpServletRequest) request;
+        final Priority priority = priorityOf(httpRequest.getMethod(), httpRequest.getRequestURI());
+
+        if (!concurrencyLimit.tryAcquire(priority.share)) {
+            LOGGER.info("Concurrency limit of {} reached. Sending response '503 Service Unavailable' to {} priority request",
+                    concurrencyLimit.getLimit(), priority);
+            setServiceBusyError((HttpServletResponse) response);
+            return;
+        }
+
+        final long startNanos = System.nanoTime();
+        boolean suspended = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingListener(priority, (HttpServletResponse) response, startNanos));
+                suspended = true;
+            }
+        } finally {
+            if (!suspended) {
+                release(priority, (HttpServletResponse) response, startNanos);
+            }
+        }
+    }
+
+    private void release(Priority priority, HttpServletResponse response, long startNanos) {
+        int status = response.getStatus();
+        if (status == HttpServletResponse.SC_UNAUTHORIZED || status == 429) {
+            concurrencyLimit.release();
+        } else {
+            concurrencyLimit.release(priority.ordinal(), System.nanoTime() - startNanos);
+        }
+    }
+
+    private void setServiceBusyError(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+        response.setContentType(APPLICATION_JSON);
+        response.setCharacterEncoding(UTF8_CHARACTER_ENCODING);
+        response.getWriter().print(serviceBusyBody);
+    }
+
+    @Override
+    public void destroy() {}
+
+    private class ReleasingListener implements AsyncListener {
+
+        private final Priority priority;
+        private final HttpServletResponse response;
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ReleasingListener(Priority priority, HttpServletResponse response, long startNanos) {
+            this.priority = priority;
+            this.response = response;
+            this.startNanos = startNanos;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                LoadSheddingFilter.this.release(priority, response, startNanos);
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -1,9 +1,15 @@
 package uk.gov.pay.api.filter;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.gov.pay.api.auth.AccountIdCache;
+import uk.gov.pay.api.auth.TokenDigest;
 import uk.gov.pay.api.filter.ratelimit.RateLimitException;
+import uk.gov.pay.api.filter.ratelimit.RateLimitPolicies;
+import uk.gov.pay.api.filter.ratelimit.RateLimitPolicy;
+import uk.gov.pay.api.filter.ratelimit.RateLimitStatus;
 import uk.gov.pay.api.filter.ratelimit.RateLimiter;
 import uk.gov.pay.api.resources.error.ApiErrorResponse.Code;
 import javax.inject.Inject;
@@ -23,24 +29,48 @@ import static uk.gov.pay.api.resources.error.ApiErrorResponse.anApiErrorResponse
  * Allow only a certain number of requests from the same source (given by the Authorization Header)
  * within the given time configured in the RateLimiter. See {@link RateLimiter}
  * <p>
- * 429 Too Many Requests will be returned when rate limit is reached.
+ * Sources are identified by a {@link TokenDigest} of the API key, so the key itself is never stored by the limiters.
+ * <p>
+ * Requests matching one of the {@link RateLimitPolicies} are counted separately, against that policy's limits.
+ * Account specific policies apply once the API key has been authenticated, see {@link AccountIdCache}.
+ * <p>
+ * Every response carries {@code RateLimit-Limit}, {@code RateLimit-Remaining} and {@code RateLimit-Reset} (seconds)
+ * headers, so clients can pace themselves. 429 Too Many Requests will be returned when rate limit is reached, with a
+ * {@code Retry-After} header giving the number of seconds until the next request would be allowed.
  */
 public class RateLimiterFilter implements Filter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RateLimiterFilter.class);
     private static final int TOO_MANY_REQUESTS_STATUS_CODE = 429;
     private static final String UTF8_CHARACTER_ENCODING = "utf-8";
+    static final String RATE_LIMIT_LIMIT_HEADER = "RateLimit-Limit";
+    static final String RATE_LIMIT_REMAINING_HEADER = "RateLimit-Remaining";
+    static final String RATE_LIMIT_RESET_HEADER = "RateLimit-Reset";
+    static final String RETRY_AFTER_HEADER = "Retry-After";
 
     private final RateLimiter rateLimiter;
-    private ObjectMapper objectMapper;
+    private final RateLimitPolicies rateLimitPolicies;
+    private final AccountIdCache accountIdCache;
+    private final String tooManyRequestsBody;
 
     /**
      * @param rateLimiter Limiter in number of requests per given time coming from the same source (Authorization)
      */
     @Inject
-    public RateLimiterFilter(RateLimiter rateLimiter, ObjectMapper objectMapper) {
+    public RateLimiterFilter(RateLimiter rateLimiter, RateLimitPolicies rateLimitPolicies, AccountIdCache accountIdCache,
+                             ObjectMapper objectMapper) {
         this.rateLimiter = rateLimiter;
-        this.objectMapper = objectMapper;
+        this.rateLimitPolicies = rateLimitPolicies;
+        this.accountIdCache = accountIdCache;
+        this.tooManyRequestsBody = serialise(objectMapper);
+    }
+
+    private static String serialise(ObjectMapper objectMapper) {
+        try {
+            return objectMapper.writeValueAsString(anApiErrorResponse(Code.TOO_MANY_REQUESTS_ERROR));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Error processing json object to string", e);
+        }
     }
 
     @Override
@@ -49,23 +79,47 @@ public class RateLimiterFilter implements Filter {
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
 
-        final String authorization = ((HttpServletRequest) request).getHeader("Authorization");
-        final String method = ((HttpServletRequest) request).getMethod();
+        final HttpServletRequest httpRequest = (HttpServletRequest) request;
+        final String method = httpRequest.getMethod();
+        final String tokenDigest = TokenDigest.fromAuthorizationHeader(httpRequest.getHeader("Authorization"));
+        final String accountId = rateLimitPolicies.hasAccountSpecificPolicies() ? accountIdCache.getAccountId(tokenDigest) : null;
+        final RateLimitPolicy policy = rateLimitPolicies.resolve(method, httpRequest.getRequestURI(), accountId);
 
+        final RateLimitStatus status;
         try {
-            rateLimiter.checkRateOf(method + "-" + authorization, method);
-            chain.doFilter(request, response);
+            if (policy == null) {
+                status = rateLimiter.checkRateOf(method + "-" + tokenDigest, method);
+            } else {
+                status = rateLimiter.checkRateOf(policy.getName() + ":" + method + "-" + tokenDigest, policy);
+            }
         } catch (RateLimitException e) {
             LOGGER.info("Rate limit reached for current service. Sending response '429 Too Many Requests'");
-            setTooManyRequestsError((HttpServletResponse) response);
-        } 
+            setTooManyRequestsError((HttpServletResponse) response, e.getStatus());
+            return;
+        }
+
+        setRateLimitHeaders((HttpServletResponse) response, status);
+        chain.doFilter(request, response);
+    }
+
+    private void setRateLimitHeaders(HttpServletResponse response, RateLimitStatus status) {
+        if (status == null) {
+            return;
+        }
+        response.setHeader(RATE_LIMIT_LIMIT_HEADER, Integer.toString(status.getLimit()));
+        response.setHeader(RATE_LIMIT_REMAINING_HEADER, Long.toString(status.getRemaining()));
+        response.setHeader(RATE_LIMIT_RESET_HEADER, Long.toString(status.getResetSeconds()));
     }
 
-    private void setTooManyRequestsError(HttpServletResponse response) throws IOException {
+    private void setTooManyRequestsError(HttpServletResponse response, RateLimitStatus status) throws IOException {
         response.setStatus(TOO_MANY_REQUESTS_STATUS_CODE);
+        setRateLimitHeaders(response, status);
+        if (status != null) {
+            response.setHeader(RETRY_AFTER_HEADER, Long.toString(Math.max(1, status.getResetSeconds())));
+        }
         response.setContentType(APPLICATION_JSON);
         response.setCharacterEncoding(UTF8_CHARACTER_ENCODING);
-        response.getWriter().print(objectMapper.writeValueAsString(anApiErrorResponse(Code.TOO_MANY_REQUESTS_ERROR)));
+        response.getWriter().print(tooManyRequestsBody);
     }
 
     @Override
@@ -0,0 +1,60 @@
+package uk.gov.pay.api.filter;
+
+import org.glassfish.jersey.client.ClientProperties;
+import uk.gov.pay.api.resilience.Deadline;
+import uk.gov.pay.api.resilience.DeadlineExceededException;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+
+import static uk.gov.pay.api.filter.DeadlineFilter.HEADER_REQUEST_TIMEOUT;
+
+/**
+ * Limits the read timeout of a call to the time left before the {@link Deadline} of the request being served, and
+ * passes the time left on in the {@code X-Request-Timeout} header. Once the deadline has passed, calls fail straight
+ * away with a {@link DeadlineExceededException} instead of being sent.
+ * <p>
+ * Calls made without a deadline are sent as they are.
+ */
+public class RestClientDeadlineFilter implements ClientRequestFilter {
+
+    @Override
+    public void filter(ClientRequestContext requestContext) {
+        Deadline deadline = (Deadline) requestContext.getProperty(Deadline.PROPERTY);
+        if (deadline == null) {
+            // async() requests carry it as a property, as this filter runs on a client thread for them
+            deadline = Deadline.current();
+        }
+        if (deadline == null) {
+            return;
+        }
+        limitToDeadline(requestContext, deadline);
+    }
+
+    /**
+     * Sets the read timeout and {@code X-Request-Timeout} header of a call to the time now left before
+     * {@code deadline}, e.g. again before a call is retried.
+     *
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    public static void limitToDeadline(ClientRequestContext requestContext, Deadline deadline) {
+        long remainingMillis = deadline.remainingMillis();
+        if (remainingMillis == 0) {
+            throw new DeadlineExceededException(String.format("Deadline passed before %s to %s was sent",
+                    requestContext.getMethod(), requestContext.getUri()));
+        }
+
+        requestContext.setProperty(Deadline.PROPERTY, deadline);
+        requestContext.setProperty(ClientProperties.READ_TIMEOUT, readTimeoutMillis(requestContext, remainingMillis));
+        requestContext.getHeaders().putSingle(HEADER_REQUEST_TIMEOUT, Long.toString(remainingMillis));
+    }
+
+    private static int readTimeoutMillis(ClientRequestContext requestContext, long remainingMillis) {
+        Object configured = requestContext.getConfiguration().getProperty(ClientProperties.READ_TIMEOUT);
+        long readTimeoutMillis = remainingMillis;
+        if (configured instanceof Integer && (Integer) configured > 0) {
+            readTimeoutMillis = Math.min(readTimeoutMillis, (Integer) configured);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, readTimeoutMillis);
+    }
+}
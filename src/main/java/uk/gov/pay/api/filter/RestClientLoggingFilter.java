@@ -25,9 +25,14 @@ public class RestClientLoggingFilter implements ClientRequestFilter, ClientRespo
     @Override
     public void filter(ClientRequestContext requestContext) throws IOException {
         timer.set(Stopwatch.createStarted());
-        requestId.set(StringUtils.defaultString(MDC.get(LoggingFilter.HEADER_REQUEST_ID)));
-
-        requestContext.getHeaders().add(HEADER_REQUEST_ID, requestId.get());
+        Object requestIdHeader = requestContext.getHeaders().getFirst(HEADER_REQUEST_ID);
+        if (requestIdHeader != null) {
+            // set by the caller for requests sent with async(), which this filter runs on a client thread for
+            requestId.set(requestIdHeader.toString());
+        } else {
+            requestId.set(StringUtils.defaultString(MDC.get(LoggingFilter.HEADER_REQUEST_ID)));
+            requestContext.getHeaders().add(HEADER_REQUEST_ID, requestId.get());
+        }
         logger.info(format("[%s] - %s to %s began",
                 requestId.get(),
                 requestContext.getMethod(),
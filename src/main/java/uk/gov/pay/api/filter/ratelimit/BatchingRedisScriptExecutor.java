@@ -0,0 +1,193 @@
+package uk.gov.pay.api.filter.ratelimit;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Coalesces script calls from concurrent requests into pipelined Redis round trips.
+ * <p>
+ * A single dispatcher thread takes the first waiting call, collects any others that arrive within {@code maxWait}
+ * (up to {@code maxBatchSize}), sends them all down one connection as a pipeline and hands each caller its own
+ * result. While a batch is in flight new calls queue up for the next one, so batches grow with load and the number
+ * of pooled connections needed stays at one.
+ * <p>
+ * The dispatcher runs from {@link #start()} to {@link #stop()}. Outside that, calls fail straight away rather than
+ * waiting for a dispatcher that is not there, and calls still queued when it stops fail with them.
+ * <p>
+ * Publishes the batch size and the time calls spend waiting to be dispatched under {@code metricsPrefix}.
+ */
+public class BatchingRedisScriptExecutor implements RedisScriptExecutor, Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchingRedisScriptExecutor.class);
+    private static final int QUEUED_BATCHES = 64;
+
+    private final JedisPool jedisPool;
+    private final long maxWaitNanos;
+    private final int maxBatchSize;
+    private final long resultTimeoutMillis;
+    private final BlockingQueue<PendingCall> queue;
+    private final Histogram batchSize;
+    private final Timer dispatchWait;
+
+    private volatile Thread dispatcher;
+    private volatile boolean running;
+
+    public BatchingRedisScriptExecutor(JedisPool jedisPool, long maxWaitMicros, int maxBatchSize, long resultTimeoutMillis,
+                                       MetricRegistry metricRegistry, String metricsPrefix) {
+        this.jedisPool = jedisPool;
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+        this.maxBatchSize = maxBatchSize;
+        this.resultTimeoutMillis = resultTimeoutMillis;
+        this.queue = new LinkedBlockingQueue<>(maxBatchSize * QUEUED_BATCHES);
+        this.batchSize = metricRegistry.histogram(MetricRegistry.name(metricsPrefix, "batch-size"));
+        this.dispatchWait = metricRegistry.timer(MetricRegistry.name(metricsPrefix, "dispatch-wait"));
+    }
+
+    @Override
+    public Object eval(RedisScript script, List<byte[]> keys, List<byte[]> args) throws Exception {
+        if (!running) {
+            throw notRunning();
+        }
+        PendingCall call = new PendingCall(script, keys, args);
+        if (!queue.offer(call)) {
+            throw new IllegalStateException("Too many Redis calls waiting to be dispatched");
+        }
+        // stopped while queueing, after the queue was drained
+        if (!running && queue.remove(call)) {
+            throw notRunning();
+        }
+        try {
+            return call.result.get(resultTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } catch (TimeoutException | InterruptedException e) {
+            call.result.cancel(false);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "redis-rate-limit-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @Override
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+            dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+            dispatcher = null;
+        }
+        List<PendingCall> undispatched = new ArrayList<>();
+        queue.drainTo(undispatched);
+        undispatched.forEach(call -> call.result.completeExceptionally(notRunning()));
+    }
+
+    private static IllegalStateException notRunning() {
+        return new IllegalStateException("Redis calls are not being dispatched, as the executor is not running");
+    }
+
+    private void dispatchLoop() {
+        List<PendingCall> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                PendingCall first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = first.enqueuedAt + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingCall next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                execute(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException e) {
+                LOGGER.error("Unexpected error dispatching batched Redis calls", e);
+            } finally {
+                batch.forEach(call -> call.result.completeExceptionally(new IllegalStateException("Batch was not executed")));
+                batch.clear();
+            }
+        }
+    }
+
+    private void execute(List<PendingCall> batch) {
+        long dispatchedAt = System.nanoTime();
+        batchSize.update(batch.size());
+        batch.forEach(call -> dispatchWait.update(dispatchedAt - call.enqueuedAt, TimeUnit.NANOSECONDS));
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<Object>> responses = new ArrayList<>(batch.size());
+            for (PendingCall call : batch) {
+                responses.add(pipeline.evalsha(call.script.getSha(), call.keys, call.args));
+            }
+            pipeline.sync();
+
+            for (int i = 0; i < batch.size(); i++) {
+                PendingCall call = batch.get(i);
+                try {
+                    call.result.complete(responses.get(i).get());
+                } catch (JedisDataException e) {
+                    if (RedisScript.isNoScriptError(e)) {
+                        // Script not cached yet on this Redis node; running it once with EVAL caches it for next time.
+                        call.result.complete(call.script.eval(jedis, call.keys, call.args));
+                    } else {
+                        call.result.completeExceptionally(e);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(call -> call.result.completeExceptionally(e));
+        }
+    }
+
+    private static final class PendingCall {
+        private final RedisScript script;
+        private final List<byte[]> keys;
+        private final List<byte[]> args;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private PendingCall(RedisScript script, List<byte[]> keys, List<byte[]> args) {
+            this.script = script;
+            this.keys = keys;
+            this.args = args;
+        }
+    }
+}
@@ -1,45 +1,102 @@
 package uk.gov.pay.api.filter.ratelimit;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import javax.ws.rs.HttpMethod;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Keeps a fixed window counter per source in a fixed size table, keyed by a 64 bit hash of the source, so checking a
+ * rate neither allocates a map key nor lets the table grow with the number of sources.
+ * <p>
+ * A source's counter is looked for in {@value #PROBES} consecutive slots from the one its hash maps to. If it is not
+ * there, the empty slot or else the counter with the oldest window among them is replaced, so expired counters are
+ * reused when they are found rather than swept. Only when all of those slots hold counters still in their window does
+ * one of them get replaced early, in which case its source starts a fresh window the next time it is seen.
+ */
 public class LocalRateLimiter {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(LocalRateLimiter.class);
+    static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int PROBES = 8;
+    private static final long FNV_64_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_64_PRIME = 0x100000001b3L;
 
     private final int noOfReqPerNode;
     private final int noOfReqForPostPerNode;
     private final int perMillis;
 
-    private final Cache<String, RateLimit> cache;
-
+    private final long clockOrigin = System.nanoTime();
+    private final AtomicReferenceArray<RateLimit> rateLimits;
+    private final int slotMask;
 
     public LocalRateLimiter(int noOfReqPerNode, int noOfReqForPostPerNode, int perMillis) {
+        this(noOfReqPerNode, noOfReqForPostPerNode, perMillis, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of slots, a power of two
+     */
+    LocalRateLimiter(int noOfReqPerNode, int noOfReqForPostPerNode, int perMillis, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two, was " + capacity);
+        }
         this.noOfReqPerNode = noOfReqPerNode;
         this.noOfReqForPostPerNode = noOfReqForPostPerNode;
         this.perMillis = perMillis;
+        this.rateLimits = new AtomicReferenceArray<>(capacity);
+        this.slotMask = capacity - 1;
+    }
 
-        this.cache = CacheBuilder.newBuilder()
-                .expireAfterAccess(perMillis, TimeUnit.MILLISECONDS)
-                .build();
+    RateLimitStatus checkRateOf(String key, String method) throws RateLimitException {
+        return checkRateOf(key, getNoOfRequestsForMethod(method));
     }
 
-    void checkRateOf(String key, String method) throws RateLimitException {
-        try {
-            cache.get(key, () -> new RateLimit(getNoOfRequestsForMethod(method), perMillis)).updateAllowance();
-        } catch (ExecutionException e) {
-            //ExecutionException is thrown when the valueLoader (cache.get())  throws a checked exception.
-            //We just create a new instance (RateLimit) so no exceptions will be thrown, this should never happen.
-            LOGGER.error("Unexpected error creating a Rate Limiter object in cache", e);
+    RateLimitStatus checkRateOf(String key, int noOfReqPerNode) throws RateLimitException {
+        long nowMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - clockOrigin);
+        return rateLimitFor(hash(key), noOfReqPerNode, nowMillis).updateAllowance(nowMillis);
+    }
+
+    private RateLimit rateLimitFor(long hashedKey, int noOfReqPerNode, long nowMillis) {
+        int firstSlot = (int) (hashedKey ^ (hashedKey >>> 32)) & slotMask;
+        while (true) {
+            int replaceableSlot = firstSlot;
+            RateLimit replaceable = null;
+            long replaceableWindowStart = Long.MAX_VALUE;
+            for (int i = 0; i < PROBES; i++) {
+                int slot = (firstSlot + i) & slotMask;
+                RateLimit rateLimit = rateLimits.get(slot);
+                if (rateLimit == null) {
+                    if (replaceableWindowStart != Long.MIN_VALUE) {
+                        replaceableSlot = slot;
+                        replaceable = null;
+                        replaceableWindowStart = Long.MIN_VALUE;
+                    }
+                } else if (rateLimit.getKey() == hashedKey) {
+                    return rateLimit;
+                } else if (rateLimit.getWindowStart() < replaceableWindowStart) {
+                    replaceableSlot = slot;
+                    replaceable = rateLimit;
+                    replaceableWindowStart = rateLimit.getWindowStart();
+                }
+            }
+            RateLimit rateLimit = new RateLimit(hashedKey, noOfReqPerNode, perMillis, nowMillis);
+            if (rateLimits.compareAndSet(replaceableSlot, replaceable, rateLimit)) {
+                return rateLimit;
+            }
+        }
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the key, so the map holds a fixed size key rather than the full Authorization header.
+     */
+    private static long hash(String key) {
+        long hash = FNV_64_OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= FNV_64_PRIME;
         }
+        return hash;
     }
-    
+
     private int getNoOfRequestsForMethod(String method) {
         if (HttpMethod.POST.equals(method)) {
             return noOfReqForPostPerNode;
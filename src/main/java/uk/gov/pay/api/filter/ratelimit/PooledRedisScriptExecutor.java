@@ -0,0 +1,25 @@
+package uk.gov.pay.api.filter.ratelimit;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.List;
+
+/**
+ * Borrows a connection from the pool for every script call.
+ */
+public class PooledRedisScriptExecutor implements RedisScriptExecutor {
+
+    private final JedisPool jedisPool;
+
+    public PooledRedisScriptExecutor(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    @Override
+    public Object eval(RedisScript script, List<byte[]> keys, List<byte[]> args) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return script.eval(jedis, keys, args);
+        }
+    }
+}
@@ -1,40 +1,66 @@
 package uk.gov.pay.api.filter.ratelimit;
 
-import java.time.Duration;
-import java.time.Instant;
-
-import static java.time.temporal.ChronoUnit.MILLIS;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Fixed window counter for a single source. The start of the current window (milliseconds on the monotonic clock
+ * of the owning {@link LocalRateLimiter}) and the number of requests seen in it are packed into one long, so the
+ * allowance can be updated with a single compare-and-set rather than a lock.
+ */
 final class RateLimit {
 
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final long key;
     private final int noOfReq;
     private final int perMillis;
 
-    private Instant created;
-    private int requestCount;
+    private final AtomicLong state;
 
-    RateLimit(int noOfReq, int perMillis) {
+    RateLimit(long key, int noOfReq, int perMillis, long nowMillis) {
+        this.key = key;
         this.noOfReq = noOfReq;
         this.perMillis = perMillis;
-        this.requestCount = 0;
-        this.created = Instant.now().truncatedTo(MILLIS);
+        this.state = new AtomicLong(pack(nowMillis, 0));
     }
 
     /**
-     * This block needs to be synchronous. Each RateLimit object will be shared between requests
-     * from the same source (Service), so is not shared across all the requests.
-     *
      * @throws RateLimitException
      */
-    synchronized void updateAllowance() throws RateLimitException {
-        requestCount += 1;
-        Instant now = Instant.now().truncatedTo(MILLIS);
-        if (Duration.between(created, now).toMillis() >= perMillis) {
-            requestCount = 1;
-            created = now;
-        }
-        if (requestCount > noOfReq) {
-            throw new RateLimitException();
+    RateLimitStatus updateAllowance(long nowMillis) throws RateLimitException {
+        while (true) {
+            long current = state.get();
+            long windowStart = current >>> COUNT_BITS;
+            long requestCount = current & COUNT_MASK;
+
+            long next;
+            if (nowMillis - windowStart >= perMillis) {
+                windowStart = nowMillis;
+                requestCount = 1;
+                next = pack(nowMillis, 1);
+            } else if (requestCount >= noOfReq) {
+                throw new RateLimitException(new RateLimitStatus(noOfReq, 0, windowStart + perMillis - nowMillis));
+            } else {
+                requestCount++;
+                next = current + 1;
+            }
+
+            if (state.compareAndSet(current, next)) {
+                return new RateLimitStatus(noOfReq, noOfReq - requestCount, windowStart + perMillis - nowMillis);
+            }
         }
     }
+
+    long getKey() {
+        return key;
+    }
+
+    long getWindowStart() {
+        return state.get() >>> COUNT_BITS;
+    }
+
+    private static long pack(long windowStartMillis, long requestCount) {
+        return (windowStartMillis << COUNT_BITS) | requestCount;
+    }
 }
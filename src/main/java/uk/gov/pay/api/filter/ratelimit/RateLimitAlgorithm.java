@@ -0,0 +1,19 @@
+package uk.gov.pay.api.filter.ratelimit;
+
+/**
+ * Algorithm used by {@link RedisRateLimiter} to decide whether a request is within the rate.
+ */
+public enum RateLimitAlgorithm {
+
+    /**
+     * Counts requests in fixed windows of perMillis. Cheap, but allows up to twice the rate in a burst that
+     * straddles a window boundary, and only supports windows of up to 60 seconds.
+     */
+    FIXED_WINDOW,
+
+    /**
+     * Generic Cell Rate Algorithm: requests are spaced perMillis / noOfReq apart with a burst allowance of noOfReq,
+     * so there are no window edges to burst across. Needs only a single timestamp per key in Redis.
+     */
+    GCRA
+}
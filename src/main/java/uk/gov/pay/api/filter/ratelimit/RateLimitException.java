@@ -1,4 +1,25 @@
 package uk.gov.pay.api.filter.ratelimit;
 
 public class RateLimitException extends Exception {
+
+    private final RateLimitStatus status;
+
+    /**
+     * Thrown on every rejected request and always handled by the caller, so the stack trace is not filled in.
+     */
+    public RateLimitException() {
+        this(null);
+    }
+
+    public RateLimitException(RateLimitStatus status) {
+        super(null, null, false, false);
+        this.status = status;
+    }
+
+    /**
+     * @return the status of the source that was limited, or null if not known
+     */
+    public RateLimitStatus getStatus() {
+        return status;
+    }
 }
@@ -0,0 +1,53 @@
+package uk.gov.pay.api.filter.ratelimit;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A block of permits leased from Redis for one rate limit window. Permits are spent locally, without going back to
+ * Redis, until they run out or the window the lease was taken for has passed.
+ */
+final class RateLimitLease {
+
+    private final byte[] windowKey;
+    private final AtomicInteger remaining;
+    private volatile long unleased;
+
+    /**
+     * @param unleased permits for the window still left in Redis when the lease was taken
+     */
+    RateLimitLease(byte[] windowKey, int permits, long unleased) {
+        this.windowKey = windowKey;
+        this.remaining = new AtomicInteger(permits);
+        this.unleased = unleased;
+    }
+
+    /**
+     * @return the number of permits left in the lease after taking one, or -1 if none could be taken
+     */
+    int tryAcquire(byte[] currentWindowKey) {
+        if (!Arrays.equals(windowKey, currentWindowKey)) {
+            return -1;
+        }
+        return remaining.getAndUpdate(permits -> permits > 0 ? permits - 1 : 0) - 1;
+    }
+
+    /**
+     * Used when several requests on this node renewed the lease at the same moment: the permits every one of them
+     * was charged for in Redis are kept, rather than only those of whichever renewal was stored last.
+     *
+     * @return this lease with the permits of {@code renewed} added, or {@code renewed} if it is for another window
+     */
+    RateLimitLease combine(RateLimitLease renewed) {
+        if (!Arrays.equals(windowKey, renewed.windowKey)) {
+            return renewed;
+        }
+        remaining.addAndGet(renewed.remaining.get());
+        unleased = Math.min(unleased, renewed.unleased);
+        return this;
+    }
+
+    long getUnleased() {
+        return unleased;
+    }
+}
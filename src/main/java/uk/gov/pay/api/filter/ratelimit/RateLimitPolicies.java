@@ -0,0 +1,42 @@
+package uk.gov.pay.api.filter.ratelimit;
+
+import uk.gov.pay.api.app.config.RateLimitPolicyConfig;
+
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The configured {@link RateLimitPolicy}s, compiled once at startup. The first policy matching a request applies;
+ * requests matching none of them are limited by the default per method limits.
+ */
+public class RateLimitPolicies {
+
+    private final RateLimitPolicy[] policies;
+    private final boolean accountSpecific;
+
+    public RateLimitPolicies(List<RateLimitPolicyConfig> policyConfigs) {
+        List<RateLimitPolicy> compiled = policyConfigs.stream().map(RateLimitPolicy::new).collect(toList());
+        this.policies = compiled.toArray(new RateLimitPolicy[0]);
+        this.accountSpecific = compiled.stream().anyMatch(RateLimitPolicy::isAccountSpecific);
+    }
+
+    /**
+     * @return the policy for the request, or null if the default limits apply
+     */
+    public RateLimitPolicy resolve(String method, String path, String accountId) {
+        for (RateLimitPolicy policy : policies) {
+            if (policy.matches(method, path, accountId)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return whether any policy depends on the account ID, which is only worth looking up if so
+     */
+    public boolean hasAccountSpecificPolicies() {
+        return accountSpecific;
+    }
+}
@@ -0,0 +1,71 @@
+package uk.gov.pay.api.filter.ratelimit;
+
+import uk.gov.pay.api.app.config.RateLimitPolicyConfig;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A rate limit for the requests matching an HTTP method, a path template such as {@code /v1/payments/{paymentId}}
+ * and/or an account ID. Anything left out of the policy matches any request.
+ */
+public class RateLimitPolicy {
+
+    private static final Pattern PATH_PARAMETER = Pattern.compile("\\{[^/}]+}");
+
+    private final String name;
+    private final String method;
+    private final Pattern path;
+    private final String accountId;
+    private final int noOfReq;
+    private final int noOfReqPerNode;
+
+    RateLimitPolicy(RateLimitPolicyConfig config) {
+        if (config.getNoOfReq() < 1 || config.getNoOfReqPerNode() < 1) {
+            throw new IllegalArgumentException("Rate limit policy " + config.getName() + " must allow at least 1 request");
+        }
+        this.name = config.getName();
+        this.method = config.getMethod();
+        this.path = config.getPath() == null ? null : compilePathTemplate(config.getPath());
+        this.accountId = config.getAccountId();
+        this.noOfReq = config.getNoOfReq();
+        this.noOfReqPerNode = config.getNoOfReqPerNode();
+    }
+
+    boolean matches(String requestMethod, String requestPath, String requestAccountId) {
+        return (method == null || method.equalsIgnoreCase(requestMethod))
+                && (accountId == null || accountId.equals(requestAccountId))
+                && (path == null || (requestPath != null && path.matcher(requestPath).matches()));
+    }
+
+    boolean isAccountSpecific() {
+        return accountId != null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getNoOfReq() {
+        return noOfReq;
+    }
+
+    public int getNoOfReqPerNode() {
+        return noOfReqPerNode;
+    }
+
+    /**
+     * Each {@code {parameter}} in the template matches a single path segment; everything else is literal.
+     */
+    private static Pattern compilePathTemplate(String template) {
+        StringBuilder regex = new StringBuilder();
+        Matcher parameter = PATH_PARAMETER.matcher(template);
+        int literalStart = 0;
+        while (parameter.find()) {
+            regex.append(Pattern.quote(template.substring(literalStart, parameter.start()))).append("[^/]+");
+            literalStart = parameter.end();
+        }
+        regex.append(Pattern.quote(template.substring(literalStart))).append("/?");
+        return Pattern.compile(regex.toString());
+    }
+}
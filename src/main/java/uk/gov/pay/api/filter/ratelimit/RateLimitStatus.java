@@ -0,0 +1,38 @@
+package uk.gov.pay.api.filter.ratelimit;
+
+/**
+ * Where a source stands against its rate limit after a request: how many requests it is allowed, how many of those
+ * are left, and how long until the allowance is replenished (or, once it has been used up, until the next request
+ * would be allowed).
+ */
+public final class RateLimitStatus {
+
+    private final int limit;
+    private final long remaining;
+    private final long resetMillis;
+
+    public RateLimitStatus(int limit, long remaining, long resetMillis) {
+        this.limit = limit;
+        this.remaining = Math.max(0, remaining);
+        this.resetMillis = Math.max(0, resetMillis);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public long getRemaining() {
+        return remaining;
+    }
+
+    public long getResetMillis() {
+        return resetMillis;
+    }
+
+    /**
+     * @return reset time rounded up to whole seconds, as used in response headers
+     */
+    public long getResetSeconds() {
+        return (resetMillis + 999) / 1000;
+    }
+}
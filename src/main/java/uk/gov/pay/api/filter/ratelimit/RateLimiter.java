@@ -3,6 +3,7 @@ package uk.gov.pay.api.filter.ratelimit;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.gov.pay.api.resilience.CircuitBreaker;
 
 public class RateLimiter {
 
@@ -10,20 +11,59 @@ public class RateLimiter {
 
     private final LocalRateLimiter localRateLimiter;
     private final RedisRateLimiter redisRateLimiter;
+    private final CircuitBreaker redisCircuitBreaker;
 
+    /**
+     * @param redisCircuitBreaker while open, requests are checked against the {@link LocalRateLimiter} straight
+     *                            away instead of waiting for each call to Redis to fail first
+     */
     @Inject
-    public RateLimiter(LocalRateLimiter localRateLimiter, RedisRateLimiter redisRateLimiter) {
+    public RateLimiter(LocalRateLimiter localRateLimiter, RedisRateLimiter redisRateLimiter, CircuitBreaker redisCircuitBreaker) {
         this.localRateLimiter = localRateLimiter;
         this.redisRateLimiter = redisRateLimiter;
+        this.redisCircuitBreaker = redisCircuitBreaker;
     }
 
-    public void checkRateOf(String key, String method) throws RateLimitException {
+    /**
+     * @return where the key stands against its limit, for reporting back to the client
+     */
+    public RateLimitStatus checkRateOf(String key, String method) throws RateLimitException {
+        return check(() -> redisRateLimiter.checkRateOf(key, method), () -> localRateLimiter.checkRateOf(key, method));
+    }
+
+    /**
+     * Checks the rate of a key against the limits of a {@link RateLimitPolicy} rather than the per method defaults.
+     */
+    public RateLimitStatus checkRateOf(String key, RateLimitPolicy policy) throws RateLimitException {
+        return check(() -> redisRateLimiter.checkRateOf(key, policy.getNoOfReq()),
+                () -> localRateLimiter.checkRateOf(key, policy.getNoOfReqPerNode()));
+    }
+
+    private RateLimitStatus check(RedisCheck redisCheck, LocalCheck localCheck) throws RateLimitException {
+        if (!redisCircuitBreaker.allowRequest()) {
+            return localCheck.run();
+        }
+
         try {
-            redisRateLimiter.checkRateOf(key, method);
+            RateLimitStatus status = redisCheck.run();
+            redisCircuitBreaker.recordSuccess();
+            return status;
+        } catch (RateLimitException e) {
+            redisCircuitBreaker.recordSuccess();
+            throw e;
         } catch (RedisException e) {
+            redisCircuitBreaker.recordFailure();
             LOGGER.warn("Exception occurred checking rate limits using RedisRateLimiter, falling back to LocalRateLimiter");
 
-            localRateLimiter.checkRateOf(key, method);
+            return localCheck.run();
         }
     }
+
+    private interface RedisCheck {
+        RateLimitStatus run() throws RedisException, RateLimitException;
+    }
+
+    private interface LocalCheck {
+        RateLimitStatus run() throws RateLimitException;
+    }
 }
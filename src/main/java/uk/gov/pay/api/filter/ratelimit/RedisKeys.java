@@ -0,0 +1,58 @@
+package uk.gov.pay.api.filter.ratelimit;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Ints;
+import uk.gov.pay.api.auth.TokenDigest;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary encoding of rate limiter keys for Redis.
+ * <p>
+ * Rate limiter keys are {@code <HTTP method>-<token digest>} (see {@link uk.gov.pay.api.filter.RateLimiterFilter}).
+ * The base32hex token digest is stored as its 20 raw bytes, and fixed window numbers as 4 bytes, which takes a
+ * fixed window key from around 40 characters down to 29 bytes. Keys in any other format are stored as UTF-8.
+ */
+final class RedisKeys {
+
+    private static final BaseEncoding TOKEN_DIGEST_ENCODING = BaseEncoding.base32Hex().lowerCase().omitPadding();
+
+    private static final byte FIXED_WINDOW_TYPE = 'w';
+    private static final byte GCRA_TYPE = 'g';
+
+    static byte[] fixedWindowKey(String key, int window) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+        out.write(FIXED_WINDOW_TYPE);
+        writeKey(out, key);
+        out.write(Ints.toByteArray(window), 0, Ints.BYTES);
+        return out.toByteArray();
+    }
+
+    static byte[] gcraKey(String key) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+        out.write(GCRA_TYPE);
+        writeKey(out, key);
+        return out.toByteArray();
+    }
+
+    private static void writeKey(ByteArrayOutputStream out, String key) {
+        int digestStart = key.length() - TokenDigest.HMAC_SHA1_LENGTH;
+        if (digestStart > 1 && key.charAt(digestStart - 1) == '-') {
+            try {
+                byte[] digest = TOKEN_DIGEST_ENCODING.decode(key.substring(digestStart));
+                byte[] method = key.substring(0, digestStart - 1).getBytes(StandardCharsets.UTF_8);
+                out.write(method, 0, method.length);
+                out.write(digest, 0, digest.length);
+                return;
+            } catch (IllegalArgumentException e) {
+                // not a base32hex token digest, fall through to the plain encoding
+            }
+        }
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private RedisKeys() {
+    }
+}
@@ -1,69 +1,219 @@
 package uk.gov.pay.api.filter.ratelimit;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
-import com.google.inject.OutOfScopeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Protocol;
 
 import javax.ws.rs.HttpMethod;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoField;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class RedisRateLimiter {
     private static final Logger LOGGER = LoggerFactory.getLogger(RedisRateLimiter.class);
 
+    /**
+     * Increments the counter for the window by ARGV[2] and sets its expiry in a single atomic step, so no lock is
+     * needed around the INCRBY/EXPIRE pair and a counter can never be left behind without a TTL.
+     */
+    static final RedisScript INCREMENT_WITH_EXPIRY_SCRIPT = new RedisScript(
+            "local count = redis.call('incrby', KEYS[1], ARGV[2]) " +
+            "if count == tonumber(ARGV[2]) or redis.call('pttl', KEYS[1]) < 0 then " +
+            "  redis.call('pexpire', KEYS[1], ARGV[1]) " +
+            "end " +
+            "return count");
+
+    /**
+     * GCRA: KEYS[1] holds the theoretical arrival time (TAT) in microseconds, ARGV[1] is the emission interval and
+     * ARGV[2] the burst tolerance, both in microseconds. Redis' own clock is used so that all nodes agree on "now".
+     * Returns {1, remaining, microseconds until fully replenished} when the request is allowed and
+     * {0, 0, microseconds until the next request would be allowed} when it is limited.
+     */
+    static final RedisScript GCRA_SCRIPT = new RedisScript(
+            "redis.replicate_commands() " +
+            "local time = redis.call('time') " +
+            "local now = tonumber(time[1]) * 1000000 + tonumber(time[2]) " +
+            "local emission = tonumber(ARGV[1]) " +
+            "local tolerance = tonumber(ARGV[2]) " +
+            "local tat = tonumber(redis.call('get', KEYS[1]) or now) " +
+            "if tat < now then tat = now end " +
+            "if tat - now > tolerance then return {0, 0, tat - now - tolerance} end " +
+            "local newTat = tat + emission " +
+            "redis.call('set', KEYS[1], string.format('%d', newTat), 'px', math.ceil((newTat - now) / 1000)) " +
+            "return {1, math.floor((tolerance - (newTat - now)) / emission) + 1, newTat - now}");
+
+    /**
+     * Fixed windows restart at the top of every minute, see {@link #getKeyForWindow}.
+     */
+    public static final int MAX_FIXED_WINDOW_MILLIS = 60000;
+
     private final int noOfReq;
     private final int noOfReqForPost;
     private final int perMillis;
-    private JedisPool jedisPool;
+    private final RateLimitAlgorithm algorithm;
+    private final int leasePercentage;
+    private final Cache<String, RateLimitLease> leases;
+    private final RedisScriptExecutor scriptExecutor;
 
-    @Inject
     public RedisRateLimiter(int noOfReq, int noOfReqForPost, int perMillis, JedisPool jedisPool) {
+        this(noOfReq, noOfReqForPost, perMillis, RateLimitAlgorithm.FIXED_WINDOW, 0, jedisPool);
+    }
+
+    public RedisRateLimiter(int noOfReq, int noOfReqForPost, int perMillis, RateLimitAlgorithm algorithm,
+                            int leasePercentage, JedisPool jedisPool) {
+        this(noOfReq, noOfReqForPost, perMillis, algorithm, leasePercentage, new PooledRedisScriptExecutor(jedisPool));
+    }
+
+    /**
+     * @param leasePercentage when greater than 0 (fixed window only), each node takes this percentage of the
+     *                        allowance for a window from Redis in one go and spends it locally, only going back to
+     *                        Redis once the lease is used up or the window has passed
+     * @param scriptExecutor  how scripts are sent to Redis, see {@link BatchingRedisScriptExecutor}
+     */
+    @Inject
+    public RedisRateLimiter(int noOfReq, int noOfReqForPost, int perMillis, RateLimitAlgorithm algorithm,
+                            int leasePercentage, RedisScriptExecutor scriptExecutor) {
+        // checked here rather than per request, where an exception would be taken for Redis being unavailable
+        if (noOfReq < 1 || noOfReqForPost < 1) {
+            throw new IllegalArgumentException("noOfReq and noOfReqForPost must be at least 1");
+        }
+        if (perMillis < 1) {
+            throw new IllegalArgumentException("perMillis must be at least 1, was " + perMillis);
+        }
+        if (algorithm == RateLimitAlgorithm.FIXED_WINDOW && perMillis > MAX_FIXED_WINDOW_MILLIS) {
+            throw new IllegalArgumentException("perMillis over " + MAX_FIXED_WINDOW_MILLIS + " is only supported by GCRA, was " + perMillis);
+        }
+        if (algorithm == RateLimitAlgorithm.GCRA && !hasEmissionInterval(Math.max(noOfReq, noOfReqForPost), perMillis)) {
+            throw new IllegalArgumentException("GCRA cannot allow more than one request per microsecond");
+        }
         this.noOfReq = noOfReq;
         this.noOfReqForPost = noOfReqForPost;
         this.perMillis = perMillis;
-        this.jedisPool = jedisPool;
+        this.algorithm = algorithm;
+        this.leasePercentage = leasePercentage;
+        this.scriptExecutor = scriptExecutor;
+        this.leases = CacheBuilder.newBuilder()
+                .expireAfterAccess(perMillis, TimeUnit.MILLISECONDS)
+                .build();
+
+        if (leasePercentage > 0 && algorithm != RateLimitAlgorithm.FIXED_WINDOW) {
+            LOGGER.warn("Rate limit leases are only supported with the FIXED_WINDOW algorithm and will not be used");
+        }
     }
 
     /**
      * @throws RateLimitException
      */
-    synchronized void checkRateOf(String key, String method)
+    RateLimitStatus checkRateOf(String key, String method)
+            throws RedisException, RateLimitException {
+        return checkRateOf(key, getNoOfReqForMethod(method));
+    }
+
+    /**
+     * @param noOfReqForMethod number of requests allowed per perMillis for the key
+     */
+    RateLimitStatus checkRateOf(String key, int noOfReqForMethod)
             throws RedisException, RateLimitException {
 
-        Long count = null;
+        if (algorithm == RateLimitAlgorithm.GCRA) {
+            return checkRateUsingGcra(key, noOfReqForMethod);
+        }
+        return checkRateUsingFixedWindow(key, noOfReqForMethod);
+    }
+
+    private RateLimitStatus checkRateUsingFixedWindow(String key, int noOfReqForMethod) throws RedisException, RateLimitException {
+        int leaseSize = getLeaseSize(noOfReqForMethod);
+        LocalDateTime now = LocalDateTime.now();
+        byte[] windowKey = getKeyForWindow(key, now);
+        long resetMillis = getMillisUntilWindowEnds(now);
+        Long count;
 
         try {
-            count = updateAllowance(key);
+            RateLimitLease lease = leases.getIfPresent(key);
+            int leaseRemaining = lease == null ? -1 : lease.tryAcquire(windowKey);
+            if (leaseRemaining >= 0) {
+                return new RateLimitStatus(noOfReqForMethod, lease.getUnleased() + leaseRemaining, resetMillis);
+            }
+            count = updateAllowance(windowKey, leaseSize);
         } catch (Exception e) {
-            // Exception possible if redis is unavailable or perMillis is too high        
+            // Exception possible if redis is unavailable
             throw new RedisException();
         }
 
-        if (count != null && count > getNoOfReqForMethod(method)) {
-            LOGGER.info(String.format("rate exceeded - count: %d, rate: %d", count, getNoOfReqForMethod(method)));
-            throw new RateLimitException();
+        if (count == null) {
+            return new RateLimitStatus(noOfReqForMethod, noOfReqForMethod, resetMillis);
+        }
+
+        long previousCount = count - leaseSize;
+        if (previousCount >= noOfReqForMethod) {
+            LOGGER.info(String.format("rate exceeded - count: %d, rate: %d", count, noOfReqForMethod));
+            throw new RateLimitException(new RateLimitStatus(noOfReqForMethod, 0, resetMillis));
+        }
+
+        long unleased = Math.max(0, noOfReqForMethod - count);
+        if (leaseSize > 1) {
+            // One permit is spent by this request; the rest of what is still within the limit is kept locally.
+            int permitsGranted = (int) Math.min(leaseSize, noOfReqForMethod - previousCount);
+            leases.asMap().merge(key, new RateLimitLease(windowKey, permitsGranted - 1, unleased), RateLimitLease::combine);
+            return new RateLimitStatus(noOfReqForMethod, unleased + permitsGranted - 1, resetMillis);
         }
+        return new RateLimitStatus(noOfReqForMethod, unleased, resetMillis);
     }
 
-    synchronized private Long updateAllowance(String key) {
-        String derivedKey = getKeyForWindow(key);
-        
-        try (Jedis jedis = getResource()) {
-            Long count = jedis.incr(derivedKey);
-            
-            if (count == 1) {
-                jedis.expire(derivedKey, perMillis / 1000);
-            }
-            return count;
+    /**
+     * GCRA spaces requests {@code perMillis / noOfReq} apart in whole microseconds. An interval of 0 would let every
+     * request through.
+     */
+    public static boolean hasEmissionInterval(int noOfReq, int perMillis) {
+        return perMillis * 1000L / noOfReq > 0;
+    }
+
+    private int getLeaseSize(int noOfReqForMethod) {
+        if (leasePercentage <= 0 || algorithm != RateLimitAlgorithm.FIXED_WINDOW) {
+            return 1;
         }
+        return Math.max(1, noOfReqForMethod * leasePercentage / 100);
+    }
+
+    @SuppressWarnings("unchecked")
+    private RateLimitStatus checkRateUsingGcra(String key, int noOfReqForMethod) throws RedisException, RateLimitException {
+        long emissionIntervalMicros = perMillis * 1000L / noOfReqForMethod;
+        long burstToleranceMicros = emissionIntervalMicros * (noOfReqForMethod - 1);
 
+        List<Long> result;
+        try {
+            result = (List<Long>) scriptExecutor.eval(GCRA_SCRIPT,
+                    Collections.singletonList(RedisKeys.gcraKey(key)),
+                    Arrays.asList(Protocol.toByteArray(emissionIntervalMicros), Protocol.toByteArray(burstToleranceMicros)));
+        } catch (Exception e) {
+            throw new RedisException();
+        }
+
+        if (result == null) {
+            return new RateLimitStatus(noOfReqForMethod, noOfReqForMethod, 0);
+        }
+
+        RateLimitStatus status = new RateLimitStatus(noOfReqForMethod, result.get(1),
+                TimeUnit.MICROSECONDS.toMillis(result.get(2) + 999));
+        if (result.get(0) == 0) {
+            LOGGER.info(String.format("rate exceeded - rate: %d per %dms", noOfReqForMethod, perMillis));
+            throw new RateLimitException(status);
+        }
+        return status;
     }
 
-    private Jedis getResource() {
-        return jedisPool.getResource();
+    private Long updateAllowance(byte[] windowKey, int increment) throws Exception {
+        List<byte[]> keys = Collections.singletonList(windowKey);
+        List<byte[]> args = Arrays.asList(Protocol.toByteArray(perMillis), Protocol.toByteArray(increment));
+
+        return (Long) scriptExecutor.eval(INCREMENT_WITH_EXPIRY_SCRIPT, keys, args);
     }
 
     private int getNoOfReqForMethod(String method) {
@@ -84,21 +234,32 @@ public class RedisRateLimiter {
      *
      * @return new key based on perMillis (works for second/minute/hour windows only)
      */
-    private String getKeyForWindow(String key) throws OutOfScopeException {
-
-        LocalDateTime now = LocalDateTime.now();
+    private byte[] getKeyForWindow(String key, LocalDateTime now) {
 
         int window;
 
-        if (perMillis >= 1 && perMillis < 1000) {
+        if (perMillis < 1000) {
             window = (now.get(ChronoField.MILLI_OF_DAY) / perMillis) + 1;
-        } else if (perMillis >= 1000 && perMillis <= 60000) {
-            window = now.get(ChronoField.SECOND_OF_MINUTE) / (perMillis / 1000);
         } else {
-            throw new OutOfScopeException("perMillis specified is not currently supported");
+            window = now.get(ChronoField.SECOND_OF_MINUTE) / (perMillis / 1000);
+        }
+
+        return RedisKeys.fixedWindowKey(key, window);
+    }
+
+    /**
+     * Time left in the window {@link #getKeyForWindow} picked for {@code now}. Windows of whole seconds restart at
+     * the top of each minute, so the last one in a minute can be cut short.
+     */
+    private long getMillisUntilWindowEnds(LocalDateTime now) {
+        if (perMillis < 1000) {
+            return perMillis - now.get(ChronoField.MILLI_OF_DAY) % perMillis;
         }
 
-        return key + window;
+        int secondsPerWindow = perMillis / 1000;
+        int secondOfMinute = now.get(ChronoField.SECOND_OF_MINUTE);
+        long windowEnd = Math.min((secondOfMinute / secondsPerWindow + 1) * secondsPerWindow * 1000L, 60000L);
+        return windowEnd - (secondOfMinute * 1000L + now.get(ChronoField.MILLI_OF_SECOND));
     }
 
 }
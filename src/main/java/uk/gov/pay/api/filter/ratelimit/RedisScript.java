@@ -0,0 +1,49 @@
+package uk.gov.pay.api.filter.ratelimit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
+
+import java.util.List;
+
+/**
+ * A Lua script run atomically on Redis. Scripts are invoked by SHA1 with EVALSHA so only the digest travels
+ * over the wire; EVAL is used to load the script when Redis does not have it cached yet (first call, or after a
+ * restart or failover).
+ */
+public final class RedisScript {
+
+    private final String script;
+    private final byte[] scriptBytes;
+    private final byte[] sha;
+
+    RedisScript(String script) {
+        this.script = script;
+        this.scriptBytes = SafeEncoder.encode(script);
+        this.sha = SafeEncoder.encode(DigestUtils.sha1Hex(script));
+    }
+
+    Object eval(Jedis jedis, List<byte[]> keys, List<byte[]> args) {
+        try {
+            return jedis.evalsha(sha, keys, args);
+        } catch (JedisDataException e) {
+            if (!isNoScriptError(e)) {
+                throw e;
+            }
+            return jedis.eval(scriptBytes, keys, args);
+        }
+    }
+
+    String getScript() {
+        return script;
+    }
+
+    byte[] getSha() {
+        return sha;
+    }
+
+    static boolean isNoScriptError(JedisDataException e) {
+        return e.getMessage() != null && e.getMessage().startsWith("NOSCRIPT");
+    }
+}
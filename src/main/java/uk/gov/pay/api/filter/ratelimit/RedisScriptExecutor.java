@@ -0,0 +1,14 @@
+package uk.gov.pay.api.filter.ratelimit;
+
+import java.util.List;
+
+/**
+ * Runs {@link RedisScript}s for the {@link RedisRateLimiter}.
+ */
+public interface RedisScriptExecutor {
+
+    /**
+     * @throws Exception if Redis is unavailable or the script fails
+     */
+    Object eval(RedisScript script, List<byte[]> keys, List<byte[]> args) throws Exception;
+}
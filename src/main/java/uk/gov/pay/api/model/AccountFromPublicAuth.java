@@ -0,0 +1,38 @@
+package uk.gov.pay.api.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AccountFromPublicAuth {
+
+    @JsonProperty(value = "account_id")
+    private String accountId;
+
+    @JsonProperty(value = "token_type")
+    private String tokenType;
+
+    public AccountFromPublicAuth() {
+    }
+
+    public AccountFromPublicAuth(String accountId, String tokenType) {
+        this.accountId = accountId;
+        this.tokenType = tokenType;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public String getTokenType() {
+        return tokenType;
+    }
+
+    @Override
+    public String toString() {
+        return "AccountFromPublicAuth{" +
+                "accountId='" + accountId + '\'' +
+                ", tokenType='" + tokenType + '\'' +
+                '}';
+    }
+}
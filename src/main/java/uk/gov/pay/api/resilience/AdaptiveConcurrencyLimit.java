@@ -0,0 +1,123 @@
+package uk.gov.pay.api.resilience;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits how many requests a node works on at once, adjusting the limit to how quickly requests are being served
+ * (additive increase, multiplicative decrease).
+ * <p>
+ * Each completed request's latency is compared with a moving average of recent ones of the same latency class, so
+ * that e.g. searches are not compared with single payment lookups. Once one takes more than {@code latencyTolerance}
+ * times its class's average the node is taken to be overloaded, and the limit is multiplied by {@code backoffRatio},
+ * at most once per that average latency. Requests {@link #release() released} without a latency, e.g. because they
+ * were turned away before any real work was done on them, leave the averages and the limit alone. Otherwise, while at least half the limit is in use, it grows
+ * by about one per limit's worth of completed requests. The limit stays between {@code minLimit} and
+ * {@code maxLimit}.
+ * <p>
+ * Callers must {@link #release(int, long) release} every slot {@link #tryAcquire(double)} handed out.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double AVERAGE_LATENCY_SMOOTHING = 0.05;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Meter rejected;
+
+    private volatile double limit;
+    private final double[] averageLatencyNanos;
+    private long lastDecreaseNanos;
+
+    /**
+     * @param latencyClasses number of kinds of request whose latencies are averaged separately
+     */
+    public AdaptiveConcurrencyLimit(String name, int latencyClasses, int initialLimit, int minLimit, int maxLimit,
+                                    double latencyTolerance, double backoffRatio, MetricRegistry metricRegistry) {
+        this(name, latencyClasses, initialLimit, minLimit, maxLimit, latencyTolerance, backoffRatio, metricRegistry,
+                System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimit(String name, int latencyClasses, int initialLimit, int minLimit, int maxLimit,
+                             double latencyTolerance, double backoffRatio, MetricRegistry metricRegistry,
+                             LongSupplier nanoClock) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+        this.nanoClock = nanoClock;
+        this.averageLatencyNanos = new double[latencyClasses];
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.lastDecreaseNanos = nanoClock.getAsLong();
+
+        metricRegistry.register(MetricRegistry.name(name, "limit"), (Gauge<Integer>) this::getLimit);
+        metricRegistry.register(MetricRegistry.name(name, "in-flight"), (Gauge<Integer>) inFlight::get);
+        this.rejected = metricRegistry.meter(MetricRegistry.name(name, "rejected"));
+    }
+
+    /**
+     * @param share of the limit requests of this kind may use, so that less important ones are turned away first
+     */
+    public boolean tryAcquire(double share) {
+        int allowed = Math.max(1, (int) (limit * share));
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= allowed) {
+                rejected.mark();
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Gives back a slot without adjusting the limit.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Gives back a slot and adjusts the limit to how long the request took.
+     *
+     * @param latencyClass which of the {@code latencyClasses} averages the request is compared with
+     */
+    public void release(int latencyClass, long latencyNanos) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        // the averages, limit and time of the last decrease change together; admission in tryAcquire stays lock-free
+        synchronized (this) {
+            double average = averageLatencyNanos[latencyClass];
+            if (average == 0) {
+                averageLatencyNanos[latencyClass] = latencyNanos;
+                return;
+            }
+            long now = nanoClock.getAsLong();
+            if (latencyNanos > average * latencyTolerance) {
+                if (now - lastDecreaseNanos >= average) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = now;
+                }
+            } else if (inFlightBefore * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            averageLatencyNanos[latencyClass] = average + (latencyNanos - average) * AVERAGE_LATENCY_SMOOTHING;
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,25 @@
+package uk.gov.pay.api.resilience;
+
+import java.net.URI;
+import java.util.Map;
+
+final class BaseUrls {
+
+    /**
+     * The value for the longest base URL {@code uri} starts with, in case one upstream's URL is a prefix of another's,
+     * or null if it starts with none of them.
+     */
+    static <T> T longestMatch(Map<String, T> byBaseUrl, URI uri) {
+        String uriString = uri.toString();
+        String matchingBaseUrl = null;
+        for (String baseUrl : byBaseUrl.keySet()) {
+            if (uriString.startsWith(baseUrl) && (matchingBaseUrl == null || baseUrl.length() > matchingBaseUrl.length())) {
+                matchingBaseUrl = baseUrl;
+            }
+        }
+        return matchingBaseUrl == null ? null : byBaseUrl.get(matchingBaseUrl);
+    }
+
+    private BaseUrls() {
+    }
+}
@@ -0,0 +1,61 @@
+package uk.gov.pay.api.resilience;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how many calls to one dependency can be in flight at once, so a dependency that slows down can only tie up
+ * that many threads rather than every thread serving requests.
+ * <p>
+ * A call that cannot get a permit within {@code maxWait} is rejected. Callers must {@link #release()} every permit
+ * {@link #tryAcquire()} handed out.
+ */
+public class Bulkhead {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Bulkhead.class);
+
+    private final String name;
+    private final long maxWaitNanos;
+    private final Semaphore permits;
+    private final Meter rejected;
+
+    public Bulkhead(String name, int maxConcurrentCalls, long maxWaitMillis, MetricRegistry metricRegistry) {
+        this.name = name;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.permits = new Semaphore(maxConcurrentCalls);
+
+        metricRegistry.register(MetricRegistry.name(name, "available"), (Gauge<Integer>) permits::availablePermits);
+        this.rejected = metricRegistry.meter(MetricRegistry.name(name, "rejected"));
+    }
+
+    public boolean tryAcquire() {
+        boolean acquired;
+        try {
+            acquired = maxWaitNanos == 0
+                    ? permits.tryAcquire()
+                    : permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.mark();
+            LOGGER.info("Bulkhead {} is full, rejecting call", name);
+        }
+        return acquired;
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
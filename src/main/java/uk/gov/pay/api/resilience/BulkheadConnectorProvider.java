@@ -0,0 +1,116 @@
+package uk.gov.pay.api.resilience;
+
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Configuration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Wraps the connector a Jersey client sends requests with, so every request to one of the given base URLs has to get
+ * a permit from that upstream's {@link Bulkhead} first. Requests to any other URL are sent as they are.
+ * <p>
+ * The permit is held while the request is sent and the response headers arrive, which covers both blocking requests
+ * and those sent with {@code async()}. A request that is rejected fails with a {@link BulkheadFullException}.
+ */
+public class BulkheadConnectorProvider implements ConnectorProvider {
+
+    private final ConnectorProvider connectorProvider;
+    private final Map<String, Bulkhead> bulkheadsByBaseUrl;
+
+    public BulkheadConnectorProvider(ConnectorProvider connectorProvider, Map<String, Bulkhead> bulkheadsByBaseUrl) {
+        this.connectorProvider = connectorProvider;
+        this.bulkheadsByBaseUrl = bulkheadsByBaseUrl;
+    }
+
+    @Override
+    public Connector getConnector(Client client, Configuration runtimeConfig) {
+        return new BulkheadConnector(connectorProvider.getConnector(client, runtimeConfig));
+    }
+
+    private Bulkhead bulkheadFor(ClientRequest request) {
+        return BaseUrls.longestMatch(bulkheadsByBaseUrl, request.getUri());
+    }
+
+    private class BulkheadConnector implements Connector {
+
+        private final Connector connector;
+
+        BulkheadConnector(Connector connector) {
+            this.connector = connector;
+        }
+
+        @Override
+        public ClientResponse apply(ClientRequest request) {
+            Bulkhead bulkhead = bulkheadFor(request);
+            if (bulkhead == null) {
+                return connector.apply(request);
+            }
+            if (!bulkhead.tryAcquire()) {
+                throw new BulkheadFullException(bulkhead.getName());
+            }
+            try {
+                return connector.apply(request);
+            } finally {
+                bulkhead.release();
+            }
+        }
+
+        @Override
+        public Future<?> apply(ClientRequest request, AsyncConnectorCallback callback) {
+            Bulkhead bulkhead = bulkheadFor(request);
+            if (bulkhead == null) {
+                return connector.apply(request, callback);
+            }
+            if (!bulkhead.tryAcquire()) {
+                BulkheadFullException rejection = new BulkheadFullException(bulkhead.getName());
+                callback.failure(rejection);
+                CompletableFuture<?> rejected = new CompletableFuture<>();
+                rejected.completeExceptionally(rejection);
+                return rejected;
+            }
+            // released by whichever happens first: the callback or the connector throwing instead of calling it
+            AtomicBoolean released = new AtomicBoolean();
+            Runnable release = () -> {
+                if (released.compareAndSet(false, true)) {
+                    bulkhead.release();
+                }
+            };
+            try {
+                return connector.apply(request, new AsyncConnectorCallback() {
+                    @Override
+                    public void response(ClientResponse response) {
+                        release.run();
+                        callback.response(response);
+                    }
+
+                    @Override
+                    public void failure(Throwable failure) {
+                        release.run();
+                        callback.failure(failure);
+                    }
+                });
+            } catch (RuntimeException e) {
+                release.run();
+                throw e;
+            }
+        }
+
+        @Override
+        public String getName() {
+            return connector.getName();
+        }
+
+        @Override
+        public void close() {
+            connector.close();
+        }
+    }
+}
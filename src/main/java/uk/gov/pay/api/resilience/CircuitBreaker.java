@@ -0,0 +1,109 @@
+package uk.gov.pay.api.resilience;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stops calls to an unhealthy dependency for a while so callers can fail fast (or fall back) instead of waiting
+ * out a timeout on every request.
+ * <p>
+ * The breaker opens after {@code failureThreshold} consecutive failures. Once {@code openDuration} has passed it
+ * becomes half-open and lets a single probe call through: a successful probe closes it again, a failed one
+ * re-opens it for another {@code openDuration}.
+ * <p>
+ * Callers must report the outcome of every call that {@link #allowRequest()} let through.
+ */
+public class CircuitBreaker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final Ticker ticker;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong stateChangedAt;
+
+    private final Meter opened;
+    private final Meter closed;
+    private final Meter rejected;
+
+    public CircuitBreaker(String name, int failureThreshold, long openDurationMillis, MetricRegistry metricRegistry) {
+        this(name, failureThreshold, openDurationMillis, metricRegistry, Ticker.systemTicker());
+    }
+
+    CircuitBreaker(String name, int failureThreshold, long openDurationMillis, MetricRegistry metricRegistry, Ticker ticker) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+        this.ticker = ticker;
+        this.stateChangedAt = new AtomicLong(ticker.read());
+
+        metricRegistry.register(MetricRegistry.name(name, "state"), (Gauge<Integer>) () -> state.get().ordinal());
+        this.opened = metricRegistry.meter(MetricRegistry.name(name, "opened"));
+        this.closed = metricRegistry.meter(MetricRegistry.name(name, "closed"));
+        this.rejected = metricRegistry.meter(MetricRegistry.name(name, "rejected"));
+    }
+
+    public boolean allowRequest() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        long now = ticker.read();
+        long changedAt = stateChangedAt.get();
+        if (now - changedAt >= openDurationNanos && stateChangedAt.compareAndSet(changedAt, now)) {
+            // This caller is the probe. A probe that never reports back is replaced after another openDuration.
+            if (state.compareAndSet(current, State.HALF_OPEN)) {
+                LOGGER.info("Circuit breaker {} is half-open, letting a probe request through", name);
+            }
+            return true;
+        }
+        rejected.mark();
+        return false;
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        if (state.get() != State.CLOSED && state.getAndSet(State.CLOSED) != State.CLOSED) {
+            stateChangedAt.set(ticker.read());
+            closed.mark();
+            LOGGER.info("Circuit breaker {} closed", name);
+        }
+    }
+
+    public void recordFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        State current = state.get();
+        if (current == State.HALF_OPEN || (current == State.CLOSED && failures >= failureThreshold)) {
+            if (state.compareAndSet(current, State.OPEN)) {
+                stateChangedAt.set(ticker.read());
+                opened.mark();
+                LOGGER.warn("Circuit breaker {} opened after {} consecutive failures", name, failures);
+            }
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
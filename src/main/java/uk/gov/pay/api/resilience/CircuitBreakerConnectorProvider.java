@@ -0,0 +1,165 @@
+package uk.gov.pay.api.resilience;
+
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Configuration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * Wraps the connector a Jersey client sends requests with, so requests to an upstream that keeps failing are
+ * rejected straight away with a {@link CircuitBreakerOpenException} instead of each waiting out its timeout.
+ * <p>
+ * Each upstream has one breaker for reads (GET and HEAD) and one for writes, so writes that fail do not stop payments
+ * being looked up and vice versa. A 5xx response or a request that could not be completed at all (e.g. it timed out)
+ * counts as a failure; any other response counts as a success. A request that could not be completed after its
+ * caller's {@link Deadline} had passed is not counted either way: it most likely failed because it was only given
+ * as long as the caller was prepared to wait. Requests to any other URL are sent as they are.
+ */
+public class CircuitBreakerConnectorProvider implements ConnectorProvider {
+
+    private final ConnectorProvider connectorProvider;
+    private final Map<String, ReadWriteCircuitBreakers> circuitBreakersByBaseUrl;
+
+    public CircuitBreakerConnectorProvider(ConnectorProvider connectorProvider,
+                                           Map<String, ReadWriteCircuitBreakers> circuitBreakersByBaseUrl) {
+        this.connectorProvider = connectorProvider;
+        this.circuitBreakersByBaseUrl = circuitBreakersByBaseUrl;
+    }
+
+    @Override
+    public Connector getConnector(Client client, Configuration runtimeConfig) {
+        return new CircuitBreakerConnector(connectorProvider.getConnector(client, runtimeConfig));
+    }
+
+    private CircuitBreaker circuitBreakerFor(ClientRequest request) {
+        ReadWriteCircuitBreakers circuitBreakers = BaseUrls.longestMatch(circuitBreakersByBaseUrl, request.getUri());
+        if (circuitBreakers == null) {
+            return null;
+        }
+        String method = request.getMethod();
+        return HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)
+                ? circuitBreakers.getRead()
+                : circuitBreakers.getWrite();
+    }
+
+    private static boolean isFailure(ClientResponse response) {
+        return response.getStatus() >= 500;
+    }
+
+    private static void recordResponse(CircuitBreaker circuitBreaker, ClientResponse response) {
+        if (isFailure(response)) {
+            circuitBreaker.recordFailure();
+        } else {
+            circuitBreaker.recordSuccess();
+        }
+    }
+
+    /**
+     * A request the bulkhead turned away never reached the upstream, and one that ran out of its caller's time was cut
+     * short by us, so neither says anything about the upstream's health.
+     */
+    private static void recordFailure(CircuitBreaker circuitBreaker, ClientRequest request, Throwable failure) {
+        if (failure instanceof BulkheadFullException) {
+            return;
+        }
+        Deadline deadline = (Deadline) request.getProperty(Deadline.PROPERTY);
+        if (deadline != null && deadline.isExpired()) {
+            return;
+        }
+        circuitBreaker.recordFailure();
+    }
+
+    public static class ReadWriteCircuitBreakers {
+
+        private final CircuitBreaker read;
+        private final CircuitBreaker write;
+
+        public ReadWriteCircuitBreakers(CircuitBreaker read, CircuitBreaker write) {
+            this.read = read;
+            this.write = write;
+        }
+
+        public CircuitBreaker getRead() {
+            return read;
+        }
+
+        public CircuitBreaker getWrite() {
+            return write;
+        }
+    }
+
+    private class CircuitBreakerConnector implements Connector {
+
+        private final Connector connector;
+
+        CircuitBreakerConnector(Connector connector) {
+            this.connector = connector;
+        }
+
+        @Override
+        public ClientResponse apply(ClientRequest request) {
+            CircuitBreaker circuitBreaker = circuitBreakerFor(request);
+            if (circuitBreaker == null) {
+                return connector.apply(request);
+            }
+            if (!circuitBreaker.allowRequest()) {
+                throw new CircuitBreakerOpenException(circuitBreaker.getName());
+            }
+            ClientResponse response;
+            try {
+                response = connector.apply(request);
+            } catch (RuntimeException e) {
+                recordFailure(circuitBreaker, request, e);
+                throw e;
+            }
+            recordResponse(circuitBreaker, response);
+            return response;
+        }
+
+        @Override
+        public Future<?> apply(ClientRequest request, AsyncConnectorCallback callback) {
+            CircuitBreaker circuitBreaker = circuitBreakerFor(request);
+            if (circuitBreaker == null) {
+                return connector.apply(request, callback);
+            }
+            if (!circuitBreaker.allowRequest()) {
+                CircuitBreakerOpenException rejection = new CircuitBreakerOpenException(circuitBreaker.getName());
+                callback.failure(rejection);
+                CompletableFuture<?> rejected = new CompletableFuture<>();
+                rejected.completeExceptionally(rejection);
+                return rejected;
+            }
+            return connector.apply(request, new AsyncConnectorCallback() {
+                @Override
+                public void response(ClientResponse response) {
+                    recordResponse(circuitBreaker, response);
+                    callback.response(response);
+                }
+
+                @Override
+                public void failure(Throwable failure) {
+                    recordFailure(circuitBreaker, request, failure);
+                    callback.failure(failure);
+                }
+            });
+        }
+
+        @Override
+        public String getName() {
+            return connector.getName();
+        }
+
+        @Override
+        public void close() {
+            connector.close();
+        }
+    }
+}
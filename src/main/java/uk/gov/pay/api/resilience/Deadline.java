@@ -0,0 +1,50 @@
+package uk.gov.pay.api.resilience;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time by which the caller of the request being served will have given up waiting, so any work for it that is
+ * still going on after that is wasted.
+ * <p>
+ * The deadline of the request being served is held for the thread serving it, see {@link #current()}. Requests sent
+ * with {@code async()} carry it as the {@link #PROPERTY} request property instead, as they are sent from another thread.
+ */
+public final class Deadline {
+
+    public static final String PROPERTY = Deadline.class.getName();
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * @return the deadline of the request this thread is serving, or null if it has none
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    public static void setCurrent(Deadline deadline) {
+        CURRENT.set(deadline);
+    }
+
+    public static void clearCurrent() {
+        CURRENT.remove();
+    }
+
+    public long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+}
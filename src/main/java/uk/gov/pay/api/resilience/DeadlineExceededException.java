@@ -0,0 +1,13 @@
+package uk.gov.pay.api.resilience;
+
+import javax.ws.rs.ProcessingException;
+
+/**
+ * A {@link ProcessingException} so that the Jersey client passes it on to callers as it is, rather than wrapped.
+ */
+public class DeadlineExceededException extends ProcessingException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,232 @@
+package uk.gov.pay.api.resilience;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Configuration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wraps the connector a Jersey client sends requests with, so a GET to one of the given base URLs that has not been
+ * answered within that upstream's recent {@code percentile} latency is sent a second time (a "hedge"), and whichever
+ * response arrives first is used. The other one is closed when it arrives.
+ * <p>
+ * Latency is tracked per upstream by the given timers, and the delay is never less than {@code minDelayMillis}, which
+ * is also what is used until there are any timings. Hedges are paid for from a {@link RetryBudget}, which caps them at
+ * a percentage of reads.
+ * <p>
+ * Only requests sent with {@code async()} are hedged. The first attempt is sent from the thread that sends the
+ * request, as it would be without hedging, {@code timer} only decides when to send the hedge, and the hedge is sent
+ * from {@code executor}. A hedge the executor has no thread for, or one whose request deadline has passed, is not
+ * sent. Requests that are not sent with {@code async()} are sent as they are: the calling thread is busy sending the
+ * first attempt, so it could not use a hedge's response before it had its own. Hedging therefore relies on
+ * {@code jerseyClientConfig.asyncRequestsEnabled}, and the configuration is rejected if it is enabled without it.
+ */
+public class HedgingConnectorProvider implements ConnectorProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HedgingConnectorProvider.class);
+
+    private final ConnectorProvider connectorProvider;
+    private final Map<String, Timer> latencyByBaseUrl;
+    private final double percentile;
+    private final long minDelayMillis;
+    private final RetryBudget hedgeBudget;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService executor;
+    private final Meter hedges;
+    private final Meter hedgesWon;
+
+    public HedgingConnectorProvider(ConnectorProvider connectorProvider, Map<String, Timer> latencyByBaseUrl,
+                                    double percentile, long minDelayMillis, RetryBudget hedgeBudget,
+                                    ScheduledExecutorService timer, ExecutorService executor,
+                                    MetricRegistry metricRegistry, String name) {
+        this.connectorProvider = connectorProvider;
+        this.latencyByBaseUrl = latencyByBaseUrl;
+        this.percentile = percentile;
+        this.minDelayMillis = minDelayMillis;
+        this.hedgeBudget = hedgeBudget;
+        this.timer = timer;
+        this.executor = executor;
+        this.hedges = metricRegistry.meter(MetricRegistry.name(name, "hedges"));
+        this.hedgesWon = metricRegistry.meter(MetricRegistry.name(name, "hedges-won"));
+    }
+
+    @Override
+    public Connector getConnector(Client client, Configuration runtimeConfig) {
+        return new HedgingConnector(connectorProvider.getConnector(client, runtimeConfig));
+    }
+
+    private Timer latencyFor(ClientRequest request) {
+        if (!HttpMethod.GET.equals(request.getMethod())) {
+            return null;
+        }
+        return BaseUrls.longestMatch(latencyByBaseUrl, request.getUri());
+    }
+
+    long hedgeDelayMillis(Timer latency) {
+        long percentileMillis = TimeUnit.NANOSECONDS.toMillis((long) latency.getSnapshot().getValue(percentile / 100));
+        return Math.max(minDelayMillis, percentileMillis);
+    }
+
+    private class HedgingConnector implements Connector {
+
+        private final Connector connector;
+
+        HedgingConnector(Connector connector) {
+            this.connector = connector;
+        }
+
+        @Override
+        public ClientResponse apply(ClientRequest request) {
+            return connector.apply(request);
+        }
+
+        @Override
+        public Future<?> apply(ClientRequest request, AsyncConnectorCallback callback) {
+            Timer latency = latencyFor(request);
+            if (latency == null) {
+                return connector.apply(request, callback);
+            }
+            hedgeBudget.recordRequest();
+            HedgedRequest hedgedRequest = new HedgedRequest(request, latency, callback);
+            hedgedRequest.scheduleHedge();
+            return hedgedRequest.send();
+        }
+
+        @Override
+        public String getName() {
+            return connector.getName();
+        }
+
+        @Override
+        public void close() {
+            connector.close();
+        }
+
+        /**
+         * Passes the first response to the callback, or the last failure if every attempt sent failed. A hedge that has
+         * not been sent yet when the first attempt fails is not sent at all.
+         */
+        private class HedgedRequest {
+
+            private final ClientRequest request;
+            private final Timer latency;
+            private final AsyncConnectorCallback callback;
+            private final AtomicBoolean done = new AtomicBoolean();
+            private final AtomicInteger inFlight = new AtomicInteger(1);
+            private volatile ScheduledFuture<?> hedge;
+
+            HedgedRequest(ClientRequest request, Timer latency, AsyncConnectorCallback callback) {
+                this.request = request;
+                this.latency = latency;
+                this.callback = callback;
+            }
+
+            void scheduleHedge() {
+                hedge = timer.schedule(this::sendHedge, hedgeDelayMillis(latency), TimeUnit.MILLISECONDS);
+            }
+
+            Future<?> send() {
+                long startNanos = System.nanoTime();
+                try {
+                    return connector.apply(request, new AsyncConnectorCallback() {
+                        @Override
+                        public void response(ClientResponse response) {
+                            latency.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                            complete(response, false);
+                        }
+
+                        @Override
+                        public void failure(Throwable failure) {
+                            fail(failure);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    // the caller is told by the exception rather than the callback, so a hedge's response is not used
+                    done.set(true);
+                    cancelHedge();
+                    throw e;
+                }
+            }
+
+            private void sendHedge() {
+                if (done.get() || isPastDeadline() || !hedgeBudget.tryWithdraw()) {
+                    return;
+                }
+                ClientRequest hedgeRequest = new ClientRequest(request);
+                inFlight.incrementAndGet();
+                try {
+                    executor.execute(() -> {
+                        long startNanos = System.nanoTime();
+                        ClientResponse response;
+                        try {
+                            response = connector.apply(hedgeRequest);
+                        } catch (Throwable failure) {
+                            fail(failure);
+                            return;
+                        }
+                        latency.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                        if (complete(response, true)) {
+                            hedgesWon.mark();
+                        }
+                    });
+                    hedges.mark();
+                } catch (RejectedExecutionException e) {
+                    LOGGER.debug("No thread free to send hedge for {}", request.getUri());
+                    inFlight.decrementAndGet();
+                }
+            }
+
+            private boolean isPastDeadline() {
+                Object deadline = request.getProperty(Deadline.PROPERTY);
+                return deadline instanceof Deadline && ((Deadline) deadline).isExpired();
+            }
+
+            /**
+             * @return whether this attempt's response is the one used
+             */
+            private boolean complete(ClientResponse response, boolean isHedge) {
+                if (!done.compareAndSet(false, true)) {
+                    response.close();
+                    return false;
+                }
+                cancelHedge();
+                callback.response(response);
+                return isHedge;
+            }
+
+            private void fail(Throwable failure) {
+                if (inFlight.decrementAndGet() == 0 && done.compareAndSet(false, true)) {
+                    cancelHedge();
+                    callback.failure(failure);
+                }
+            }
+
+            private void cancelHedge() {
+                ScheduledFuture<?> scheduled = hedge;
+                if (scheduled != null) {
+                    scheduled.cancel(false);
+                }
+            }
+        }
+    }
+}
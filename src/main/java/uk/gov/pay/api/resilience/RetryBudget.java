@@ -0,0 +1,46 @@
+package uk.gov.pay.api.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket that caps retries at a percentage of requests, so retrying can never multiply the load on a struggling
+ * dependency by more than that.
+ * <p>
+ * Every request adds {@code budgetPercentage} hundredths of a token and every retry takes a whole one. At most
+ * {@code maxTokens} are saved up, which also allows a few retries before there has been much traffic.
+ * <p>
+ * Hedged requests are capped the same way, with a budget of their own.
+ */
+public class RetryBudget {
+
+    private static final long TOKEN = 100;
+
+    private final long depositPerRequest;
+    private final long capacity;
+    private final AtomicLong balance;
+
+    public RetryBudget(int budgetPercentage, int maxTokens) {
+        this.depositPerRequest = budgetPercentage;
+        this.capacity = maxTokens * TOKEN;
+        this.balance = new AtomicLong(capacity);
+    }
+
+    public void recordRequest() {
+        balance.getAndUpdate(current -> Math.min(capacity, current + depositPerRequest));
+    }
+
+    public boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    public double getTokens() {
+        return (double) balance.get() / TOKEN;
+    }
+}
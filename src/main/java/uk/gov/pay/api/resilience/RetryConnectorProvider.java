@@ -0,0 +1,256 @@
+package uk.gov.pay.api.resilience;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.api.filter.RestClientDeadlineFilter;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Configuration;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps the connector a Jersey client sends requests with, so reads (GET and HEAD) that fail in a way that is worth
+ * trying again are retried after an exponential backoff with full jitter.
+ * <p>
+ * A read is retried when the upstream answers 502, 503 or 504, or when the connection failed (e.g. it was refused or
+ * reset). Timeouts are not retried, as they would multiply the time the caller waits, and neither are calls rejected
+ * by a bulkhead or circuit breaker. Retries are also limited by a {@link RetryBudget}, and are not made unless at
+ * least {@code minRemainingMillis} would be left before the {@link Deadline} of the request being served once the
+ * backoff is over. Each retry's read timeout and {@code X-Request-Timeout} header are set again to the time then left,
+ * so no attempt can run past the deadline.
+ * <p>
+ * Retries of requests sent with {@code async()} are scheduled on {@code scheduler} rather than waiting on a thread.
+ */
+public class RetryConnectorProvider implements ConnectorProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetryConnectorProvider.class);
+
+    private final ConnectorProvider connectorProvider;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long minRemainingMillis;
+    private final RetryBudget retryBudget;
+    private final ScheduledExecutorService scheduler;
+    private final Meter retries;
+    private final Meter budgetExhausted;
+
+    public RetryConnectorProvider(ConnectorProvider connectorProvider, int maxAttempts, long initialBackoffMillis,
+                                  long maxBackoffMillis, long minRemainingMillis, RetryBudget retryBudget,
+                                  ScheduledExecutorService scheduler, MetricRegistry metricRegistry, String name) {
+        this.connectorProvider = connectorProvider;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.minRemainingMillis = minRemainingMillis;
+        this.retryBudget = retryBudget;
+        this.scheduler = scheduler;
+
+        metricRegistry.register(MetricRegistry.name(name, "budget-tokens"), (Gauge<Double>) retryBudget::getTokens);
+        this.retries = metricRegistry.meter(MetricRegistry.name(name, "retries"));
+        this.budgetExhausted = metricRegistry.meter(MetricRegistry.name(name, "budget-exhausted"));
+    }
+
+    @Override
+    public Connector getConnector(Client client, Configuration runtimeConfig) {
+        return new RetryConnector(connectorProvider.getConnector(client, runtimeConfig));
+    }
+
+    private static boolean isRead(ClientRequest request) {
+        return HttpMethod.GET.equals(request.getMethod()) || HttpMethod.HEAD.equals(request.getMethod());
+    }
+
+    private static boolean isRetryable(ClientResponse response) {
+        int status = response.getStatus();
+        return status == 502 || status == 503 || status == 504;
+    }
+
+    private static boolean isRetryable(Throwable failure) {
+        Throwable cause = failure instanceof ProcessingException ? failure.getCause() : failure;
+        return cause instanceof IOException && !(cause instanceof InterruptedIOException);
+    }
+
+    /**
+     * Whether another attempt may be made after {@code attempt} attempts, taking it from the budget if so.
+     *
+     * @return how long to wait before the next attempt, or -1 if it may not be made
+     */
+    private long retryDelayMillis(ClientRequest request, int attempt) {
+        if (attempt >= maxAttempts) {
+            return -1;
+        }
+        long delayMillis = backoffMillis(attempt);
+        Deadline deadline = (Deadline) request.getProperty(Deadline.PROPERTY);
+        if (deadline != null && deadline.remainingMillis() - delayMillis < minRemainingMillis) {
+            return -1;
+        }
+        if (!retryBudget.tryWithdraw()) {
+            budgetExhausted.mark();
+            LOGGER.info("Retry budget exhausted, not retrying {} {}", request.getMethod(), request.getUri());
+            return -1;
+        }
+        retries.mark();
+        LOGGER.info("Retrying {} {} (attempt {} of {})", request.getMethod(), request.getUri(), attempt + 1, maxAttempts);
+        return delayMillis;
+    }
+
+    /**
+     * @throws DeadlineExceededException if the deadline passed during the backoff
+     */
+    private static void limitToDeadline(ClientRequest request) {
+        Deadline deadline = (Deadline) request.getProperty(Deadline.PROPERTY);
+        if (deadline != null) {
+            RestClientDeadlineFilter.limitToDeadline(request, deadline);
+        }
+    }
+
+    /**
+     * Full jitter: a random delay between 0 and the exponential backoff for this attempt.
+     */
+    long backoffMillis(int attempt) {
+        long exponential = initialBackoffMillis << Math.min(attempt - 1, 30);
+        long cap = Math.min(maxBackoffMillis, exponential);
+        return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    private class RetryConnector implements Connector {
+
+        private final Connector connector;
+
+        RetryConnector(Connector connector) {
+            this.connector = connector;
+        }
+
+        @Override
+        public ClientResponse apply(ClientRequest request) {
+            if (!isRead(request)) {
+                return connector.apply(request);
+            }
+            retryBudget.recordRequest();
+            for (int attempt = 1; ; attempt++) {
+                if (attempt > 1) {
+                    limitToDeadline(request);
+                }
+                ClientResponse response;
+                long delayMillis;
+                try {
+                    response = connector.apply(request);
+                } catch (RuntimeException e) {
+                    if (!isRetryable(e) || (delayMillis = retryDelayMillis(request, attempt)) < 0 || !backOff(delayMillis)) {
+                        throw e;
+                    }
+                    continue;
+                }
+                if (!isRetryable(response) || (delayMillis = retryDelayMillis(request, attempt)) < 0) {
+                    return response;
+                }
+                response.close();
+                if (!backOff(delayMillis)) {
+                    throw new ProcessingException("Interrupted while waiting to retry " + request.getUri());
+                }
+            }
+        }
+
+        /**
+         * @return false if interrupted while waiting
+         */
+        private boolean backOff(long delayMillis) {
+            try {
+                Thread.sleep(delayMillis);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        @Override
+        public Future<?> apply(ClientRequest request, AsyncConnectorCallback callback) {
+            if (!isRead(request)) {
+                return connector.apply(request, callback);
+            }
+            retryBudget.recordRequest();
+            return connector.apply(request, new RetryingCallback(request, callback, 1));
+        }
+
+        @Override
+        public String getName() {
+            return connector.getName();
+        }
+
+        @Override
+        public void close() {
+            connector.close();
+        }
+
+        private class RetryingCallback implements AsyncConnectorCallback {
+
+            private final ClientRequest request;
+            private final AsyncConnectorCallback callback;
+            private final int attempt;
+
+            RetryingCallback(ClientRequest request, AsyncConnectorCallback callback, int attempt) {
+                this.request = request;
+                this.callback = callback;
+                this.attempt = attempt;
+            }
+
+            @Override
+            public void response(ClientResponse response) {
+                long delayMillis = isRetryable(response) ? retryDelayMillis(request, attempt) : -1;
+                if (delayMillis >= 0) {
+                    response.close();
+                    retryLater(delayMillis);
+                } else {
+                    callback.response(response);
+                }
+            }
+
+            @Override
+            public void failure(Throwable failure) {
+                long delayMillis = isRetryable(failure) ? retryDelayMillis(request, attempt) : -1;
+                if (delayMillis >= 0) {
+                    retryLater(delayMillis);
+                } else {
+                    callback.failure(failure);
+                }
+            }
+
+            private void retryLater(long delayMillis) {
+                RetryingCallback next = new RetryingCallback(request, callback, attempt + 1);
+                try {
+                    scheduler.schedule(() -> retry(next), delayMillis, TimeUnit.MILLISECONDS);
+                } catch (RuntimeException e) {
+                    callback.failure(e);
+                }
+            }
+
+            /**
+             * Runs on the scheduler, which would swallow anything thrown and leave the caller waiting for ever.
+             */
+            private void retry(RetryingCallback next) {
+                try {
+                    limitToDeadline(request);
+                    connector.apply(request, next);
+                } catch (Throwable t) {
+                    callback.failure(t);
+                }
+            }
+        }
+    }
+}
@@ -26,11 +26,14 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import java.net.URI;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static uk.gov.pay.api.resources.AsyncResponses.resume;
 
 @Path("/")
 @Api(value = "/", description = "Public Api Endpoints for an agreements")
@@ -64,12 +67,14 @@ public class AgreementsResource {
             @ApiResponse(code = 404, message = "Not found", response = AgreementError.class),
             @ApiResponse(code = 429, message = "Too many requests", response = ApiErrorResponse.class),
             @ApiResponse(code = 500, message = "Downstream system error", response = AgreementError.class)})
-    public Response getPayment(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
-            @PathParam("agreementId") String agreementId) {
+    public void getPayment(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
+            @PathParam("agreementId") String agreementId,
+            @ApiParam(hidden = true) @Suspended AsyncResponse asyncResponse) {
         LOGGER.info("Agreement get request - [ {} ]", agreementId);
-        GetAgreementResponse getAgreementResponse = agreementService.get(account, agreementId);
-        LOGGER.info("Agreement returned (created): [ {} ]", getAgreementResponse);
-        return Response.ok().entity(getAgreementResponse).build();
+        resume(asyncResponse, agreementService.getAsync(account, agreementId).thenApply(getAgreementResponse -> {
+            LOGGER.info("Agreement returned (created): [ {} ]", getAgreementResponse);
+            return Response.ok().entity(getAgreementResponse).build();
+        }));
     }
     
     @POST
@@ -88,14 +93,16 @@ public class AgreementsResource {
             @ApiResponse(code = 401, message = "Credentials are required to access this resource"),
             @ApiResponse(code = 429, message = "Too many requests", response = ApiErrorResponse.class),
             @ApiResponse(code = 500, message = "Downstream system error", response = PaymentError.class)})
-    public Response createNewAgreement(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
-                                       @ApiParam(value = "requestPayload", required = true) CreateAgreementRequest createAgreementRequest) {
+    public void createNewAgreement(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
+                                   @ApiParam(value = "requestPayload", required = true) CreateAgreementRequest createAgreementRequest,
+                                   @ApiParam(hidden = true) @Suspended AsyncResponse asyncResponse) {
         LOGGER.info("Agreement create request - [ {} ]", createAgreementRequest);
-        CreateAgreementResponse createAgreementResponse = agreementService.create(account, createAgreementRequest);
-        URI agreementUri = UriBuilder.fromUri(baseUrl)
-                .path("/v1/agreements/{agreementId}")
-                .build(createAgreementResponse.getAgreementId());
-        LOGGER.info("Agreement returned (created): [ {} ]", createAgreementResponse);
-        return Response.created(agreementUri).entity(createAgreementResponse).build();
+        resume(asyncResponse, agreementService.createAsync(account, createAgreementRequest).thenApply(createAgreementResponse -> {
+            URI agreementUri = UriBuilder.fromUri(baseUrl)
+                    .path("/v1/agreements/{agreementId}")
+                    .build(createAgreementResponse.getAgreementId());
+            LOGGER.info("Agreement returned (created): [ {} ]", createAgreementResponse);
+            return Response.created(agreementUri).entity(createAgreementResponse).build();
+        }));
     }
 }
@@ -0,0 +1,49 @@
+package uk.gov.pay.api.resources;
+
+import uk.gov.pay.api.resilience.Deadline;
+import uk.gov.pay.api.resilience.DeadlineExceededException;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+class AsyncResponses {
+
+    /**
+     * Resumes {@code asyncResponse} once {@code response} completes. Failures are resumed with the exception the
+     * service threw rather than the {@link CompletionException} wrapping it, so the usual exception mappers apply.
+     * <p>
+     * If the request being served has a {@link Deadline} it is resumed with a {@link DeadlineExceededException} when
+     * that passes, whether or not connector has answered by then.
+     */
+    static void resume(AsyncResponse asyncResponse, CompletionStage<Response> response) {
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            asyncResponse.setTimeoutHandler(timedOut -> timedOut.resume(
+                    new DeadlineExceededException("Deadline passed before connector responded")));
+            asyncResponse.setTimeout(Math.max(1, deadline.remainingMillis()), TimeUnit.MILLISECONDS);
+        }
+        response.whenComplete((result, throwable) -> {
+            if (throwable == null) {
+                if (!asyncResponse.resume(result)) {
+                    // e.g. already resumed when the deadline passed
+                    result.close();
+                }
+            } else {
+                asyncResponse.resume(unwrap(throwable));
+            }
+        });
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            return throwable.getCause();
+        }
+        return throwable;
+    }
+
+    private AsyncResponses() {
+    }
+}
@@ -8,7 +8,6 @@ import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import uk.gov.pay.api.auth.Account;
-import uk.gov.pay.api.model.links.directdebit.DirectDebitEventsResponse;
 import uk.gov.pay.api.resources.error.ApiErrorResponse;
 import uk.gov.pay.api.service.ConnectorUriGenerator;
 import uk.gov.pay.api.service.DirectDebitEventService;
@@ -20,6 +19,8 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.client.Client;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Response;
 import java.time.ZonedDateTime;
 import java.util.List;
@@ -27,6 +28,7 @@ import java.util.Optional;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static org.eclipse.jetty.util.StringUtil.isBlank;
+import static uk.gov.pay.api.resources.AsyncResponses.resume;
 
 @Path("/")
 @Api(value = "/", description = "Public Api Endpoint to get Direct Debit Events")
@@ -56,7 +58,7 @@ public class DirectDebitEventsResource {
             @ApiResponse(code = 200, message = "OK", response = List.class),
             @ApiResponse(code = 401, message = "Credentials are required to access this resource"),
             @ApiResponse(code = 429, message = "Too many requests", response = ApiErrorResponse.class)})
-    public Response getDirectDebitEvents(
+    public void getDirectDebitEvents(
             @ApiParam(value = "accountId", hidden = true) @Auth Account account,
             @QueryParam("to_date") String toDate,
             @QueryParam("from_date") String fromDate,
@@ -66,13 +68,14 @@ public class DirectDebitEventsResource {
             @ApiParam(value = "ID of associated agreement", hidden = false)
             @QueryParam("agreement_id") String agreementId,
             @ApiParam(value = "ID of associated payment", hidden = false)
-            @QueryParam("payment_id") String paymentId
+            @QueryParam("payment_id") String paymentId,
+            @ApiParam(hidden = true) @Suspended AsyncResponse asyncResponse
     ) {
 
         DirectDebitEventSearchValidator.validateSearchParameters(toDate, fromDate, displaySize);
         String uri = connectorUriGenerator.eventsURI(account, parseDate(toDate), parseDate(fromDate), page, displaySize, agreementId, paymentId);
-        DirectDebitEventsResponse response = directDebitEventService.getResponse(uri);
-        return Response.ok(response).build();
+        resume(asyncResponse, directDebitEventService.getResponseAsync(uri)
+                .thenApply(response -> Response.ok(response).build()));
     }
     
     private Optional<ZonedDateTime> parseDate(String date) {
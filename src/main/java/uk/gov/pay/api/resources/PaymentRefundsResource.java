@@ -25,6 +25,7 @@ import uk.gov.pay.api.model.RefundResponse;
 import uk.gov.pay.api.model.RefundsFromConnector;
 import uk.gov.pay.api.model.RefundsResponse;
 import uk.gov.pay.api.resources.error.ApiErrorResponse;
+import uk.gov.pay.api.service.ConnectorRequests;
 
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
@@ -34,10 +35,14 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.client.Client;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import static java.lang.String.format;
 import static javax.ws.rs.client.Entity.json;
@@ -46,6 +51,7 @@ import static javax.ws.rs.core.Response.Status.ACCEPTED;
 import static javax.ws.rs.core.UriBuilder.fromPath;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.apache.http.HttpStatus.SC_OK;
+import static uk.gov.pay.api.resources.AsyncResponses.resume;
 
 @Path(PaymentRefundsResource.PAYMENT_REFUNDS_PATH)
 @Api(value = "/refunds", description = "Public Api Endpoints for Refunds")
@@ -72,12 +78,14 @@ public class PaymentRefundsResource {
     private final String baseUrl;
     private final Client client;
     private final String connectorUrl;
+    private final ConnectorRequests connectorRequests;
 
     @Inject
-    public PaymentRefundsResource(Client client, PublicApiConfig configuration) {
+    public PaymentRefundsResource(Client client, PublicApiConfig configuration, ConnectorRequests connectorRequests) {
         this.client = client;
         this.baseUrl = configuration.getBaseUrl();
         this.connectorUrl = configuration.getConnectorUrl();
+        this.connectorRequests = connectorRequests;
     }
 
     @GET
@@ -94,15 +102,18 @@ public class PaymentRefundsResource {
             @ApiResponse(code = 404, message = "Not found", response = PaymentError.class),
             @ApiResponse(code = 429, message = "Too many requests", response = ApiErrorResponse.class),
             @ApiResponse(code = 500, message = "Downstream system error", response = PaymentError.class)})
-    public Response getRefunds(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
-                               @PathParam(PATH_PAYMENT_KEY) String paymentId) {
+    public void getRefunds(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
+                           @PathParam(PATH_PAYMENT_KEY) String paymentId,
+                           @ApiParam(hidden = true) @Suspended AsyncResponse asyncResponse) {
 
         logger.info("Get refunds for payment request - paymentId={}", paymentId);
-        Response connectorResponse = client
+        resume(asyncResponse, connectorRequests.get(client
                 .target(getConnectorUrl(format(CONNECTOR_CHARGE_REFUNDS_RESOURCE, account.getAccountId(), paymentId)))
-                .request()
-                .get();
+                .request())
+                .thenApply(this::toRefundsResponse));
+    }
 
+    private Response toRefundsResponse(Response connectorResponse) {
         if (connectorResponse.getStatus() == SC_OK) {
             RefundsFromConnector refundsFromConnector = connectorResponse.readEntity(RefundsFromConnector.class);
             logger.debug("refund returned - [ {} ]", refundsFromConnector);
@@ -130,16 +141,19 @@ public class PaymentRefundsResource {
             @ApiResponse(code = 404, message = "Not found", response = PaymentError.class),
             @ApiResponse(code = 429, message = "Too many requests", response = ApiErrorResponse.class),
             @ApiResponse(code = 500, message = "Downstream system error", response = PaymentError.class)})
-    public Response getRefundById(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
-                                  @PathParam(PATH_PAYMENT_KEY) String paymentId,
-                                  @PathParam(PATH_REFUND_KEY) String refundId) {
+    public void getRefundById(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
+                              @PathParam(PATH_PAYMENT_KEY) String paymentId,
+                              @PathParam(PATH_REFUND_KEY) String refundId,
+                              @ApiParam(hidden = true) @Suspended AsyncResponse asyncResponse) {
 
         logger.info("Payment refund request - paymentId={}, refundId={}", paymentId, refundId);
-        Response connectorResponse = client
+        resume(asyncResponse, connectorRequests.get(client
                 .target(getConnectorUrl(format(CONNECTOR_CHARGE_REFUND_BY_ID_RESOURCE, account.getAccountId(), paymentId, refundId)))
-                .request()
-                .get();
+                .request())
+                .thenApply(connectorResponse -> toRefundResponse(paymentId, connectorResponse)));
+    }
 
+    private Response toRefundResponse(String paymentId, Response connectorResponse) {
         if (connectorResponse.getStatus() == SC_OK) {
             RefundFromConnector refundFromConnector = connectorResponse.readEntity(RefundFromConnector.class);
             logger.info("refund returned - [ {} ]", refundFromConnector);
@@ -166,32 +180,35 @@ public class PaymentRefundsResource {
             @ApiResponse(code = 412, message = "Refund amount available mismatch"),
             @ApiResponse(code = 429, message = "Too many requests", response = ApiErrorResponse.class),
             @ApiResponse(code = 500, message = "Downstream system error", response = PaymentError.class)})
-    public Response submitRefund(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
-                                 @ApiParam(value = "paymentId", required = true) @PathParam(PATH_PAYMENT_KEY) String paymentId,
-                                 @ApiParam(value = "requestPayload", required = true) CreatePaymentRefundRequest requestPayload) {
+    public void submitRefund(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
+                             @ApiParam(value = "paymentId", required = true) @PathParam(PATH_PAYMENT_KEY) String paymentId,
+                             @ApiParam(value = "requestPayload", required = true) CreatePaymentRefundRequest requestPayload,
+                             @ApiParam(hidden = true) @Suspended AsyncResponse asyncResponse) {
 
         logger.info("Create a refund for payment request - paymentId={}", paymentId);
 
-        Integer refundAmountAvailable = requestPayload.getRefundAmountAvailable()
-                .orElseGet(() -> {
-                    Response getChargeResponse = client
-                            .target(getConnectorUrl(format(CONNECTOR_CHARGE_RESOURCE, account.getAccountId(), paymentId)))
-                            .request()
-                            .get();
-
-                    ChargeFromResponse chargeFromResponse = getChargeResponse.readEntity(ChargeFromResponse.class);
-                    return Long.valueOf(chargeFromResponse.getRefundSummary().getAmountAvailable()).intValue();
-        });
-
-        ImmutableMap<String, Object> payloadMap = ImmutableMap.of("amount", requestPayload.getAmount(), "refund_amount_available", refundAmountAvailable);
-        String connectorPayload = new GsonBuilder().create().toJson(
-                payloadMap);
-
-        Response connectorResponse = client
-                .target(getConnectorUrl(format(CONNECTOR_CHARGE_REFUNDS_RESOURCE, account.getAccountId(), paymentId)))
-                .request()
-                .post(json(connectorPayload));
+        CompletionStage<Integer> refundAmountAvailable = requestPayload.getRefundAmountAvailable()
+                .<CompletionStage<Integer>>map(CompletableFuture::completedFuture)
+                .orElseGet(() -> connectorRequests.get(client
+                        .target(getConnectorUrl(format(CONNECTOR_CHARGE_RESOURCE, account.getAccountId(), paymentId)))
+                        .request())
+                        .thenApply(getChargeResponse -> {
+                            ChargeFromResponse chargeFromResponse = getChargeResponse.readEntity(ChargeFromResponse.class);
+                            return Long.valueOf(chargeFromResponse.getRefundSummary().getAmountAvailable()).intValue();
+                        }));
+
+        resume(asyncResponse, refundAmountAvailable.thenCompose(amountAvailable -> {
+            ImmutableMap<String, Object> payloadMap = ImmutableMap.of("amount", requestPayload.getAmount(), "refund_amount_available", amountAvailable);
+            String connectorPayload = new GsonBuilder().create().toJson(
+                    payloadMap);
+
+            return connectorRequests.post(client
+                    .target(getConnectorUrl(format(CONNECTOR_CHARGE_REFUNDS_RESOURCE, account.getAccountId(), paymentId)))
+                    .request(), json(connectorPayload));
+        }).thenApply(connectorResponse -> toCreatedRefundResponse(paymentId, connectorResponse)));
+    }
 
+    private Response toCreatedRefundResponse(String paymentId, Response connectorResponse) {
         if (connectorResponse.getStatus() == ACCEPTED.getStatusCode()) {
             RefundFromConnector refundFromConnector = connectorResponse.readEntity(RefundFromConnector.class);
             logger.debug("created refund returned - [ {} ]", refundFromConnector);
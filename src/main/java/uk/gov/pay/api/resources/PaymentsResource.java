@@ -23,6 +23,7 @@ import uk.gov.pay.api.resources.error.ApiErrorResponse;
 import uk.gov.pay.api.service.CancelPaymentService;
 import uk.gov.pay.api.service.CapturePaymentService;
 import uk.gov.pay.api.service.ConnectorUriGenerator;
+import uk.gov.pay.api.service.ConnectorRequests;
 import uk.gov.pay.api.service.CreatePaymentService;
 import uk.gov.pay.api.service.GetPaymentService;
 import uk.gov.pay.api.service.PaymentSearchService;
@@ -37,6 +38,8 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.client.Client;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
@@ -44,6 +47,7 @@ import java.net.URI;
 
 import static java.lang.String.format;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static uk.gov.pay.api.resources.AsyncResponses.resume;
 import static org.apache.http.HttpStatus.SC_OK;
 
 @Path("/")
@@ -61,6 +65,7 @@ public class PaymentsResource {
     private final GetPaymentService getPaymentService;
     private final CapturePaymentService capturePaymentService;
     private final CancelPaymentService cancelPaymentService;
+    private final ConnectorRequests connectorRequests;
 
     @Inject
     public PaymentsResource(Client client,
@@ -70,7 +75,8 @@ public class PaymentsResource {
                             ConnectorUriGenerator connectorUriGenerator,
                             GetPaymentService getPaymentService,
                             CapturePaymentService capturePaymentService,
-                            CancelPaymentService cancelPaymentService) {
+                            CancelPaymentService cancelPaymentService,
+                            ConnectorRequests connectorRequests) {
         this.client = client;
         this.createPaymentService = createPaymentService;
         this.publicApiUriGenerator = publicApiUriGenerator;
@@ -79,6 +85,7 @@ public class PaymentsResource {
         this.getPaymentService = getPaymentService;
         this.capturePaymentService = capturePaymentService;
         this.cancelPaymentService = cancelPaymentService;
+        this.connectorRequests = connectorRequests;
     }
 
     @GET
@@ -97,16 +104,16 @@ public class PaymentsResource {
             @ApiResponse(code = 404, message = "Not found", response = PaymentError.class),
             @ApiResponse(code = 429, message = "Too many requests", response = ApiErrorResponse.class),
             @ApiResponse(code = 500, message = "Downstream system error", response = PaymentError.class)})
-    public Response getPayment(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
-                               @PathParam("paymentId") String paymentId) {
+    public void getPayment(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
+                           @PathParam("paymentId") String paymentId,
+                           @ApiParam(hidden = true) @Suspended AsyncResponse asyncResponse) {
 
         logger.info("Payment request - paymentId={}", paymentId);
 
-        PaymentWithAllLinks payment = getPaymentService.getPayment(account, paymentId);
-
-        logger.info("Payment returned - [ {} ]", payment);
-        return Response.ok(payment).build();
-
+        resume(asyncResponse, getPaymentService.getPaymentAsync(account, paymentId).thenApply(payment -> {
+            logger.info("Payment returned - [ {} ]", payment);
+            return Response.ok(payment).build();
+        }));
     }
 
     @GET
@@ -125,16 +132,19 @@ public class PaymentsResource {
             @ApiResponse(code = 404, message = "Not found", response = PaymentError.class),
             @ApiResponse(code = 429, message = "Too many requests", response = ApiErrorResponse.class),
             @ApiResponse(code = 500, message = "Downstream system error", response = PaymentError.class)})
-    public Response getPaymentEvents(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
-                                     @PathParam("paymentId") String paymentId) {
+    public void getPaymentEvents(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
+                                 @PathParam("paymentId") String paymentId,
+                                 @ApiParam(hidden = true) @Suspended AsyncResponse asyncResponse) {
 
         logger.info("Payment events request - payment_id={}", paymentId);
 
-        Response connectorResponse = client
+        resume(asyncResponse, connectorRequests.get(client
                 .target(connectorUriGenerator.chargeEventsURI(account, paymentId))
-                .request()
-                .get();
+                .request())
+                .thenApply(this::toPaymentEvents));
+    }
 
+    private Response toPaymentEvents(Response connectorResponse) {
         if (connectorResponse.getStatus() == SC_OK) {
 
             JsonNode payload = connectorResponse.readEntity(JsonNode.class);
@@ -229,19 +239,20 @@ public class PaymentsResource {
             @ApiResponse(code = 422, message = "Invalid attribute value: description. Must be less than or equal to 255 characters length", response = PaymentError.class),
             @ApiResponse(code = 429, message = "Too many requests", response = ApiErrorResponse.class),
             @ApiResponse(code = 500, message = "Downstream system error", response = PaymentError.class)})
-    public Response createNewPayment(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
-                                     @ApiParam(value = "requestPayload", required = true) ValidCreatePaymentRequest validCreatePaymentRequest) {
+    public void createNewPayment(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
+                                 @ApiParam(value = "requestPayload", required = true) ValidCreatePaymentRequest validCreatePaymentRequest,
+                                 @ApiParam(hidden = true) @Suspended AsyncResponse asyncResponse) {
         logger.info("Payment create request passed validation and parsed to {}", validCreatePaymentRequest);
 
-        PaymentWithAllLinks createdPayment = createPaymentService.create(account, validCreatePaymentRequest);
+        resume(asyncResponse, createPaymentService.createAsync(account, validCreatePaymentRequest).thenApply(createdPayment -> {
+            Response response = Response
+                    .created(publicApiUriGenerator.getPaymentURI(createdPayment.getPayment().getPaymentId()))
+                    .entity(createdPayment)
+                    .build();
 
-        Response response = Response
-                .created(publicApiUriGenerator.getPaymentURI(createdPayment.getPayment().getPaymentId()))
-                .entity(createdPayment)
-                .build();
-
-        logger.info("Payment returned (created): [ {} ]", createdPayment);
-        return response;
+            logger.info("Payment returned (created): [ {} ]", createdPayment);
+            return response;
+        }));
     }
 
     @POST
@@ -264,12 +275,13 @@ public class PaymentsResource {
             @ApiResponse(code = 429, message = "Too many requests", response = ApiErrorResponse.class),
             @ApiResponse(code = 500, message = "Downstream system error", response = PaymentError.class)
     })
-    public Response cancelPayment(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
-                                  @PathParam("paymentId") String paymentId) {
+    public void cancelPayment(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
+                              @PathParam("paymentId") String paymentId,
+                              @ApiParam(hidden = true) @Suspended AsyncResponse asyncResponse) {
 
         logger.info("Payment cancel request - payment_id=[{}]", paymentId);
 
-        return cancelPaymentService.cancel(account, paymentId);
+        resume(asyncResponse, cancelPaymentService.cancelAsync(account, paymentId));
     }
 
     @POST
@@ -292,12 +304,15 @@ public class PaymentsResource {
             @ApiResponse(code = 429, message = "Too many requests", response = ApiErrorResponse.class),
             @ApiResponse(code = 500, message = "Downstream system error", response = PaymentError.class)
     })
-    public Response capturePayment(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
-                                   @PathParam("paymentId") String paymentId) {
+    public void capturePayment(@ApiParam(value = "accountId", hidden = true) @Auth Account account,
+                               @PathParam("paymentId") String paymentId,
+                               @ApiParam(hidden = true) @Suspended AsyncResponse asyncResponse) {
         logger.info("Payment capture request - payment_id=[{}]", paymentId);
 
-        Response connectorResponse = capturePaymentService.capture(account, paymentId);
+        resume(asyncResponse, capturePaymentService.captureAsync(account, paymentId).thenApply(this::toCaptureResponse));
+    }
 
+    private Response toCaptureResponse(Response connectorResponse) {
         if (connectorResponse.getStatus() == HttpStatus.SC_NO_CONTENT) {
             connectorResponse.close();
             return Response.noContent().build();
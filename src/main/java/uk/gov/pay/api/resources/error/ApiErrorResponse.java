@@ -13,7 +13,10 @@ public class ApiErrorResponse {
 
     public enum Code {
 
-        TOO_MANY_REQUESTS_ERROR("P0900", "Too many requests");
+        TOO_MANY_REQUESTS_ERROR("P0900", "Too many requests"),
+        SERVICE_BUSY_ERROR("P0910", "Service busy, please try again later"),
+        SERVICE_UNAVAILABLE_ERROR("P0930", "Service temporarily unavailable, please try again later"),
+        REQUEST_TIMEOUT_ERROR("P0940", "Request timed out, please try again later");
 
         private String value;
         private String format;
@@ -18,9 +18,11 @@ import uk.gov.pay.api.utils.JsonStringBuilder;
 import javax.inject.Inject;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
+import java.util.concurrent.CompletionStage;
 
 import static java.lang.String.format;
 import static javax.ws.rs.client.Entity.json;
@@ -33,18 +35,30 @@ public class AgreementService {
     private final String connectorDDUrl;
     private final Client client;
     private final PublicApiUriGenerator publicApiUriGenerator;
+    private final ConnectorRequests connectorRequests;
 
     @Inject
     public AgreementService(Client client,
                             PublicApiConfig configuration,
-                            PublicApiUriGenerator publicApiUriGenerator) {
+                            PublicApiUriGenerator publicApiUriGenerator,
+                            ConnectorRequests connectorRequests) {
         this.connectorDDUrl = configuration.getConnectorDDUrl();
         this.client = client;
         this.publicApiUriGenerator = publicApiUriGenerator;
+        this.connectorRequests = connectorRequests;
     }
 
-    public CreateAgreementResponse create(Account account, CreateAgreementRequest createAgreementRequest) {
-        Response connectorResponse = createMandate(account, MandateConnectorRequest.from(createAgreementRequest));
+    public CompletionStage<CreateAgreementResponse> createAsync(Account account, CreateAgreementRequest createAgreementRequest) {
+        return createMandate(account, MandateConnectorRequest.from(createAgreementRequest))
+                .thenApply(this::toCreateAgreementResponse);
+    }
+
+    public CompletionStage<GetAgreementResponse> getAsync(Account account, String agreementId) {
+        return getMandate(account, agreementId)
+                .thenApply(this::toGetAgreementResponse);
+    }
+
+    private CreateAgreementResponse toCreateAgreementResponse(Response connectorResponse) {
         if (isCreated(connectorResponse)) {
             MandateConnectorResponse mandate = connectorResponse.readEntity(MandateConnectorResponse.class);
             AgreementLinks agreementLinks = createLinksFromMandateResponse(mandate);
@@ -56,8 +70,7 @@ public class AgreementService {
         throw new CreateAgreementException(connectorResponse);
     }
 
-    public GetAgreementResponse get(Account account, String agreementId) {
-        Response connectorResponse = getMandate(account, agreementId);
+    private GetAgreementResponse toGetAgreementResponse(Response connectorResponse) {
         if (isFound(connectorResponse)) {
             MandateConnectorResponse mandate = connectorResponse.readEntity(MandateConnectorResponse.class);
             AgreementLinks agreementLinks = createLinksFromMandateResponse(mandate);
@@ -75,22 +88,28 @@ public class AgreementService {
         return agreementLinks;
     }
 
-    Response createMandate(Account account, MandateConnectorRequest mandateConnectorRequest) {
+    CompletionStage<Response> createMandate(Account account, MandateConnectorRequest mandateConnectorRequest) {
+        return connectorRequests.post(mandatesRequest(account), buildMandateConnectorRequestPayload(mandateConnectorRequest));
+    }
+
+    CompletionStage<Response> getMandate(Account account, String mandateExternalId) {
+        return connectorRequests.get(mandateRequest(account, mandateExternalId));
+    }
+
+    private Invocation.Builder mandatesRequest(Account account) {
         return client
                 .target(getDDConnectorUrl(format("/v1/api/accounts/%s/mandates", account.getName())))
                 .request()
-                .accept(MediaType.APPLICATION_JSON)
-                .post(buildMandateConnectorRequestPayload(mandateConnectorRequest));
+                .accept(MediaType.APPLICATION_JSON);
     }
 
-    Response getMandate(Account account, String mandateExternalId) {
+    private Invocation.Builder mandateRequest(Account account, String mandateExternalId) {
         return client
                 .target(getDDConnectorUrl(format("/v1/api/accounts/%s/mandates/%s",
                         account.getName(),
                         mandateExternalId)))
                 .request()
-                .accept(MediaType.APPLICATION_JSON)
-                .get();
+                .accept(MediaType.APPLICATION_JSON);
     }
 
     private Entity buildMandateConnectorRequestPayload(MandateConnectorRequest requestPayload) {
@@ -7,25 +7,35 @@ import uk.gov.pay.api.exception.CancelChargeException;
 import javax.inject.Inject;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.core.Response;
+import java.util.concurrent.CompletionStage;
 
 public class CancelPaymentService {
 
     private final Client client;
     private final ConnectorUriGenerator connectorUriGenerator;
+    private final ConnectorRequests connectorRequests;
 
     @Inject
-    public CancelPaymentService(Client client, ConnectorUriGenerator connectorUriGenerator) {
+    public CancelPaymentService(Client client, ConnectorUriGenerator connectorUriGenerator, ConnectorRequests connectorRequests) {
         this.client = client;
         this.connectorUriGenerator = connectorUriGenerator;
+        this.connectorRequests = connectorRequests;
     }
 
-    public Response cancel(Account account, String chargeId) {
-        Response connectorResponse = client
+    public CompletionStage<Response> cancelAsync(Account account, String chargeId) {
+        return connectorRequests.post(cancelRequest(account, chargeId), Entity.json("{}"))
+                .thenApply(this::toCancelResponse);
+    }
+
+    private Invocation.Builder cancelRequest(Account account, String chargeId) {
+        return client
                 .target(connectorUriGenerator.cancelURI(account, chargeId))
-                .request()
-                .post(Entity.json("{}"));
+                .request();
+    }
 
+    private Response toCancelResponse(Response connectorResponse) {
         if (connectorResponse.getStatus() == HttpStatus.SC_NO_CONTENT) {
             connectorResponse.close();
             return Response.noContent().build();
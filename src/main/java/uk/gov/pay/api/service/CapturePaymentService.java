@@ -5,24 +5,31 @@ import uk.gov.pay.api.auth.Account;
 import javax.inject.Inject;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.core.Response;
+import java.util.concurrent.CompletionStage;
 
 public class CapturePaymentService {
 
     private final Client client;
     private final ConnectorUriGenerator connectorUriGenerator;
+    private final ConnectorRequests connectorRequests;
 
     @Inject
-    public CapturePaymentService(Client client, ConnectorUriGenerator connectorUriGenerator) {
+    public CapturePaymentService(Client client, ConnectorUriGenerator connectorUriGenerator, ConnectorRequests connectorRequests) {
         this.client = client;
         this.connectorUriGenerator = connectorUriGenerator;
+        this.connectorRequests = connectorRequests;
     }
 
-    public Response capture(Account account, String chargeId) {
+    public CompletionStage<Response> captureAsync(Account account, String chargeId) {
+        return connectorRequests.post(captureRequest(account, chargeId), Entity.json("{}"));
+    }
+
+    private Invocation.Builder captureRequest(Account account, String chargeId) {
         return client
                 .target(connectorUriGenerator.captureURI(account, chargeId))
-                .request()
-                .post(Entity.json("{}"));
+                .request();
     }
 
 }
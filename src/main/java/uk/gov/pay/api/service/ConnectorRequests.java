@@ -0,0 +1,80 @@
+package uk.gov.pay.api.service;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.MDC;
+import uk.gov.pay.api.app.config.PublicApiConfig;
+import uk.gov.pay.api.resilience.Deadline;
+import uk.gov.pay.api.utils.ResponseFuture;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+import static uk.gov.pay.api.filter.LoggingFilter.HEADER_REQUEST_ID;
+
+/**
+ * Sends every request the services make to connector and direct debit connector.
+ * <p>
+ * With {@code asyncRequestsEnabled} the request is sent with {@code async()} and the calling thread is free as soon
+ * as it has been handed over. Otherwise it is sent on the calling thread and the returned stage is already complete,
+ * so the services have one request path whichever way requests are sent.
+ */
+@Singleton
+public class ConnectorRequests {
+
+    private final boolean asyncRequestsEnabled;
+
+    @Inject
+    public ConnectorRequests(PublicApiConfig configuration) {
+        this(configuration.getRestClientConfig().isAsyncRequestsEnabled());
+    }
+
+    public ConnectorRequests(boolean asyncRequestsEnabled) {
+        this.asyncRequestsEnabled = asyncRequestsEnabled;
+    }
+
+    public CompletionStage<Response> get(Invocation.Builder request) {
+        if (asyncRequestsEnabled) {
+            ResponseFuture response = new ResponseFuture();
+            withRequestContext(request).async().get(response);
+            return response;
+        }
+        return callOnThisThread(request::get);
+    }
+
+    public CompletionStage<Response> post(Invocation.Builder request, Entity<?> entity) {
+        if (asyncRequestsEnabled) {
+            ResponseFuture response = new ResponseFuture();
+            withRequestContext(request).async().post(entity, response);
+            return response;
+        }
+        return callOnThisThread(() -> request.post(entity));
+    }
+
+    /**
+     * The request id and deadline are only known to this thread, not the client thread an {@code async()} request is
+     * sent from.
+     */
+    private static Invocation.Builder withRequestContext(Invocation.Builder request) {
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            request.property(Deadline.PROPERTY, deadline);
+        }
+        return request.header(HEADER_REQUEST_ID, StringUtils.defaultString(MDC.get(HEADER_REQUEST_ID)));
+    }
+
+    private static CompletionStage<Response> callOnThisThread(Supplier<Response> call) {
+        CompletableFuture<Response> response = new CompletableFuture<>();
+        try {
+            response.complete(call.get());
+        } catch (RuntimeException e) {
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+}
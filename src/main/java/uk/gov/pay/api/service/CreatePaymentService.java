@@ -11,8 +11,10 @@ import uk.gov.pay.api.utils.JsonStringBuilder;
 import javax.inject.Inject;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.concurrent.CompletionStage;
 
 import static javax.ws.rs.client.Entity.json;
 
@@ -21,17 +23,23 @@ public class CreatePaymentService {
     private final Client client;
     private final PublicApiUriGenerator publicApiUriGenerator;
     private final ConnectorUriGenerator connectorUriGenerator;
+    private final ConnectorRequests connectorRequests;
 
     @Inject
-    public CreatePaymentService(Client client, PublicApiUriGenerator publicApiUriGenerator, ConnectorUriGenerator connectorUriGenerator) {
+    public CreatePaymentService(Client client, PublicApiUriGenerator publicApiUriGenerator, ConnectorUriGenerator connectorUriGenerator,
+                                ConnectorRequests connectorRequests) {
         this.client = client;
         this.publicApiUriGenerator = publicApiUriGenerator;
         this.connectorUriGenerator = connectorUriGenerator;
+        this.connectorRequests = connectorRequests;
     }
 
-    public PaymentWithAllLinks create(Account account, ValidCreatePaymentRequest validCreatePaymentRequest) {
-        Response connectorResponse = createCharge(account, validCreatePaymentRequest);
+    public CompletionStage<PaymentWithAllLinks> createAsync(Account account, ValidCreatePaymentRequest validCreatePaymentRequest) {
+        return connectorRequests.post(chargesRequest(account, validCreatePaymentRequest), buildChargeRequestPayload(validCreatePaymentRequest))
+                .thenApply(connectorResponse -> toCreatedPayment(account, connectorResponse));
+    }
 
+    private PaymentWithAllLinks toCreatedPayment(Account account, Response connectorResponse) {
         if (!createdSuccessfully(connectorResponse)) {
             throw new CreateChargeException(connectorResponse);
         }
@@ -55,12 +63,11 @@ public class CreatePaymentService {
         return connectorResponse.getStatus() == HttpStatus.SC_CREATED;
     }
 
-    private Response createCharge(Account account, ValidCreatePaymentRequest validCreatePaymentRequest) {
+    private Invocation.Builder chargesRequest(Account account, ValidCreatePaymentRequest validCreatePaymentRequest) {
         return client
                 .target(connectorUriGenerator.chargesURI(account, validCreatePaymentRequest.getAgreementId().orElse(null)))
                 .request()
-                .accept(MediaType.APPLICATION_JSON)
-                .post(buildChargeRequestPayload(validCreatePaymentRequest));
+                .accept(MediaType.APPLICATION_JSON);
     }
 
     private Entity buildChargeRequestPayload(ValidCreatePaymentRequest requestPayload) {
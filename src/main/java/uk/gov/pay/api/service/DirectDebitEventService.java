@@ -7,26 +7,35 @@ import uk.gov.pay.api.model.links.directdebit.DirectDebitEventsResponse;
 
 import javax.inject.Inject;
 import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.concurrent.CompletionStage;
 
 public class DirectDebitEventService {
 
     private final PublicApiUriGenerator publicApiUriGenerator;
     private final Client client;
+    private final ConnectorRequests connectorRequests;
 
     @Inject
-    public DirectDebitEventService(PublicApiUriGenerator publicApiUriGenerator, Client client) {
+    public DirectDebitEventService(PublicApiUriGenerator publicApiUriGenerator, Client client, ConnectorRequests connectorRequests) {
         this.publicApiUriGenerator = publicApiUriGenerator;
         this.client = client;
+        this.connectorRequests = connectorRequests;
     }
 
-    public DirectDebitEventsResponse getResponse(String searchUri) {
-        Response ddConnectorResponse = client.target(searchUri)
+    public CompletionStage<DirectDebitEventsResponse> getResponseAsync(String searchUri) {
+        return connectorRequests.get(eventsRequest(searchUri)).thenApply(this::toEventsResponse);
+    }
+
+    private Invocation.Builder eventsRequest(String searchUri) {
+        return client.target(searchUri)
                 .request()
-                .accept(MediaType.APPLICATION_JSON)
-                .get();
+                .accept(MediaType.APPLICATION_JSON);
+    }
 
+    private DirectDebitEventsResponse toEventsResponse(Response ddConnectorResponse) {
         if (ddConnectorResponse.getStatus() == HttpStatus.SC_OK) {
             DirectDebitEventsResponse eventsResponse = ddConnectorResponse.readEntity(DirectDebitEventsResponse.class);
             updatePaginationLinks(eventsResponse);
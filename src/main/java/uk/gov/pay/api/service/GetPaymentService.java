@@ -4,47 +4,73 @@ import uk.gov.pay.api.auth.Account;
 import uk.gov.pay.api.exception.GetChargeException;
 import uk.gov.pay.api.model.ChargeFromResponse;
 import uk.gov.pay.api.model.links.PaymentWithAllLinks;
+import uk.gov.pay.api.utils.RequestCollapser;
 
 import javax.inject.Inject;
 import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.core.Response;
 import java.net.URI;
+import java.util.concurrent.CompletionStage;
 
 import static org.apache.http.HttpStatus.SC_OK;
 
+/**
+ * Identical requests for a payment made at the same time, typically by integrations polling for its status, share one
+ * call to connector, see {@link RequestCollapser}.
+ */
 public class GetPaymentService {
 
     private final Client client;
     private final PublicApiUriGenerator publicApiUriGenerator;
     private final ConnectorUriGenerator connectorUriGenerator;
+    private final ConnectorRequests connectorRequests;
+    private final RequestCollapser<String, ChargeFromResponse> chargeRequests;
 
     @Inject
-    public GetPaymentService(Client client, PublicApiUriGenerator publicApiUriGenerator, ConnectorUriGenerator connectorUriGenerator) {
+    public GetPaymentService(Client client, PublicApiUriGenerator publicApiUriGenerator, ConnectorUriGenerator connectorUriGenerator,
+                             ConnectorRequests connectorRequests, RequestCollapser<String, ChargeFromResponse> chargeRequests) {
         this.client = client;
         this.publicApiUriGenerator = publicApiUriGenerator;
         this.connectorUriGenerator = connectorUriGenerator;
+        this.connectorRequests = connectorRequests;
+        this.chargeRequests = chargeRequests;
     }
 
-    public PaymentWithAllLinks getPayment(Account account, String paymentId) {
-        Response connectorResponse = client
-                .target(connectorUriGenerator.chargeURI(account, paymentId))
-                .request()
-                .get();
+    public CompletionStage<PaymentWithAllLinks> getPaymentAsync(Account account, String paymentId) {
+        String chargeURI = connectorUriGenerator.chargeURI(account, paymentId);
+        return chargeRequests.callAsync(chargeRequestKey(account, chargeURI),
+                () -> connectorRequests.get(chargeRequest(chargeURI)).thenApply(this::toCharge))
+                .thenApply(charge -> toPayment(account, charge));
+    }
+
+    private static String chargeRequestKey(Account account, String chargeURI) {
+        return account.getAccountId() + " " + chargeURI;
+    }
+
+    private Invocation.Builder chargeRequest(String chargeURI) {
+        return client
+                .target(chargeURI)
+                .request();
+    }
 
+    private ChargeFromResponse toCharge(Response connectorResponse) {
         if (connectorResponse.getStatus() == SC_OK) {
-            ChargeFromResponse chargeFromResponse = connectorResponse.readEntity(ChargeFromResponse.class);
-            URI paymentURI = publicApiUriGenerator.getPaymentURI(chargeFromResponse.getChargeId());
-
-            PaymentWithAllLinks payment = PaymentWithAllLinks.getPaymentWithLinks(
-                    account.getPaymentType(),
-                    chargeFromResponse,
-                    paymentURI,
-                    publicApiUriGenerator.getPaymentEventsURI(chargeFromResponse.getChargeId()),
-                    publicApiUriGenerator.getPaymentCancelURI(chargeFromResponse.getChargeId()),
-                    publicApiUriGenerator.getPaymentRefundsURI(chargeFromResponse.getChargeId()),
-                    publicApiUriGenerator.getPaymentCaptureURI(chargeFromResponse.getChargeId()));
-            return payment;
+            return connectorResponse.readEntity(ChargeFromResponse.class);
         }
         throw new GetChargeException(connectorResponse);
     }
+
+    private PaymentWithAllLinks toPayment(Account account, ChargeFromResponse chargeFromResponse) {
+        URI paymentURI = publicApiUriGenerator.getPaymentURI(chargeFromResponse.getChargeId());
+
+        return PaymentWithAllLinks.getPaymentWithLinks(
+                account.getPaymentType(),
+                chargeFromResponse,
+                paymentURI,
+                publicApiUriGenerator.getPaymentEventsURI(chargeFromResponse.getChargeId()),
+                publicApiUriGenerator.getPaymentCancelURI(chargeFromResponse.getChargeId()),
+                publicApiUriGenerator.getPaymentRefundsURI(chargeFromResponse.getChargeId()),
+                publicApiUriGenerator.getPaymentCaptureURI(chargeFromResponse.getChargeId()));
+    }
 }
@@ -0,0 +1,94 @@
+package uk.gov.pay.api.utils;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import uk.gov.pay.api.exception.CollapsedRequestException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Collapses identical reads made at the same time into one: while a call for a key is in flight, anyone else asking
+ * for the same key waits for that call and gets the same result instead of making another. If the call fails, each
+ * of them gets a {@link CollapsedRequestException} of its own caused by the call's exception, while whoever made the
+ * call gets the exception itself. Once the call completes the next request for the key makes a new one, so nothing
+ * is cached.
+ * <p>
+ * The {@code name.collapsed} to {@code name.requests} ratio over the last minute is reported as {@code name.ratio}.
+ */
+public class RequestCollapser<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Meter requests;
+    private final Meter collapsed;
+
+    public RequestCollapser(String name, MetricRegistry metricRegistry) {
+        this.requests = metricRegistry.meter(MetricRegistry.name(name, "requests"));
+        this.collapsed = metricRegistry.meter(MetricRegistry.name(name, "collapsed"));
+        metricRegistry.register(MetricRegistry.name(name, "ratio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(collapsed.getOneMinuteRate(), requests.getOneMinuteRate());
+            }
+        });
+    }
+
+    /**
+     * Starts {@code call}, unless one for {@code key} is already in flight, in which case that one's result is
+     * returned instead. If {@code call} throws rather than returning a stage, even an {@link Error} or a checked
+     * exception thrown sneakily, the call is over all the same: its waiters fail with that exception, and an
+     * {@code Error} is then rethrown.
+     */
+    public CompletionStage<V> callAsync(K key, Supplier<? extends CompletionStage<V>> call) {
+        CompletableFuture<V> result = new CompletableFuture<>();
+        CompletableFuture<V> existing = join(key, result);
+        if (existing != null) {
+            return existing.handle((value, failure) -> {
+                if (failure != null) {
+                    throw new CollapsedRequestException(unwrap(failure));
+                }
+                return value;
+            });
+        }
+        try {
+            call.get().whenComplete((value, failure) -> complete(key, result, value, failure));
+        } catch (Throwable t) {
+            complete(key, result, null, t);
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the call already in flight for {@code key}, or null if {@code result} is now the one in flight
+     */
+    private CompletableFuture<V> join(K key, CompletableFuture<V> result) {
+        requests.mark();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, result);
+        if (existing != null) {
+            collapsed.mark();
+        }
+        return existing;
+    }
+
+    private void complete(K key, CompletableFuture<V> result, V value, Throwable failure) {
+        // removed first, so a request made once the result is known gets a fresh one rather than this
+        inFlight.remove(key, result);
+        if (failure == null) {
+            result.complete(value);
+        } else {
+            result.completeExceptionally(unwrap(failure));
+        }
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+}
@@ -0,0 +1,22 @@
+package uk.gov.pay.api.utils;
+
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Adapts the callback of an {@code async()} client request to a {@link CompletableFuture}, e.g.
+ * {@code request.async().get(responseFuture)}.
+ */
+public class ResponseFuture extends CompletableFuture<Response> implements InvocationCallback<Response> {
+
+    @Override
+    public void completed(Response response) {
+        complete(response);
+    }
+
+    @Override
+    public void failed(Throwable throwable) {
+        completeExceptionally(throwable);
+    }
+}
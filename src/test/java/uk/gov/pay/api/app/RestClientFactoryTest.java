@@ -2,7 +2,18 @@ package uk.gov.pay.api.app;
 
 import com.google.common.io.Files;
 import com.google.common.io.Resources;
+import io.dropwizard.lifecycle.setup.LifecycleEnvironment;
 import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.UnsupportedSchemeException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.JerseyClient;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -11,14 +22,20 @@ import uk.gov.pay.api.app.config.RestClientConfig;
 import javax.net.ssl.SSLContext;
 import javax.ws.rs.client.Client;
 import java.io.*;
+import java.net.ServerSocket;
 import java.security.KeyStore;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.core.IsNot.not;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
 public class RestClientFactoryTest {
@@ -66,6 +83,76 @@ public class RestClientFactoryTest {
         assertThat(client.getSslContext().getProtocol(), is(not("TLSv1.2")));
     }
 
+    @Test
+    public void jerseyClient_shouldUseApacheConnectorWhenPooledConnectionsAreEnabled() throws Exception {
+        //given
+        RestClientConfig clientConfiguration = spy(new RestClientConfig());
+        when(clientConfiguration.isDisabledSecureConnection()).thenReturn(false);
+        when(clientConfiguration.isPooledConnectionsEnabled()).thenReturn(true);
+
+        //when
+        Client client = RestClientFactory.buildClient(clientConfiguration);
+
+        //then
+        assertThat(((JerseyClient) client).getConfiguration().getConnectorProvider(), is(instanceOf(ApacheConnectorProvider.class)));
+        assertThat(client.getSslContext().getProtocol(), is("TLSv1.2"));
+    }
+
+    @Test
+    public void jerseyClient_shouldSupportHttpsWithDefaultSSL_whenPooledConnectionsAreEnabledAndSecureInternalCommunicationIsOff() throws Exception {
+        //given
+        RestClientConfig clientConfiguration = spy(new RestClientConfig());
+        when(clientConfiguration.isDisabledSecureConnection()).thenReturn(true);
+        when(clientConfiguration.isPooledConnectionsEnabled()).thenReturn(true);
+        Client client = RestClientFactory.buildClient(clientConfiguration);
+        PoolingHttpClientConnectionManager connectionManager = (PoolingHttpClientConnectionManager)
+                client.getConfiguration().getProperty(ApacheClientProperties.CONNECTION_MANAGER);
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        HttpRoute route = new HttpRoute(new HttpHost("localhost", closedPort, "https"));
+        HttpClientConnection connection = connectionManager.requestConnection(route, null).get(1, TimeUnit.SECONDS);
+
+        //when
+        try {
+            connectionManager.connect(connection, route, 1000, new BasicHttpContext());
+            fail("Expected nothing to be listening on port " + closedPort);
+        } catch (IOException e) {
+            //then
+            assertThat(e, is(not(instanceOf(UnsupportedSchemeException.class))));
+        } finally {
+            connectionManager.shutdown();
+        }
+    }
+
+    @Test
+    public void jerseyClient_shouldCloseConnectionPool_whenApplicationStops() throws Exception {
+        //given
+        RestClientConfig clientConfiguration = spy(new RestClientConfig());
+        when(clientConfiguration.isDisabledSecureConnection()).thenReturn(true);
+        when(clientConfiguration.isPooledConnectionsEnabled()).thenReturn(true);
+        LifecycleEnvironment lifecycle = new LifecycleEnvironment();
+        Client client = RestClientFactory.buildClient(clientConfiguration, UnaryOperator.identity(), lifecycle);
+        PoolingHttpClientConnectionManager connectionManager = (PoolingHttpClientConnectionManager)
+                client.getConfiguration().getProperty(ApacheClientProperties.CONNECTION_MANAGER);
+
+        //when
+        assertThat(lifecycle.getManagedObjects().size(), is(1));
+        for (LifeCycle managed : lifecycle.getManagedObjects()) {
+            managed.start();
+            managed.stop();
+        }
+
+        //then
+        try {
+            connectionManager.requestConnection(new HttpRoute(new HttpHost("localhost")), null);
+            fail("Expected the connection pool to be shut down");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("Connection pool shut down"));
+        }
+    }
+
 
     static class KeyStoreUtil {
 
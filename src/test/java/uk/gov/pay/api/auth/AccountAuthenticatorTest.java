@@ -1,27 +1,33 @@
 package uk.gov.pay.api.auth;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.ImmutableMap;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import uk.gov.pay.api.app.config.PublicApiConfig;
+import uk.gov.pay.api.model.AccountFromPublicAuth;
 
 import javax.ws.rs.ServiceUnavailableException;
 import javax.ws.rs.client.Client;
+import javax.ws.rs.client.AsyncInvoker;
 import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.InvocationCallback;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import java.util.Map;
+import java.io.IOException;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static javax.ws.rs.core.HttpHeaders.AUTHORIZATION;
 import static javax.ws.rs.core.Response.Status.NOT_FOUND;
 import static javax.ws.rs.core.Response.Status.OK;
 import static javax.ws.rs.core.Response.Status.UNAUTHORIZED;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static uk.gov.pay.api.model.TokenPaymentType.CARD;
@@ -30,8 +36,9 @@ import static uk.gov.pay.api.model.TokenPaymentType.DIRECT_DEBIT;
 public class AccountAuthenticatorTest {
 
     private AccountAuthenticator accountAuthenticator;
-    private ObjectMapper objectMapper = new ObjectMapper();
     private Response mockResponse;
+    private AsyncInvoker mockAsyncInvoker;
+    private AccountIdCache accountIdCache = new AccountIdCache();
 
     private final String bearerToken = "aaa";
     private final String accountId = "accountId";
@@ -44,37 +51,31 @@ public class AccountAuthenticatorTest {
         mockResponse = mock(Response.class);
         PublicApiConfig mockConfiguration = mock(PublicApiConfig.class);
         when(mockConfiguration.getPublicAuthUrl()).thenReturn("");
-        accountAuthenticator = new AccountAuthenticator(publicAuthMock, mockConfiguration);
+        accountAuthenticator = new AccountAuthenticator(publicAuthMock, mockConfiguration, accountIdCache);
         when(publicAuthMock.target("")).thenReturn(mockTarget);
         when(mockTarget.request()).thenReturn(mockRequest);
         when(mockRequest.header(AUTHORIZATION, "Bearer " + bearerToken)).thenReturn(mockRequest);
         when(mockRequest.accept(MediaType.APPLICATION_JSON)).thenReturn(mockRequest);
         when(mockRequest.get()).thenReturn(mockResponse);
+        mockAsyncInvoker = mock(AsyncInvoker.class);
+        when(mockRequest.async()).thenReturn(mockAsyncInvoker);
     }
 
     @Test
     public void shouldReturnValidAccount() {
-        Map<String, String> responseEntity = ImmutableMap.of(
-                "account_id", accountId,
-                "token_type", "DIRECT_DEBIT"
-        );
-        JsonNode response = objectMapper.valueToTree(responseEntity);
         when(mockResponse.getStatus()).thenReturn(OK.getStatusCode());
-        when(mockResponse.readEntity(JsonNode.class)).thenReturn(response);
+        when(mockResponse.readEntity(AccountFromPublicAuth.class)).thenReturn(new AccountFromPublicAuth(accountId, "DIRECT_DEBIT"));
         Optional<Account> maybeAccount = accountAuthenticator.authenticate(bearerToken);
         Assert.assertThat(maybeAccount.get().getName(), is(accountId));
         Assert.assertThat(maybeAccount.get().getAccountId(), is(accountId));
         Assert.assertThat(maybeAccount.get().getPaymentType(), is(DIRECT_DEBIT));
+        Assert.assertThat(accountIdCache.getAccountId(TokenDigest.fromBearerToken(bearerToken)), is(accountId));
     }
 
     @Test
     public void shouldReturnCCAccount_ifTokenTypeIsMissing() {
-        Map<String, String> responseEntity = ImmutableMap.of(
-                "account_id", accountId
-        );
-        JsonNode response = objectMapper.valueToTree(responseEntity);
         when(mockResponse.getStatus()).thenReturn(OK.getStatusCode());
-        when(mockResponse.readEntity(JsonNode.class)).thenReturn(response);
+        when(mockResponse.readEntity(AccountFromPublicAuth.class)).thenReturn(new AccountFromPublicAuth(accountId, null));
         Optional<Account> maybeAccount = accountAuthenticator.authenticate(bearerToken);
         Assert.assertThat(maybeAccount.get().getName(), is(accountId));
         Assert.assertThat(maybeAccount.get().getPaymentType(), is(CARD));
@@ -92,4 +93,59 @@ public class AccountAuthenticatorTest {
         when(mockResponse.getStatus()).thenReturn(NOT_FOUND.getStatusCode());
         accountAuthenticator.authenticate(bearerToken);
     }
+
+    @Test
+    public void shouldReturnValidAccount_whenAuthenticatingAsynchronously() throws Exception {
+        respondAsynchronouslyWith(mockResponse);
+        when(mockResponse.getStatus()).thenReturn(OK.getStatusCode());
+        when(mockResponse.readEntity(AccountFromPublicAuth.class)).thenReturn(new AccountFromPublicAuth(accountId, "DIRECT_DEBIT"));
+
+        Optional<Account> maybeAccount = accountAuthenticator.authenticateAsync(bearerToken).toCompletableFuture().get();
+
+        Assert.assertThat(maybeAccount.get().getAccountId(), is(accountId));
+        Assert.assertThat(maybeAccount.get().getPaymentType(), is(DIRECT_DEBIT));
+        Assert.assertThat(accountIdCache.getAccountId(TokenDigest.fromBearerToken(bearerToken)), is(accountId));
+    }
+
+    @Test
+    public void shouldNotReturnAccount_ifUnauthorised_whenAuthenticatingAsynchronously() throws Exception {
+        respondAsynchronouslyWith(mockResponse);
+        when(mockResponse.getStatus()).thenReturn(UNAUTHORIZED.getStatusCode());
+
+        Assert.assertThat(accountAuthenticator.authenticateAsync(bearerToken).toCompletableFuture().get().isPresent(), is(false));
+    }
+
+    @Test
+    public void shouldCompleteExceptionally_ifUnknownResponse_whenAuthenticatingAsynchronously() throws Exception {
+        respondAsynchronouslyWith(mockResponse);
+        when(mockResponse.getStatus()).thenReturn(NOT_FOUND.getStatusCode());
+
+        assertFailsWith(accountAuthenticator.authenticateAsync(bearerToken).toCompletableFuture(), ServiceUnavailableException.class);
+    }
+
+    @Test
+    public void shouldCompleteExceptionally_ifPublicAuthCannotBeReached_whenAuthenticatingAsynchronously() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<InvocationCallback<Response>>getArgument(0).failed(new IOException("connection refused"));
+            return null;
+        }).when(mockAsyncInvoker).get(any(InvocationCallback.class));
+
+        assertFailsWith(accountAuthenticator.authenticateAsync(bearerToken).toCompletableFuture(), IOException.class);
+    }
+
+    private void respondAsynchronouslyWith(Response response) {
+        doAnswer(invocation -> {
+            invocation.<InvocationCallback<Response>>getArgument(0).completed(response);
+            return null;
+        }).when(mockAsyncInvoker).get(any(InvocationCallback.class));
+    }
+
+    private static void assertFailsWith(CompletableFuture<?> future, Class<? extends Throwable> expected) throws InterruptedException {
+        try {
+            future.get();
+            fail("Expected " + expected.getSimpleName());
+        } catch (ExecutionException e) {
+            Assert.assertThat(e.getCause(), instanceOf(expected));
+        }
+    }
 }
@@ -0,0 +1,93 @@
+package uk.gov.pay.api.auth;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.api.model.TokenPaymentType;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AuthenticationCacheSnapshotTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    RefreshingCachingAuthenticator cachingAuthenticator;
+    @Mock
+    ScheduledExecutorService scheduler;
+
+    private Path file;
+    private AuthenticationCacheSnapshot snapshot;
+
+    @Before
+    public void setup() {
+        file = temporaryFolder.getRoot().toPath().resolve("auth.snapshot");
+        snapshot = new AuthenticationCacheSnapshot(cachingAuthenticator, file, 60_000, 600_000, scheduler);
+    }
+
+    @Test
+    public void shouldSaveAccountsByTokenDigest() throws Exception {
+        when(cachingAuthenticator.snapshot()).thenReturn(
+                Collections.singletonMap("qgs1j9cor8mosf6ugp5jfo7ip7qlr1hf", new Account("123", TokenPaymentType.DIRECT_DEBIT)));
+
+        snapshot.save();
+
+        assertThat(Files.readAllLines(file, StandardCharsets.UTF_8),
+                is(Collections.singletonList("qgs1j9cor8mosf6ugp5jfo7ip7qlr1hf DIRECT_DEBIT:123")));
+    }
+
+    @Test
+    public void shouldPreloadSavedAccounts_andScheduleSaving_onStart() throws Exception {
+        Files.write(file, Arrays.asList("digest1 CARD:123", "not a valid line", "digest2 DIRECT_DEBIT:456"), StandardCharsets.UTF_8);
+
+        snapshot.start();
+
+        verify(cachingAuthenticator).preload(eq("digest1"), accountWith("123", TokenPaymentType.CARD));
+        verify(cachingAuthenticator).preload(eq("digest2"), accountWith("456", TokenPaymentType.DIRECT_DEBIT));
+        verify(scheduler).scheduleWithFixedDelay(any(Runnable.class), eq(60_000L), eq(60_000L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void shouldIgnoreSnapshot_olderThanMaxAge() throws Exception {
+        Files.write(file, Collections.singletonList("digest1 CARD:123"), StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 601_000));
+
+        snapshot.load();
+
+        verifyZeroInteractions(cachingAuthenticator);
+    }
+
+    @Test
+    public void shouldStartWithEmptyCache_whenThereIsNoSnapshot() {
+        snapshot.load();
+
+        verifyZeroInteractions(cachingAuthenticator);
+    }
+
+    private static Account accountWith(String accountId, TokenPaymentType paymentType) {
+        return argThat(account ->
+                account.getAccountId().equals(accountId) && account.getPaymentType() == paymentType);
+    }
+}
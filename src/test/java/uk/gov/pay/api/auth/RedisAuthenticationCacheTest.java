@@ -0,0 +1,159 @@
+package uk.gov.pay.api.auth;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import uk.gov.pay.api.model.TokenPaymentType;
+import uk.gov.pay.api.resilience.CircuitBreaker;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RedisAuthenticationCacheTest {
+
+    private static final String HMAC = "qgs1j9cor8mosf6ugp5jfo7ip7qlr1hf";
+    private static final String TOKEN = "token" + HMAC;
+    private static final String REDIS_KEY = "auth:" + HMAC;
+
+    @Mock
+    AsyncAccountAuthenticator underlying;
+    @Mock
+    JedisPool jedisPool;
+    @Mock
+    Jedis jedis;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final AccountIdCache accountIdCache = new AccountIdCache();
+    private final Account account = new Account("123", TokenPaymentType.DIRECT_DEBIT);
+    private RedisAuthenticationCache redisAuthenticationCache;
+
+    @Before
+    public void setup() {
+        when(jedisPool.getResource()).thenReturn(jedis);
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test.circuit-breaker", 2, 10_000, metricRegistry);
+        redisAuthenticationCache = new RedisAuthenticationCache(underlying, jedisPool, 300_000, circuitBreaker,
+                accountIdCache, metricRegistry);
+    }
+
+    @Test
+    public void shouldReturnAccountFromRedis_withoutCallingPublicAuth() throws Exception {
+        when(jedis.get(REDIS_KEY)).thenReturn("DIRECT_DEBIT:123");
+
+        Optional<Account> result = redisAuthenticationCache.authenticate(TOKEN);
+
+        assertThat(result.get().getAccountId(), is("123"));
+        assertThat(result.get().getPaymentType(), is(TokenPaymentType.DIRECT_DEBIT));
+        assertThat(accountIdCache.getAccountId(HMAC), is("123"));
+        verifyZeroInteractions(underlying);
+        assertThat(meter("hits"), is(1L));
+    }
+
+    @Test
+    public void shouldAuthenticateWithPublicAuth_andStoreAccountInRedis_onMiss() throws Exception {
+        when(underlying.authenticate(TOKEN)).thenReturn(Optional.of(account));
+
+        assertThat(redisAuthenticationCache.authenticate(TOKEN), is(Optional.of(account)));
+
+        verify(jedis).psetex(REDIS_KEY, 300_000L, "DIRECT_DEBIT:123");
+        assertThat(meter("misses"), is(1L));
+    }
+
+    @Test
+    public void shouldAuthenticateAsynchronously_andStoreAccountInRedis_onMiss() throws Exception {
+        when(underlying.authenticateAsync(TOKEN)).thenReturn(CompletableFuture.completedFuture(Optional.of(account)));
+
+        assertThat(redisAuthenticationCache.authenticateAsync(TOKEN).toCompletableFuture().get(), is(Optional.of(account)));
+
+        verify(jedis).psetex(REDIS_KEY, 300_000L, "DIRECT_DEBIT:123");
+    }
+
+    @Test
+    public void shouldCompleteAsynchronousAuthenticationFromRedis_withoutCallingPublicAuth() throws Exception {
+        when(jedis.get(REDIS_KEY)).thenReturn("DIRECT_DEBIT:123");
+
+        assertThat(redisAuthenticationCache.authenticateAsync(TOKEN).toCompletableFuture().get().get().getAccountId(), is("123"));
+
+        verifyZeroInteractions(underlying);
+    }
+
+    @Test
+    public void shouldNotStoreRejectedKeys() throws Exception {
+        when(underlying.authenticate(TOKEN)).thenReturn(Optional.empty());
+
+        assertThat(redisAuthenticationCache.authenticate(TOKEN), is(Optional.empty()));
+
+        verify(jedis, never()).psetex(anyString(), anyLong(), anyString());
+    }
+
+    @Test
+    public void shouldRevalidateWithPublicAuth_withoutReadingRedis_andStoreAccount() throws Exception {
+        when(underlying.revalidate(TOKEN)).thenReturn(Optional.of(account));
+
+        assertThat(redisAuthenticationCache.revalidate(TOKEN), is(Optional.of(account)));
+
+        verify(jedis, never()).get(anyString());
+        verify(jedis).psetex(REDIS_KEY, 300_000L, "DIRECT_DEBIT:123");
+    }
+
+    @Test
+    public void shouldDeleteKeyFromRedis_whenRevalidationFindsItRejected() throws Exception {
+        when(underlying.revalidate(TOKEN)).thenReturn(Optional.empty());
+
+        assertThat(redisAuthenticationCache.revalidate(TOKEN), is(Optional.empty()));
+
+        verify(jedis, never()).get(anyString());
+        verify(jedis).del(REDIS_KEY);
+    }
+
+    @Test
+    public void shouldDeleteKeyFromRedis_whenAsynchronousRevalidationFindsItRejected() throws Exception {
+        when(underlying.revalidateAsync(TOKEN)).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+        assertThat(redisAuthenticationCache.revalidateAsync(TOKEN).toCompletableFuture().get(), is(Optional.empty()));
+
+        verify(jedis, never()).get(anyString());
+        verify(jedis).del(REDIS_KEY);
+    }
+
+    @Test
+    public void shouldFallBackToPublicAuth_andStopUsingRedis_whenRedisIsUnavailable() throws Exception {
+        when(jedis.get(REDIS_KEY)).thenThrow(new JedisConnectionException("connection refused"));
+        when(underlying.authenticate(TOKEN)).thenReturn(Optional.of(account));
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(redisAuthenticationCache.authenticate(TOKEN), is(Optional.of(account)));
+        }
+
+        verify(jedis, times(2)).get(REDIS_KEY);
+        verify(jedis, never()).psetex(anyString(), anyLong(), anyString());
+        assertThat(meter("errors"), is(2L));
+    }
+
+    @Test
+    public void shouldTreatUnrecognisedValuesAsMiss() {
+        assertThat(RedisAuthenticationCache.decode("123"), is(Optional.empty()));
+        assertThat(RedisAuthenticationCache.decode("CHEQUE:123"), is(Optional.empty()));
+        assertThat(RedisAuthenticationCache.decode(RedisAuthenticationCache.encode(account)).get().getAccountId(), is("123"));
+    }
+
+    private long meter(String name) {
+        return metricRegistry.meter(MetricRegistry.name(RedisAuthenticationCache.class, name)).getCount();
+    }
+}
@@ -0,0 +1,366 @@
+package uk.gov.pay.api.auth;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import io.dropwizard.auth.Authenticator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.api.model.TokenPaymentType;
+
+import javax.ws.rs.ServiceUnavailableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RefreshingCachingAuthenticatorTest {
+
+    private static final String TOKEN = "token";
+
+    @Mock
+    Authenticator<String, Account> underlying;
+    @Mock
+    AsyncAccountAuthenticator asyncUnderlying;
+
+    private final FakeTicker ticker = new FakeTicker();
+    private final List<Runnable> refreshTasks = new ArrayList<>();
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final Account account = new Account("123", TokenPaymentType.CARD);
+    private RefreshingCachingAuthenticator cachingAuthenticator;
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Before
+    public void setup() {
+        cachingAuthenticator = new RefreshingCachingAuthenticator(underlying, 100, 120_000, 60_000, 0, 0,
+                refreshTasks::add, metricRegistry, ticker);
+    }
+
+    @Test
+    public void shouldOnlyCallPublicAuthOnce_forCachedToken() throws Exception {
+        when(underlying.authenticate(TOKEN)).thenReturn(Optional.of(account));
+
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(account)));
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(account)));
+
+        verify(underlying, times(1)).authenticate(TOKEN);
+        assertThat(metricRegistry.meter(MetricRegistry.name(RefreshingCachingAuthenticator.class, "hits")).getCount(), is(1L));
+        assertThat(metricRegistry.meter(MetricRegistry.name(RefreshingCachingAuthenticator.class, "misses")).getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldServeCachedAccount_andRefreshOnceInBackground_afterRefreshAfterWrite() throws Exception {
+        Account refreshedAccount = new Account("123", TokenPaymentType.DIRECT_DEBIT);
+        when(underlying.authenticate(TOKEN)).thenReturn(Optional.of(account), Optional.of(refreshedAccount));
+
+        cachingAuthenticator.authenticate(TOKEN);
+        ticker.advance(61, TimeUnit.SECONDS);
+
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(account)));
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(account)));
+        assertThat(refreshTasks.size(), is(1));
+
+        refreshTasks.get(0).run();
+
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(refreshedAccount)));
+        verify(underlying, times(2)).authenticate(TOKEN);
+    }
+
+    @Test
+    public void shouldRemoveCachedAccount_whenRefreshFindsTokenHasBeenRevoked() throws Exception {
+        when(underlying.authenticate(TOKEN)).thenReturn(Optional.of(account), Optional.empty());
+
+        cachingAuthenticator.authenticate(TOKEN);
+        ticker.advance(61, TimeUnit.SECONDS);
+        cachingAuthenticator.authenticate(TOKEN);
+        refreshTasks.get(0).run();
+
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldKeepCachedAccount_andRetryRefreshLater_whenRefreshFails() throws Exception {
+        when(underlying.authenticate(TOKEN))
+                .thenReturn(Optional.of(account))
+                .thenThrow(new ServiceUnavailableException());
+
+        cachingAuthenticator.authenticate(TOKEN);
+        ticker.advance(61, TimeUnit.SECONDS);
+        cachingAuthenticator.authenticate(TOKEN);
+        refreshTasks.get(0).run();
+
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(account)));
+        assertThat(refreshTasks.size(), is(2));
+    }
+
+    @Test
+    public void shouldNotServeExpiredAccount_whenPublicAuthFails_andServeStaleIsDisabled() throws Exception {
+        when(underlying.authenticate(TOKEN))
+                .thenReturn(Optional.of(account))
+                .thenThrow(new ServiceUnavailableException());
+
+        cachingAuthenticator.authenticate(TOKEN);
+        ticker.advance(121, TimeUnit.SECONDS);
+
+        expectedException.expect(ServiceUnavailableException.class);
+        cachingAuthenticator.authenticate(TOKEN);
+    }
+
+    @Test
+    public void shouldServeExpiredAccount_whenPublicAuthFails_withinStaleGracePeriod() throws Exception {
+        cachingAuthenticator = new RefreshingCachingAuthenticator(underlying, 100, 120_000, 60_000, 300_000, 0,
+                refreshTasks::add, metricRegistry, ticker);
+        when(underlying.authenticate(TOKEN))
+                .thenReturn(Optional.of(account))
+                .thenThrow(new ServiceUnavailableException());
+
+        cachingAuthenticator.authenticate(TOKEN);
+        ticker.advance(121, TimeUnit.SECONDS);
+
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(account)));
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(account)));
+        assertThat(metricRegistry.meter(MetricRegistry.name(RefreshingCachingAuthenticator.class, "stale-served")).getCount(), is(2L));
+
+        ticker.advance(300, TimeUnit.SECONDS);
+        expectedException.expect(ServiceUnavailableException.class);
+        cachingAuthenticator.authenticate(TOKEN);
+    }
+
+    @Test
+    public void shouldServeExpiredAccount_withoutCallingPublicAuthAgain_untilBackoffAfterFailureHasPassed() throws Exception {
+        cachingAuthenticator = new RefreshingCachingAuthenticator(underlying, 100, 120_000, 60_000, 300_000, 0,
+                refreshTasks::add, metricRegistry, ticker);
+        when(underlying.authenticate(TOKEN))
+                .thenReturn(Optional.of(account))
+                .thenThrow(new ServiceUnavailableException());
+
+        cachingAuthenticator.authenticate(TOKEN);
+        ticker.advance(121, TimeUnit.SECONDS);
+        cachingAuthenticator.authenticate(TOKEN);
+
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(account)));
+        verify(underlying, times(2)).authenticate(TOKEN);
+
+        ticker.advance(1, TimeUnit.SECONDS);
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(account)));
+        verify(underlying, times(3)).authenticate(TOKEN);
+
+        ticker.advance(1, TimeUnit.SECONDS);
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(account)));
+        verify(underlying, times(3)).authenticate(TOKEN);
+        assertThat(metricRegistry.meter(MetricRegistry.name(RefreshingCachingAuthenticator.class, "stale-served")).getCount(), is(4L));
+    }
+
+    @Test
+    public void shouldNotServeExpiredAccount_whenPublicAuthRejectsToken() throws Exception {
+        cachingAuthenticator = new RefreshingCachingAuthenticator(underlying, 100, 120_000, 60_000, 300_000, 0,
+                refreshTasks::add, metricRegistry, ticker);
+        when(underlying.authenticate(TOKEN))
+                .thenReturn(Optional.of(account))
+                .thenReturn(Optional.empty());
+
+        cachingAuthenticator.authenticate(TOKEN);
+        ticker.advance(121, TimeUnit.SECONDS);
+
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldNotCacheRejectedTokens() throws Exception {
+        when(underlying.authenticate(TOKEN)).thenReturn(Optional.empty(), Optional.of(account));
+
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.empty()));
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(account)));
+    }
+
+    @Test
+    public void shouldRememberRejectedTokens_untilTheyExpireOrArePurged() throws Exception {
+        cachingAuthenticator = new RefreshingCachingAuthenticator(underlying, 100, 120_000, 60_000, 0, 10_000,
+                refreshTasks::add, metricRegistry, ticker);
+        when(underlying.authenticate(TOKEN)).thenReturn(Optional.empty());
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.empty()));
+        }
+        verify(underlying, times(1)).authenticate(TOKEN);
+        assertThat(metricRegistry.meter(MetricRegistry.name(RefreshingCachingAuthenticator.class, "rejected-hits")).getCount(), is(2L));
+
+        ticker.advance(11, TimeUnit.SECONDS);
+        cachingAuthenticator.authenticate(TOKEN);
+        verify(underlying, times(2)).authenticate(TOKEN);
+
+        cachingAuthenticator.purgeRejectedTokens();
+        cachingAuthenticator.authenticate(TOKEN);
+        verify(underlying, times(3)).authenticate(TOKEN);
+    }
+
+    @Test
+    public void concurrentMisses_shouldShareASinglePublicAuthCall() throws Exception {
+        int threads = 16;
+        CountDownLatch loading = new CountDownLatch(1);
+        when(underlying.authenticate(TOKEN)).thenAnswer(invocation -> {
+            loading.await(5, TimeUnit.SECONDS);
+            return Optional.of(account);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Callable<Optional<Account>>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            tasks.add(() -> cachingAuthenticator.authenticate(TOKEN));
+        }
+        List<Future<Optional<Account>>> results = new ArrayList<>();
+        tasks.forEach(task -> results.add(executor.submit(task)));
+        Thread.sleep(200);
+        loading.countDown();
+
+        for (Future<Optional<Account>> result : results) {
+            assertThat(result.get(), is(Optional.of(account)));
+        }
+        executor.shutdown();
+        verify(underlying, times(1)).authenticate(TOKEN);
+    }
+
+    @Test
+    public void shouldRefreshWithoutUsingRefreshExecutor_whenUnderlyingAuthenticatorIsAsynchronous() throws Exception {
+        cachingAuthenticator = new RefreshingCachingAuthenticator(asyncUnderlying, 100, 120_000, 60_000, 0, 0,
+                refreshTasks::add, metricRegistry, ticker);
+        Account refreshedAccount = new Account("123", TokenPaymentType.DIRECT_DEBIT);
+        CompletableFuture<Optional<Account>> refresh = new CompletableFuture<>();
+        when(asyncUnderlying.authenticate(TOKEN)).thenReturn(Optional.of(account));
+        when(asyncUnderlying.revalidateAsync(TOKEN)).thenReturn(refresh);
+
+        cachingAuthenticator.authenticate(TOKEN);
+        ticker.advance(61, TimeUnit.SECONDS);
+
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(account)));
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(account)));
+        assertThat(refreshTasks.size(), is(0));
+        verify(asyncUnderlying, times(1)).revalidateAsync(TOKEN);
+
+        refresh.complete(Optional.of(refreshedAccount));
+
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(refreshedAccount)));
+        verify(asyncUnderlying, times(1)).authenticate(TOKEN);
+    }
+
+    @Test
+    public void shouldKeepCachedAccount_andRetryRefreshLater_whenAsynchronousRefreshFails() throws Exception {
+        cachingAuthenticator = new RefreshingCachingAuthenticator(asyncUnderlying, 100, 120_000, 60_000, 0, 0,
+                refreshTasks::add, metricRegistry, ticker);
+        CompletableFuture<Optional<Account>> failedRefresh = new CompletableFuture<>();
+        failedRefresh.completeExceptionally(new ServiceUnavailableException());
+        when(asyncUnderlying.authenticate(TOKEN)).thenReturn(Optional.of(account));
+        when(asyncUnderlying.revalidateAsync(TOKEN)).thenReturn(failedRefresh);
+
+        cachingAuthenticator.authenticate(TOKEN);
+        ticker.advance(61, TimeUnit.SECONDS);
+
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(account)));
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(account)));
+
+        verify(asyncUnderlying, times(2)).revalidateAsync(TOKEN);
+        assertThat(metricRegistry.meter(MetricRegistry.name(RefreshingCachingAuthenticator.class, "refresh-failures")).getCount(), is(2L));
+    }
+
+    @Test
+    public void shouldRevalidateExpiredAccount_ratherThanAuthenticateItAgain() throws Exception {
+        cachingAuthenticator = new RefreshingCachingAuthenticator(asyncUnderlying, 100, 120_000, 60_000, 60_000, 0,
+                refreshTasks::add, metricRegistry, ticker);
+        when(asyncUnderlying.authenticate(TOKEN)).thenReturn(Optional.of(account));
+        when(asyncUnderlying.revalidate(TOKEN)).thenReturn(Optional.empty());
+
+        cachingAuthenticator.authenticate(TOKEN);
+        ticker.advance(121, TimeUnit.SECONDS);
+
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.empty()));
+        verify(asyncUnderlying, times(1)).authenticate(TOKEN);
+    }
+
+    @Test
+    public void shouldServePreloadedAccount_andRefreshItInBackground_onFirstUse() throws Exception {
+        Account refreshedAccount = new Account("123", TokenPaymentType.DIRECT_DEBIT);
+        when(underlying.authenticate(TOKEN)).thenReturn(Optional.of(refreshedAccount));
+        cachingAuthenticator.preload(TokenDigest.fromBearerToken(TOKEN), account);
+
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(account)));
+        assertThat(refreshTasks.size(), is(1));
+
+        refreshTasks.get(0).run();
+
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(refreshedAccount)));
+        verify(underlying, times(1)).authenticate(TOKEN);
+        assertThat(metricRegistry.meter(MetricRegistry.name(RefreshingCachingAuthenticator.class, "preloaded-hits")).getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldRemovePreloadedAccount_whenRefreshFindsTokenHasBeenRevoked() throws Exception {
+        when(underlying.authenticate(TOKEN)).thenReturn(Optional.empty());
+        cachingAuthenticator.preload(TokenDigest.fromBearerToken(TOKEN), account);
+
+        cachingAuthenticator.authenticate(TOKEN);
+        refreshTasks.get(0).run();
+
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldNotServePreloadedAccount_afterExpireAfterWrite() throws Exception {
+        when(underlying.authenticate(TOKEN)).thenReturn(Optional.of(account));
+        cachingAuthenticator.preload(TokenDigest.fromBearerToken(TOKEN), new Account("456", TokenPaymentType.CARD));
+
+        ticker.advance(121, TimeUnit.SECONDS);
+
+        assertThat(cachingAuthenticator.authenticate(TOKEN), is(Optional.of(account)));
+    }
+
+    @Test
+    public void snapshot_shouldContainUnexpiredAccountsByTokenDigest() throws Exception {
+        when(underlying.authenticate(TOKEN)).thenReturn(Optional.of(account));
+        Account preloadedAccount = new Account("456", TokenPaymentType.CARD);
+        cachingAuthenticator.preload("digest", preloadedAccount);
+
+        cachingAuthenticator.authenticate(TOKEN);
+
+        Map<String, Account> snapshot = cachingAuthenticator.snapshot();
+        assertThat(snapshot.size(), is(2));
+        assertThat(snapshot.get(TokenDigest.fromBearerToken(TOKEN)), is(account));
+        assertThat(snapshot.get("digest"), is(preloadedAccount));
+
+        ticker.advance(121, TimeUnit.SECONDS);
+
+        assertThat(cachingAuthenticator.snapshot().isEmpty(), is(true));
+    }
+
+    private static class FakeTicker extends Ticker {
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            nanos += unit.toNanos(duration);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package uk.gov.pay.api.auth;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static uk.gov.pay.api.utils.ApiKeyGenerator.apiKeyValueOf;
+
+public class TokenDigestTest {
+
+    @Test
+    public void shouldUseHmacPartOfApiKey_asDigest() {
+        String apiKey = apiKeyValueOf("asdfghdasd", "mysupersecret");
+        String hmac = apiKey.substring(apiKey.length() - 32);
+
+        assertThat(TokenDigest.fromAuthorizationHeader("Bearer " + apiKey), is(hmac));
+        assertThat(TokenDigest.fromBearerToken(apiKey), is(hmac));
+    }
+
+    @Test
+    public void shouldFallBackToSha256_whenValueIsTooShortToBeAnApiKey() {
+        assertThat(TokenDigest.fromAuthorizationHeader("Bearer short").length(), is(64));
+        assertThat(TokenDigest.fromAuthorizationHeader(null).length(), is(64));
+        assertThat(TokenDigest.fromBearerToken("short").length(), is(64));
+    }
+}
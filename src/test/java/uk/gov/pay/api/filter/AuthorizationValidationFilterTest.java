@@ -11,7 +11,18 @@ import uk.gov.pay.api.app.config.PublicApiConfig;
 import javax.servlet.FilterChain;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -104,4 +115,102 @@ public class AuthorizationValidationFilterTest {
         verifyZeroInteractions(mockFilterChain);
         verify(mockResponse).sendError(401, "Unauthorized");
     }
+
+    @Test
+    public void shouldRejectRequest_with401ResponseError_whenHmacIsForADifferentToken() throws Exception {
+
+        String apiKey = apiKeyValueOf("asdfghdasd", SECRET_KEY);
+        String authorization = "Bearer " + "asdfghdase" + apiKey.substring("asdfghdasd".length());
+
+        when(mockRequest.getHeader("Authorization")).thenReturn(authorization);
+
+        authorizationValidationFilter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        verifyZeroInteractions(mockFilterChain);
+        verify(mockResponse).sendError(401, "Unauthorized");
+    }
+
+    @Test
+    public void shouldRejectRequest_with401ResponseError_whenHmacIsNotLowerCaseBase32Hex() throws Exception {
+
+        String authorization = "Bearer " + apiKeyValueOf("asdfghdasd", SECRET_KEY).toUpperCase();
+
+        when(mockRequest.getHeader("Authorization")).thenReturn(authorization);
+
+        authorizationValidationFilter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        verifyZeroInteractions(mockFilterChain);
+        verify(mockResponse).sendError(401, "Unauthorized");
+    }
+
+    @Test
+    public void shouldProcessFilterChain_whenTokenContainsNonAsciiCharacters() throws Exception {
+
+        String authorization = "Bearer " + apiKeyValueOf("t\u00f6k\u00e9n-\u20ac", SECRET_KEY);
+
+        when(mockRequest.getHeader("Authorization")).thenReturn(authorization);
+
+        authorizationValidationFilter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        verify(mockFilterChain).doFilter(mockRequest, mockResponse);
+    }
+
+    @Test
+    public void shouldValidateKeysOfDifferentLengthsConsistently_whenCalledFromManyThreads() throws Exception {
+
+        int threads = 8;
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            tasks.add(() -> {
+                for (int n = 0; n < 200; n++) {
+                    String token = RandomStringUtils.randomAlphanumeric(1 + n);
+                    if (!isAccepted(apiKeyValueOf(token, SECRET_KEY)) || isAccepted(apiKeyValueOf(token, "anothersecret"))) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Boolean> result : executor.invokeAll(tasks)) {
+                assertThat(result.get(), is(true));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldValidateKeys_withoutAllocatingPerRequestStringsOrMacs() {
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        String authorization = "Bearer " + apiKeyValueOf(RandomStringUtils.randomAlphanumeric(32), SECRET_KEY);
+        int calls = 100_000;
+        for (int i = 0; i < calls; i++) {
+            authorizationValidationFilter.isValidAuthorizationHeader(authorization);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < calls; i++) {
+            assertThat(authorizationValidationFilter.isValidAuthorizationHeader(authorization), is(true));
+        }
+        long bytesPerCall = (threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore) / calls;
+
+        // only the JDK's digest scratch arrays are left; a new Mac plus the substrings and encoded HMAC came to over 1KB
+        assertThat(bytesPerCall < 256, is(true));
+    }
+
+    private boolean isAccepted(String apiKey) throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        FilterChain chain = mock(FilterChain.class);
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + apiKey);
+
+        authorizationValidationFilter.doFilter(request, response, chain);
+
+        return mockingDetails(chain).getInvocations().size() == 1;
+    }
 }
@@ -0,0 +1,85 @@
+package uk.gov.pay.api.filter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.api.resilience.Deadline;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.api.filter.DeadlineFilter.HEADER_REQUEST_TIMEOUT;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DeadlineFilterTest {
+
+    @Mock
+    private HttpServletRequest request;
+    @Mock
+    private HttpServletResponse response;
+    @Mock
+    private FilterChain filterChain;
+
+    private final DeadlineFilter deadlineFilter = new DeadlineFilter(10000, 1000);
+
+    @Test
+    public void shouldSetDeadlineFromConfiguredTimeout_whileRequestIsServed() throws Exception {
+        long[] remainingMillis = new long[1];
+        doAnswer(invocation -> remainingMillis[0] = Deadline.current().remainingMillis())
+                .when(filterChain).doFilter(any(), any());
+
+        deadlineFilter.doFilter(request, response, filterChain);
+
+        assertThat(remainingMillis[0], both(greaterThan(9000L)).and(lessThanOrEqualTo(10000L)));
+        assertThat(Deadline.current(), nullValue());
+    }
+
+    @Test
+    public void shouldUseShorterTimeoutFromCaller() throws Exception {
+        when(request.getHeader(HEADER_REQUEST_TIMEOUT)).thenReturn("2000");
+        long[] remainingMillis = new long[1];
+        doAnswer(invocation -> remainingMillis[0] = Deadline.current().remainingMillis())
+                .when(filterChain).doFilter(any(), any());
+
+        deadlineFilter.doFilter(request, response, filterChain);
+
+        assertThat(remainingMillis[0], both(greaterThan(1000L)).and(lessThanOrEqualTo(2000L)));
+    }
+
+    @Test
+    public void shouldRaiseTimeoutFromCaller_toMinimum() throws Exception {
+        when(request.getHeader(HEADER_REQUEST_TIMEOUT)).thenReturn("1");
+        long[] remainingMillis = new long[1];
+        doAnswer(invocation -> remainingMillis[0] = Deadline.current().remainingMillis())
+                .when(filterChain).doFilter(any(), any());
+
+        deadlineFilter.doFilter(request, response, filterChain);
+
+        assertThat(remainingMillis[0], both(greaterThan(900L)).and(lessThanOrEqualTo(1000L)));
+    }
+
+    @Test
+    public void shouldIgnoreLongerOrInvalidTimeoutsFromCaller() throws Exception {
+        when(request.getHeader(HEADER_REQUEST_TIMEOUT)).thenReturn("60000", "soon");
+        long[] remainingMillis = new long[2];
+        int[] call = new int[1];
+        doAnswer(invocation -> remainingMillis[call[0]++] = Deadline.current().remainingMillis())
+                .when(filterChain).doFilter(any(), any());
+
+        deadlineFilter.doFilter(request, response, filterChain);
+        deadlineFilter.doFilter(request, response, filterChain);
+
+        assertThat(remainingMillis[0], both(greaterThan(9000L)).and(lessThanOrEqualTo(10000L)));
+        assertThat(remainingMillis[1], both(greaterThan(9000L)).and(lessThanOrEqualTo(10000L)));
+    }
+}
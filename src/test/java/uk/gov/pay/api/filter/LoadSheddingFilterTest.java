@@ -0,0 +1,162 @@
+package uk.gov.pay.api.filter;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.api.resilience.AdaptiveConcurrencyLimit;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.api.filter.LoadSheddingFilter.Priority.CRITICAL;
+import static uk.gov.pay.api.filter.LoadSheddingFilter.Priority.LOW;
+import static uk.gov.pay.api.filter.LoadSheddingFilter.Priority.NORMAL;
+import static uk.gov.pay.api.filter.LoadSheddingFilter.priorityOf;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LoadSheddingFilterTest {
+
+    @Mock
+    private HttpServletRequest request;
+    @Mock
+    private HttpServletResponse response;
+    @Mock
+    private FilterChain filterChain;
+
+    private AdaptiveConcurrencyLimit concurrencyLimit;
+    private LoadSheddingFilter loadSheddingFilter;
+
+    @Before
+    public void setup() {
+        concurrencyLimit = new AdaptiveConcurrencyLimit("load-shedding", LoadSheddingFilter.LATENCY_CLASSES, 10, 10, 10, 2.0, 0.9,
+                new MetricRegistry());
+        loadSheddingFilter = new LoadSheddingFilter(concurrencyLimit, new ObjectMapper());
+    }
+
+    @Test
+    public void shouldPrioritisePaymentCreation_overSearches() {
+        assertThat(priorityOf("POST", "/v1/payments"), is(CRITICAL));
+        assertThat(priorityOf("GET", "/v1/payments/abc123"), is(NORMAL));
+        assertThat(priorityOf("POST", "/v1/payments/abc123/refunds"), is(NORMAL));
+        assertThat(priorityOf("GET", "/v1/payments"), is(LOW));
+        assertThat(priorityOf("GET", "/v1/refunds"), is(LOW));
+        assertThat(priorityOf("GET", "/v1/events"), is(LOW));
+    }
+
+    @Test
+    public void shouldProcessFilterChain_andReleaseItsPlace_whenWithinTheLimit() throws Exception {
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/v1/payments/abc123");
+
+        loadSheddingFilter.doFilter(request, response, filterChain);
+
+        verify(filterChain).doFilter(request, response);
+        assertThat(concurrencyLimit.getInFlight(), is(0));
+    }
+
+    @Test
+    public void shouldReleaseItsPlace_withoutCountingItsLatency_whenTurnedAwayByLaterFilters() throws Exception {
+        AdaptiveConcurrencyLimit mockConcurrencyLimit = mock(AdaptiveConcurrencyLimit.class);
+        when(mockConcurrencyLimit.tryAcquire(anyDouble())).thenReturn(true);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/v1/payments/abc123");
+        when(response.getStatus()).thenReturn(401, 429, 200);
+        LoadSheddingFilter filter = new LoadSheddingFilter(mockConcurrencyLimit, new ObjectMapper());
+
+        for (int i = 0; i < 3; i++) {
+            filter.doFilter(request, response, filterChain);
+        }
+
+        verify(mockConcurrencyLimit, times(2)).release();
+        verify(mockConcurrencyLimit).release(eq(NORMAL.ordinal()), anyLong());
+    }
+
+    @Test
+    public void shouldReleaseItsPlace_whenFilterChainThrows() throws Exception {
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/v1/payments/abc123");
+        doThrow(new ServletException("boom")).when(filterChain).doFilter(request, response);
+
+        try {
+            loadSheddingFilter.doFilter(request, response, filterChain);
+            fail("Expected ServletException");
+        } catch (ServletException e) {
+            assertThat(concurrencyLimit.getInFlight(), is(0));
+        }
+    }
+
+    @Test
+    public void shouldSendServiceBusyResponse_toSearches_whenNodeIsBusy() throws Exception {
+        PrintWriter writer = mock(PrintWriter.class);
+        when(response.getWriter()).thenReturn(writer);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/v1/payments");
+        for (int i = 0; i < 7; i++) {
+            concurrencyLimit.tryAcquire(1.0);
+        }
+
+        loadSheddingFilter.doFilter(request, response, filterChain);
+
+        verify(filterChain, never()).doFilter(request, response);
+        verify(response).setStatus(503);
+        verify(response).setHeader("Retry-After", "1");
+        verify(response).setContentType("application/json");
+        verify(writer).print(contains("\"code\":\"P0910\""));
+    }
+
+    @Test
+    public void shouldStillAcceptPaymentCreation_whenSearchesAreTurnedAway() throws Exception {
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getRequestURI()).thenReturn("/v1/payments");
+        for (int i = 0; i < 9; i++) {
+            concurrencyLimit.tryAcquire(1.0);
+        }
+
+        loadSheddingFilter.doFilter(request, response, filterChain);
+
+        verify(filterChain).doFilter(request, response);
+    }
+
+    @Test
+    public void shouldHoldItsPlace_untilSuspendedRequestCompletes() throws Exception {
+        AsyncContext asyncContext = mock(AsyncContext.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/v1/payments/abc123");
+        when(request.isAsyncStarted()).thenReturn(true);
+        when(request.getAsyncContext()).thenReturn(asyncContext);
+
+        loadSheddingFilter.doFilter(request, response, filterChain);
+        assertThat(concurrencyLimit.getInFlight(), is(1));
+
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(asyncContext).addListener(listener.capture());
+        listener.getValue().onTimeout(mock(AsyncEvent.class));
+        listener.getValue().onComplete(mock(AsyncEvent.class));
+
+        assertThat(concurrencyLimit.getInFlight(), is(0));
+    }
+}
@@ -0,0 +1,105 @@
+package uk.gov.pay.api.filter;
+
+import org.glassfish.jersey.client.ClientProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.api.resilience.Deadline;
+import uk.gov.pay.api.resilience.DeadlineExceededException;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import java.net.URI;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.api.filter.DeadlineFilter.HEADER_REQUEST_TIMEOUT;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RestClientDeadlineFilterTest {
+
+    @Mock
+    private ClientRequestContext requestContext;
+    @Mock
+    private Configuration configuration;
+
+    private final MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+    private final RestClientDeadlineFilter restClientDeadlineFilter = new RestClientDeadlineFilter();
+
+    @Before
+    public void setup() {
+        when(requestContext.getProperty(Deadline.PROPERTY)).thenReturn(null);
+    }
+
+    @After
+    public void tearDown() {
+        Deadline.clearCurrent();
+    }
+
+    @Test
+    public void shouldSendRequestAsItIs_whenThereIsNoDeadline() {
+        restClientDeadlineFilter.filter(requestContext);
+
+        verify(requestContext, never()).setProperty(anyString(), eq(null));
+        verify(requestContext, never()).getHeaders();
+    }
+
+    @Test
+    public void shouldLimitReadTimeoutToTimeLeft_andPassItOn() {
+        Deadline.setCurrent(Deadline.after(2000));
+        when(requestContext.getConfiguration()).thenReturn(configuration);
+        when(configuration.getProperty(ClientProperties.READ_TIMEOUT)).thenReturn(10000);
+        when(requestContext.getHeaders()).thenReturn(headers);
+
+        restClientDeadlineFilter.filter(requestContext);
+
+        ArgumentCaptor<Object> readTimeout = ArgumentCaptor.forClass(Object.class);
+        verify(requestContext).setProperty(eq(ClientProperties.READ_TIMEOUT), readTimeout.capture());
+        assertThat((Integer) readTimeout.getValue(), both(greaterThan(1000)).and(lessThanOrEqualTo(2000)));
+        assertThat(Long.parseLong((String) headers.getFirst(HEADER_REQUEST_TIMEOUT)), both(greaterThan(1000L)).and(lessThanOrEqualTo(2000L)));
+        verify(requestContext).setProperty(Deadline.PROPERTY, Deadline.current());
+    }
+
+    @Test
+    public void shouldKeepConfiguredReadTimeout_whenItIsShorterThanTimeLeft() {
+        Deadline deadline = Deadline.after(60000);
+        when(requestContext.getProperty(Deadline.PROPERTY)).thenReturn(deadline);
+        when(requestContext.getConfiguration()).thenReturn(configuration);
+        when(configuration.getProperty(ClientProperties.READ_TIMEOUT)).thenReturn(10000);
+        when(requestContext.getHeaders()).thenReturn(headers);
+
+        restClientDeadlineFilter.filter(requestContext);
+
+        verify(requestContext).setProperty(ClientProperties.READ_TIMEOUT, 10000);
+    }
+
+    @Test
+    public void shouldFailWithoutSendingRequest_onceDeadlineHasPassed() {
+        Deadline.setCurrent(Deadline.after(0));
+        when(requestContext.getMethod()).thenReturn("GET");
+        when(requestContext.getUri()).thenReturn(URI.create("http://connector:9300/v1/api/accounts/1/charges/abc"));
+
+        try {
+            restClientDeadlineFilter.filter(requestContext);
+            fail("Expected DeadlineExceededException");
+        } catch (DeadlineExceededException e) {
+            assertThat(e.getMessage(), is("Deadline passed before GET to http://connector:9300/v1/api/accounts/1/charges/abc was sent"));
+        }
+        verify(requestContext, never()).getHeaders();
+    }
+}
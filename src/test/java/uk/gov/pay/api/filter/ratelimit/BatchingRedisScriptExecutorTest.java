@@ -0,0 +1,131 @@
+package uk.gov.pay.api.filter.ratelimit;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BatchingRedisScriptExecutorTest {
+
+    private static final int CALLERS = 10;
+
+    @Mock
+    JedisPool jedisPool;
+    @Mock
+    Jedis jedis;
+    @Mock
+    Pipeline pipeline;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+    private BatchingRedisScriptExecutor executor;
+
+    @Before
+    public void setup() {
+        // wait long enough for every caller to join the first batch
+        executor = new BatchingRedisScriptExecutor(jedisPool, 500_000, CALLERS, 5000, metricRegistry, "test");
+        executor.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        callers.shutdownNow();
+        executor.stop();
+    }
+
+    @Test
+    public void concurrentCalls_shouldBeSentInOnePipeline_andEachCallerGetsItsOwnResult() throws Exception {
+        when(jedisPool.getResource()).thenReturn(jedis);
+        when(jedis.pipelined()).thenReturn(pipeline);
+        when(pipeline.evalsha(any(byte[].class), anyList(), anyList())).thenAnswer(invocation -> {
+            List<byte[]> keys = invocation.getArgument(1);
+            Response<Object> response = mock(Response.class);
+            when(response.get()).thenReturn(SafeEncoder.encode(keys.get(0)));
+            return response;
+        });
+
+        List<Future<Object>> results = submitCalls();
+
+        for (int i = 0; i < CALLERS; i++) {
+            assertThat(results.get(i).get(), is("key" + i));
+        }
+        verify(jedisPool, times(1)).getResource();
+        verify(pipeline, times(1)).sync();
+        assertThat(metricRegistry.histogram("test.batch-size").getSnapshot().getMax(), is((long) CALLERS));
+    }
+
+    @Test
+    public void whenRedisIsUnavailable_everyCallerInTheBatchShouldFail() throws Exception {
+        when(jedisPool.getResource()).thenThrow(new JedisConnectionException("connection refused"));
+
+        for (Future<Object> result : submitCalls()) {
+            try {
+                result.get();
+                fail("Expected the call to fail");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(JedisConnectionException.class));
+            }
+        }
+    }
+
+    @Test
+    public void afterStop_callsShouldFailStraightAway_ratherThanWaitForAResult() throws Exception {
+        executor.stop();
+
+        long startedAt = System.nanoTime();
+        try {
+            executor.eval(RedisRateLimiter.INCREMENT_WITH_EXPIRY_SCRIPT, singletonList(SafeEncoder.encode("key")), emptyList());
+            fail("Expected the call to fail");
+        } catch (IllegalStateException e) {
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) < 1000, is(true));
+        }
+        verify(jedisPool, never()).getResource();
+    }
+
+    private List<Future<Object>> submitCalls() {
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            byte[] key = SafeEncoder.encode("key" + i);
+            results.add(callers.submit(() -> {
+                ready.await();
+                return executor.eval(RedisRateLimiter.INCREMENT_WITH_EXPIRY_SCRIPT, singletonList(key), emptyList());
+            }));
+        }
+        ready.countDown();
+        return results;
+    }
+}
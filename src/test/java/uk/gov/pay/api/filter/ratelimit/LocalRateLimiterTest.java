@@ -5,12 +5,17 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -48,6 +53,28 @@ public class LocalRateLimiterTest {
         localRateLimiter.checkRateOf(key, POST);
     }
 
+    @Test
+    public void shouldReportRemainingAllowance_andTimeUntilWindowResets() throws Exception {
+
+        String key = "key7";
+        localRateLimiter = new LocalRateLimiter(2, 2, 1000);
+
+        RateLimitStatus status = localRateLimiter.checkRateOf(key, POST);
+        assertThat(status.getLimit(), is(2));
+        assertThat(status.getRemaining(), is(1L));
+        assertThat(status.getResetMillis() <= 1000, is(true));
+        assertThat(localRateLimiter.checkRateOf(key, POST).getRemaining(), is(0L));
+
+        try {
+            localRateLimiter.checkRateOf(key, POST);
+        } catch (RateLimitException e) {
+            assertThat(e.getStatus().getRemaining(), is(0L));
+            assertThat(e.getStatus().getResetSeconds(), is(1L));
+            return;
+        }
+        throw new AssertionError("Expected RateLimitException");
+    }
+
     @Test
     public void rateLimiterSetTo_3CallsPerSecond_shouldAllowMakingOnly3CallsWithSameKey() throws Exception {
 
@@ -93,5 +120,106 @@ public class LocalRateLimiterTest {
         assertThat(successfulTasks.size(), is(3));
     }
 
+    @Test
+    public void rateLimiterSetTo_1CallPer100Millis_shouldAllowAnotherCallOnceTheWindowHasPassed() throws Exception {
+
+        String key = "key4";
+        localRateLimiter = new LocalRateLimiter(1, 1, 100);
+
+        localRateLimiter.checkRateOf(key, POST);
+        Thread.sleep(150);
+        localRateLimiter.checkRateOf(key, POST);
+    }
+
+    @Test
+    public void shouldKeepCountsForDifferentKeysApart_whenTheyShareSlots() throws Exception {
+
+        localRateLimiter = new LocalRateLimiter(1, 1, 60000, 8);
+
+        for (int i = 0; i < 8; i++) {
+            localRateLimiter.checkRateOf("key6-" + i, POST);
+        }
+        for (int i = 0; i < 8; i++) {
+            try {
+                localRateLimiter.checkRateOf("key6-" + i, POST);
+                throw new AssertionError("Expected RateLimitException for key6-" + i);
+            } catch (RateLimitException e) {
+                // each key has used up its own allowance
+            }
+        }
+    }
+
+    @Test
+    public void shouldStillCountNewKeys_whenEverySlotIsInUse() throws Exception {
+
+        localRateLimiter = new LocalRateLimiter(1, 1, 60000, 8);
+        for (int i = 0; i < 8; i++) {
+            localRateLimiter.checkRateOf("key8-" + i, POST);
+        }
+
+        localRateLimiter.checkRateOf("key8-new", POST);
+
+        expectedException.expect(RateLimitException.class);
+        localRateLimiter.checkRateOf("key8-new", POST);
+    }
+
+    @Test
+    public void checkRateOf_shouldAllocateNoMoreThanTheStatusItReturns() throws Exception {
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        localRateLimiter = new LocalRateLimiter(Integer.MAX_VALUE >> 8, Integer.MAX_VALUE >> 8, 60000);
+        String key = "key9";
+        int calls = 100_000;
+        for (int i = 0; i < calls; i++) {
+            localRateLimiter.checkRateOf(key, POST);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < calls; i++) {
+            localRateLimiter.checkRateOf(key, POST);
+        }
+        long bytesPerCall = (threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore) / calls;
+
+        // the RateLimitStatus is 32 to 40 bytes depending on the JVM; a boxed map key would add at least 16 more
+        assertThat(bytesPerCall < 48, is(true));
+    }
 
+    @Test
+    public void rateLimiter_shouldAllowExactlyTheConfiguredNumberOfCalls_whenCalledFrom1Or8Or64Threads() throws Exception {
+
+        for (int threads : new int[]{1, 8, 64}) {
+            String key = "key5-" + threads;
+            localRateLimiter = new LocalRateLimiter(100, 100, 60000);
+
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger allowed = new AtomicInteger();
+
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                tasks.add(() -> {
+                    start.await();
+                    for (int j = 0; j < 1000; j++) {
+                        try {
+                            localRateLimiter.checkRateOf(key, POST);
+                            allowed.incrementAndGet();
+                        } catch (RateLimitException e) {
+                            // expected once the allowance is used up
+                        }
+                    }
+                    return null;
+                });
+            }
+
+            List<Future<Void>> futures = tasks.stream().map(executor::submit).collect(Collectors.toList());
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+
+            assertThat(allowed.get(), is(100));
+        }
+    }
 }
@@ -0,0 +1,56 @@
+package uk.gov.pay.api.filter.ratelimit;
+
+import org.junit.Test;
+import uk.gov.pay.api.app.config.RateLimitPolicyConfig;
+
+import java.util.Arrays;
+
+import static java.util.Collections.emptyList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class RateLimitPoliciesTest {
+
+    private final RateLimitPolicies policies = new RateLimitPolicies(Arrays.asList(
+            new RateLimitPolicyConfig("bigAccountSearch", "GET", "/v1/payments", "123", 50, 20),
+            new RateLimitPolicyConfig("search", "GET", "/v1/payments", null, 10, 4),
+            new RateLimitPolicyConfig("refunds", null, "/v1/payments/{paymentId}/refunds", null, 30, 10)));
+
+    @Test
+    public void shouldResolvePolicyByMethodAndPathTemplate() {
+        assertThat(policies.resolve("GET", "/v1/payments", null).getName(), is("search"));
+        assertThat(policies.resolve("GET", "/v1/payments/", null).getName(), is("search"));
+        assertThat(policies.resolve("POST", "/v1/payments/abc123/refunds", null).getName(), is("refunds"));
+        assertThat(policies.resolve("GET", "/v1/payments/abc123/refunds", null).getName(), is("refunds"));
+    }
+
+    @Test
+    public void shouldResolveAccountSpecificPolicyFirst_whenAccountMatches() {
+        assertThat(policies.resolve("GET", "/v1/payments", "123").getName(), is("bigAccountSearch"));
+        assertThat(policies.resolve("GET", "/v1/payments", "456").getName(), is("search"));
+        assertThat(policies.hasAccountSpecificPolicies(), is(true));
+    }
+
+    @Test
+    public void shouldNotResolvePolicy_whenNoPolicyMatches() {
+        assertThat(policies.resolve("POST", "/v1/payments", null), is(nullValue()));
+        assertThat(policies.resolve("GET", "/v1/payments/abc123", null), is(nullValue()));
+        assertThat(policies.resolve("GET", "/v1/payments/abc/def/refunds", null), is(nullValue()));
+        assertThat(new RateLimitPolicies(emptyList()).resolve("GET", "/v1/payments", null), is(nullValue()));
+    }
+
+    @Test
+    public void shouldTreatPathTemplateLiterally_apartFromParameters() {
+        RateLimitPolicies dotted = new RateLimitPolicies(Arrays.asList(
+                new RateLimitPolicyConfig("dotted", null, "/v1/a.b", null, 1, 1)));
+
+        assertThat(dotted.resolve("GET", "/v1/a.b", null).getName(), is("dotted"));
+        assertThat(dotted.resolve("GET", "/v1/axb", null), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectPolicyAllowingNoRequests() {
+        new RateLimitPolicies(Arrays.asList(new RateLimitPolicyConfig("none", "GET", "/v1/payments", null, 0, 1)));
+    }
+}
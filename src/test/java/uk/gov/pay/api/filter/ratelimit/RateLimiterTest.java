@@ -1,5 +1,6 @@
 package uk.gov.pay.api.filter.ratelimit;
 
+import com.codahale.metrics.MetricRegistry;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -7,7 +8,12 @@ import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.api.app.config.RateLimitPolicyConfig;
+import uk.gov.pay.api.resilience.CircuitBreaker;
 
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -22,13 +28,15 @@ public class RateLimiterTest {
     @Mock
     RedisRateLimiter redisRateLimiter;
 
+    CircuitBreaker redisCircuitBreaker;
     RateLimiter rateLimiter;
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
 
     @Before
     public void setup() {
-        rateLimiter = new RateLimiter(localRateLimiter, redisRateLimiter);
+        redisCircuitBreaker = new CircuitBreaker("redis", 2, 60000, new MetricRegistry());
+        rateLimiter = new RateLimiter(localRateLimiter, redisRateLimiter, redisCircuitBreaker);
     }
 
     @Test
@@ -52,4 +60,51 @@ public class RateLimiterTest {
 
         verify(localRateLimiter, times(2)).checkRateOf(key, POST);
     }
+
+    @Test
+    public void shouldStopCallingRedis_whenRedisHasFailedRepeatedly() throws Exception {
+        String key = "key3";
+
+        doThrow(new RedisException()).when(redisRateLimiter).checkRateOf(key, POST);
+
+        rateLimiter.checkRateOf(key, POST);
+        rateLimiter.checkRateOf(key, POST);
+        rateLimiter.checkRateOf(key, POST);
+        rateLimiter.checkRateOf(key, POST);
+
+        verify(redisRateLimiter, times(2)).checkRateOf(key, POST);
+        verify(localRateLimiter, times(4)).checkRateOf(key, POST);
+        assertThat(redisCircuitBreaker.getState(), is(CircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    public void shouldNotCountRateLimitExceededAsRedisFailure() throws Exception {
+        String key = "key4";
+
+        doThrow(new RateLimitException()).when(redisRateLimiter).checkRateOf(key, POST);
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                rateLimiter.checkRateOf(key, POST);
+            } catch (RateLimitException e) {
+                // expected
+            }
+        }
+
+        verify(redisRateLimiter, times(3)).checkRateOf(key, POST);
+        assertThat(redisCircuitBreaker.getState(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void shouldCheckAgainstPolicyLimits_whenGivenAPolicy() throws Exception {
+        String key = "search:GET-key5";
+        RateLimitPolicy policy = new RateLimitPolicies(singletonList(
+                new RateLimitPolicyConfig("search", "GET", "/v1/payments", null, 10, 4))).resolve("GET", "/v1/payments", null);
+
+        doThrow(new RedisException()).when(redisRateLimiter).checkRateOf(key, 10);
+
+        rateLimiter.checkRateOf(key, policy);
+
+        verify(localRateLimiter).checkRateOf(key, 4);
+    }
 }
@@ -1,16 +1,51 @@
 package uk.gov.pay.api.filter.ratelimit;
 
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Bytes;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
 
-import static org.mockito.ArgumentMatchers.anyString;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -23,6 +58,11 @@ public class RedisRateLimiterTest {
 
     private static final String POST = "POST";
 
+    @Captor
+    ArgumentCaptor<List<byte[]>> keysCaptor;
+    @Captor
+    ArgumentCaptor<List<byte[]>> argsCaptor;
+
     private RedisRateLimiter redisRateLimiter;
 
     @Rule
@@ -30,7 +70,36 @@ public class RedisRateLimiterTest {
 
     @Before
     public void setup() {
-        when(jedisPool.getResource()).thenReturn(jedis);
+        lenient().when(jedisPool.getResource()).thenReturn(jedis);
+    }
+
+    @Test
+    public void shouldRejectLimitOfNoRequests_whenCreated() {
+        expectedException.expect(IllegalArgumentException.class);
+        new RedisRateLimiter(0, 1, 1000, RateLimitAlgorithm.GCRA, 0, jedisPool);
+    }
+
+    @Test
+    public void shouldRejectFixedWindowsOverAMinute_whenCreated() {
+        expectedException.expect(IllegalArgumentException.class);
+        new RedisRateLimiter(1, 1, 60001, jedisPool);
+    }
+
+    @Test
+    public void shouldAcceptGcraPeriodsOverAMinute() throws Exception {
+        redisRateLimiter = new RedisRateLimiter(2, 2, 3_600_000, RateLimitAlgorithm.GCRA, 0, jedisPool);
+        when(jedis.evalsha(any(byte[].class), anyList(), anyList())).thenReturn(allowed(1, 1_800_000_000L));
+
+        redisRateLimiter.checkRateOf("Key14", POST);
+
+        verify(jedis).evalsha(any(byte[].class), anyList(), argsCaptor.capture());
+        assertThat(asStrings(argsCaptor.getValue()), is(Arrays.asList("1800000000", "1800000000")));
+    }
+
+    @Test
+    public void shouldRejectGcraRatesWithoutAnEmissionInterval_whenCreated() {
+        expectedException.expect(IllegalArgumentException.class);
+        new RedisRateLimiter(2000, 1, 1, RateLimitAlgorithm.GCRA, 0, jedisPool);
     }
 
     @Test
@@ -39,7 +108,7 @@ public class RedisRateLimiterTest {
         String key = "Key1";
         redisRateLimiter = new RedisRateLimiter(1, 1, 1000, jedisPool);
 
-        when(jedis.incr(anyString())).thenReturn(1L, 2L);
+        when(jedis.evalsha(any(byte[].class), anyList(), anyList())).thenReturn(1L, 2L);
         redisRateLimiter.checkRateOf("Key1", POST);
     }
 
@@ -49,7 +118,7 @@ public class RedisRateLimiterTest {
         String key = "Key2";
         redisRateLimiter = new RedisRateLimiter(2, 2, 1000, jedisPool);
 
-        when(jedis.incr(anyString())).thenReturn(1L, 2L, 3L);
+        when(jedis.evalsha(any(byte[].class), anyList(), anyList())).thenReturn(1L, 2L, 3L);
 
         redisRateLimiter.checkRateOf(key, POST);
         redisRateLimiter.checkRateOf(key, POST);
@@ -62,7 +131,7 @@ public class RedisRateLimiterTest {
         String key = "Key3";
         redisRateLimiter = new RedisRateLimiter(2, 2, 1000, jedisPool);
 
-        when(jedis.incr(anyString())).thenReturn(1L, 2L, 3L);
+        when(jedis.evalsha(any(byte[].class), anyList(), anyList())).thenReturn(1L, 2L, 3L);
 
         redisRateLimiter.checkRateOf(key, POST);
         redisRateLimiter.checkRateOf(key, POST);
@@ -71,4 +140,214 @@ public class RedisRateLimiterTest {
         redisRateLimiter.checkRateOf(key, POST);
 
     }
+
+    @Test
+    public void shouldLoadScriptWithEval_whenRedisDoesNotHaveItCached() throws Exception {
+
+        redisRateLimiter = new RedisRateLimiter(2, 2, 1000, jedisPool);
+
+        when(jedis.evalsha(any(byte[].class), anyList(), anyList())).thenThrow(new JedisDataException("NOSCRIPT No matching script"));
+        when(jedis.eval(any(byte[].class), anyList(), anyList())).thenReturn(1L);
+
+        redisRateLimiter.checkRateOf("Key4", POST);
+
+        verify(jedis).eval(eq(SafeEncoder.encode(RedisRateLimiter.INCREMENT_WITH_EXPIRY_SCRIPT.getScript())), anyList(), argsCaptor.capture());
+        assertThat(asStrings(argsCaptor.getValue()), is(Arrays.asList("1000", "1")));
+    }
+
+    @Test
+    public void leasingRateLimiter_shouldServeRequestsFromLease_withoutGoingBackToRedis() throws Exception {
+
+        redisRateLimiter = new RedisRateLimiter(10, 10, 1000, RateLimitAlgorithm.FIXED_WINDOW, 50, jedisPool);
+
+        when(jedis.evalsha(any(byte[].class), anyList(), anyList())).thenReturn(5L, 10L);
+
+        for (int i = 0; i < 6; i++) {
+            redisRateLimiter.checkRateOf("Key9", POST);
+        }
+
+        verify(jedis, times(2)).evalsha(any(byte[].class), anyList(), argsCaptor.capture());
+        assertThat(asStrings(argsCaptor.getValue()), is(Arrays.asList("1000", "5")));
+    }
+
+    @Test
+    public void fixedWindowRateLimiter_shouldReportRemainingAllowanceAndTimeLeftInWindow() throws Exception {
+
+        redisRateLimiter = new RedisRateLimiter(10, 10, 1000, jedisPool);
+
+        when(jedis.evalsha(any(byte[].class), anyList(), anyList())).thenReturn(3L, 11L);
+
+        RateLimitStatus status = redisRateLimiter.checkRateOf("Key11", POST);
+        assertThat(status.getLimit(), is(10));
+        assertThat(status.getRemaining(), is(7L));
+        assertThat(status.getResetMillis(), is(both(greaterThan(0L)).and(lessThanOrEqualTo(1000L))));
+
+        try {
+            redisRateLimiter.checkRateOf("Key11", POST);
+            fail("Expected RateLimitException");
+        } catch (RateLimitException e) {
+            assertThat(e.getStatus().getRemaining(), is(0L));
+        }
+    }
+
+    @Test
+    public void leasingRateLimiter_shouldReportRemainingAllowanceIncludingLeasedPermits() throws Exception {
+
+        redisRateLimiter = new RedisRateLimiter(10, 10, 1000, RateLimitAlgorithm.FIXED_WINDOW, 50, jedisPool);
+
+        when(jedis.evalsha(any(byte[].class), anyList(), anyList())).thenReturn(5L);
+
+        assertThat(redisRateLimiter.checkRateOf("Key12", POST).getRemaining(), is(9L));
+        assertThat(redisRateLimiter.checkRateOf("Key12", POST).getRemaining(), is(8L));
+    }
+
+    @Test
+    public void leasingRateLimiter_shouldOnlyLeasePermitsStillWithinTheLimit() throws Exception {
+
+        redisRateLimiter = new RedisRateLimiter(10, 10, 1000, RateLimitAlgorithm.FIXED_WINDOW, 50, jedisPool);
+
+        // another node already used 8 of the 10 permits, so only 2 are left for this lease
+        when(jedis.evalsha(any(byte[].class), anyList(), anyList())).thenReturn(13L, 18L);
+
+        redisRateLimiter.checkRateOf("Key10", POST);
+        redisRateLimiter.checkRateOf("Key10", POST);
+
+        expectedException.expect(RateLimitException.class);
+        redisRateLimiter.checkRateOf("Key10", POST);
+    }
+
+    @Test
+    public void leasingRateLimiter_shouldGrantEveryPermitChargedInRedis_whenLeaseIsRenewedConcurrently() throws Exception {
+
+        int threads = 10;
+        redisRateLimiter = new RedisRateLimiter(100, 100, 60000, RateLimitAlgorithm.FIXED_WINDOW, 10, jedisPool);
+        AtomicLong redisCount = new AtomicLong();
+        when(jedis.evalsha(any(byte[].class), anyList(), anyList())).thenAnswer(invocation -> {
+            long increment = Long.parseLong(SafeEncoder.encode(invocation.<List<byte[]>>getArgument(2).get(1)));
+            Thread.sleep(5);
+            return redisCount.addAndGet(increment);
+        });
+
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Callable<Void> checks = () -> {
+            start.await();
+            for (int i = 0; i < 50; i++) {
+                try {
+                    redisRateLimiter.checkRateOf("Key13", POST);
+                    granted.incrementAndGet();
+                } catch (RateLimitException e) {
+                    // limited
+                }
+            }
+            return null;
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Void>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(checks));
+        }
+        start.countDown();
+        for (Future<Void> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+
+        // every permit Redis counted within the limit was handed out on this node, none were lost to a later renewal
+        assertThat(redisCount.get(), greaterThanOrEqualTo(100L));
+        assertThat(granted.get(), is(100));
+    }
+
+    @Test
+    public void gcraRateLimiterSetTo_2CallsPerSecond_shouldPassEmissionIntervalAndBurstToleranceInMicros() throws Exception {
+
+        redisRateLimiter = new RedisRateLimiter(2, 2, 1000, RateLimitAlgorithm.GCRA, 0, jedisPool);
+
+        when(jedis.evalsha(any(byte[].class), anyList(), anyList())).thenReturn(allowed(1, 500000));
+
+        redisRateLimiter.checkRateOf("Key6", POST);
+
+        verify(jedis).evalsha(any(byte[].class), keysCaptor.capture(), argsCaptor.capture());
+        assertThat(asStrings(keysCaptor.getValue()), is(singletonList("gKey6")));
+        assertThat(asStrings(argsCaptor.getValue()), is(Arrays.asList("500000", "500000")));
+    }
+
+    @Test
+    public void gcraRateLimiter_shouldFail_whenScriptRejectsRequest() throws Exception {
+
+        redisRateLimiter = new RedisRateLimiter(2, 2, 1000, RateLimitAlgorithm.GCRA, 0, jedisPool);
+
+        when(jedis.evalsha(any(byte[].class), anyList(), anyList()))
+                .thenReturn(allowed(1, 500000), allowed(0, 1000000), Arrays.asList(0L, 0L, 250000L));
+
+        redisRateLimiter.checkRateOf("Key7", POST);
+        RateLimitStatus status = redisRateLimiter.checkRateOf("Key7", POST);
+        assertThat(status.getRemaining(), is(0L));
+        assertThat(status.getResetMillis(), is(1000L));
+
+        try {
+            redisRateLimiter.checkRateOf("Key7", POST);
+            fail("Expected RateLimitException");
+        } catch (RateLimitException e) {
+            assertThat(e.getStatus().getLimit(), is(2));
+            assertThat(e.getStatus().getResetMillis(), is(250L));
+        }
+    }
+
+    @Test
+    public void gcraRateLimiter_shouldThrowRedisException_whenRedisIsUnavailable() throws Exception {
+
+        redisRateLimiter = new RedisRateLimiter(2, 2, 1000, RateLimitAlgorithm.GCRA, 0, jedisPool);
+
+        when(jedis.evalsha(any(byte[].class), anyList(), anyList())).thenThrow(new JedisConnectionException("connection refused"));
+
+        expectedException.expect(RedisException.class);
+        redisRateLimiter.checkRateOf("Key8", POST);
+    }
+
+    @Test
+    public void shouldStoreTokenDigestAsRawBytesInRedisKey() throws Exception {
+
+        redisRateLimiter = new RedisRateLimiter(2, 2, 1000, RateLimitAlgorithm.GCRA, 0, jedisPool);
+
+        when(jedis.evalsha(any(byte[].class), anyList(), anyList())).thenReturn(allowed(1, 500000));
+
+        redisRateLimiter.checkRateOf("POST-qgs1j9cor8mosf6ugp5jfo7ip7qlr1hf", POST);
+
+        verify(jedis).evalsha(any(byte[].class), keysCaptor.capture(), anyList());
+        byte[] expectedKey = Bytes.concat("gPOST".getBytes(), BaseEncoding.base32Hex().lowerCase().decode("qgs1j9cor8mosf6ugp5jfo7ip7qlr1hf"));
+        assertThat(keysCaptor.getValue().get(0), is(expectedKey));
+    }
+
+    @Test
+    public void concurrentChecks_shouldNotBeSerialisedBehindEachOther() throws Exception {
+
+        redisRateLimiter = new RedisRateLimiter(100, 100, 1000, jedisPool);
+        CountDownLatch bothInRedis = new CountDownLatch(2);
+        List<Boolean> sawOtherCheck = Collections.synchronizedList(new ArrayList<>());
+
+        when(jedis.evalsha(any(byte[].class), anyList(), anyList())).thenAnswer(invocation -> {
+            bothInRedis.countDown();
+            sawOtherCheck.add(bothInRedis.await(5, TimeUnit.SECONDS));
+            return 1L;
+        });
+
+        Callable<Void> check = () -> {
+            redisRateLimiter.checkRateOf("Key5", POST);
+            return null;
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        executor.invokeAll(Arrays.asList(check, check));
+        executor.shutdown();
+
+        assertThat(sawOtherCheck, contains(true, true));
+    }
+
+    private static List<Long> allowed(long remaining, long resetMicros) {
+        return Arrays.asList(1L, remaining, resetMicros);
+    }
+
+    private static List<String> asStrings(List<byte[]> values) {
+        return values.stream().map(SafeEncoder::encode).collect(Collectors.toList());
+    }
 }
@@ -49,7 +49,9 @@ public class CachingAuthenticatorTest {
             PublicApi.class, 
             resourceFilePath("config/test-config.yaml"), 
             config("publicAuthUrl", "http://localhost:" + publicAuthRulePort + "/v1/api/auth"),
-            config("connectorUrl", "http://localhost:" + connectorRulePort));
+            config("connectorUrl", "http://localhost:" + connectorRulePort),
+            config("authenticationCache.serveStaleOnError", "true"),
+            config("authenticationCache.staleGracePeriod", "1m"));
 
     @Before
     public void setup() throws Exception {
@@ -80,6 +82,17 @@ public class CachingAuthenticatorTest {
         publicAuthRule.verify(2, getRequestedFor(urlEqualTo("/v1/api/auth")));
     }
 
+    @Test
+    public void testExpiredAuthenticationIsServed_whenPublicAuthIsUnavailable() throws Exception {
+        makeRequest();
+        Thread.sleep(3000); //expireAfterWrite is set to 3seconds in test-config.yaml
+        publicAuthRule.stubFor(get(urlEqualTo("/v1/api/auth"))
+                .willReturn(aResponse().withStatus(503)));
+        makeRequest();
+
+        publicAuthRule.verify(2, getRequestedFor(urlEqualTo("/v1/api/auth")));
+    }
+
     private void makeRequest() {
         given().port(app.getLocalPort())
                 .header(AUTHORIZATION, "Bearer " + bearerToken)
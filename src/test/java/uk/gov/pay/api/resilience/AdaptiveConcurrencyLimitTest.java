@@ -0,0 +1,125 @@
+package uk.gov.pay.api.resilience;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+public class AdaptiveConcurrencyLimitTest {
+
+    private static final long TEN_MILLIS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AtomicLong clock = new AtomicLong();
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    @Test
+    public void shouldRejectRequestsOverTheLimit_andOverTheirShareOfIt() {
+        AdaptiveConcurrencyLimit limit = limit(10, 5, 20);
+
+        for (int i = 0; i < 7; i++) {
+            assertThat(limit.tryAcquire(1.0), is(true));
+        }
+        assertThat(limit.tryAcquire(0.7), is(false));
+        assertThat(limit.tryAcquire(1.0), is(true));
+
+        assertThat(limit.getInFlight(), is(8));
+        assertThat(metricRegistry.meter("load-shedding.rejected").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldDecreaseLimit_whenLatencyRisesWellAboveAverage_atMostOncePerAverageLatency() {
+        AdaptiveConcurrencyLimit limit = limit(100, 10, 200);
+        complete(limit, 20, TEN_MILLIS);
+
+        clock.addAndGet(TEN_MILLIS);
+        complete(limit, 5, 5 * TEN_MILLIS);
+        assertThat(limit.getLimit(), is(90));
+
+        clock.addAndGet(TEN_MILLIS * 2);
+        complete(limit, 1, 5 * TEN_MILLIS);
+        assertThat(limit.getLimit(), is(81));
+    }
+
+    @Test
+    public void shouldNotGoBelowMinLimit() {
+        AdaptiveConcurrencyLimit limit = limit(12, 10, 200);
+        complete(limit, 1, TEN_MILLIS);
+
+        for (int i = 0; i < 5; i++) {
+            clock.addAndGet(TEN_MILLIS * 100);
+            complete(limit, 1, TEN_MILLIS * 100);
+        }
+
+        assertThat(limit.getLimit(), is(10));
+    }
+
+    @Test
+    public void shouldIncreaseLimit_whileItIsInUseAndLatencyIsSteady() {
+        AdaptiveConcurrencyLimit limit = limit(10, 5, 20);
+
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 10; i++) {
+                limit.tryAcquire(1.0);
+            }
+            for (int i = 0; i < 10; i++) {
+                limit.release(0, TEN_MILLIS);
+            }
+        }
+
+        assertThat(limit.getLimit(), is(greaterThan(10)));
+    }
+
+    @Test
+    public void shouldNotIncreaseLimit_whenMostOfItIsUnused() {
+        AdaptiveConcurrencyLimit limit = limit(10, 5, 20);
+
+        complete(limit, 100, TEN_MILLIS);
+
+        assertThat(limit.getLimit(), is(10));
+    }
+
+    @Test
+    public void shouldCompareLatencyWithAverageOfItsOwnClass() {
+        AdaptiveConcurrencyLimit limit = limit(100, 10, 200);
+        complete(limit, 20, TEN_MILLIS);
+
+        clock.addAndGet(TEN_MILLIS);
+        for (int i = 0; i < 20; i++) {
+            limit.tryAcquire(1.0);
+            limit.release(1, 5 * TEN_MILLIS);
+        }
+
+        assertThat(limit.getLimit(), is(100));
+    }
+
+    @Test
+    public void shouldLeaveLimitAlone_whenReleasedWithoutLatency() {
+        AdaptiveConcurrencyLimit limit = limit(100, 10, 200);
+        complete(limit, 20, 5 * TEN_MILLIS);
+
+        for (int i = 0; i < 20; i++) {
+            limit.tryAcquire(1.0);
+            limit.release();
+        }
+
+        assertThat(limit.getLimit(), is(100));
+        assertThat(limit.getInFlight(), is(0));
+    }
+
+    private AdaptiveConcurrencyLimit limit(int initialLimit, int minLimit, int maxLimit) {
+        return new AdaptiveConcurrencyLimit("load-shedding", 2, initialLimit, minLimit, maxLimit, 2.0, 0.9,
+                metricRegistry, clock::get);
+    }
+
+    private static void complete(AdaptiveConcurrencyLimit limit, int requests, long latencyNanos) {
+        for (int i = 0; i < requests; i++) {
+            limit.tryAcquire(1.0);
+            limit.release(0, latencyNanos);
+        }
+    }
+}
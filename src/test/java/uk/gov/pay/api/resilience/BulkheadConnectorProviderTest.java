@@ -0,0 +1,141 @@
+package uk.gov.pay.api.resilience;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Configuration;
+import java.net.URI;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BulkheadConnectorProviderTest {
+
+    private static final String CONNECTOR_URL = "http://connector:9300";
+    private static final String CONNECTOR_DD_URL = "http://connector:9300/direct-debit";
+
+    @Mock
+    private ConnectorProvider connectorProvider;
+
+    @Mock
+    private Connector connector;
+
+    @Mock
+    private ClientResponse clientResponse;
+
+    private Bulkhead connectorBulkhead;
+    private Bulkhead directDebitBulkhead;
+    private Connector bulkheadConnector;
+
+    @Before
+    public void setup() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        connectorBulkhead = new Bulkhead("connector", 1, 0, metricRegistry);
+        directDebitBulkhead = new Bulkhead("direct-debit-connector", 1, 0, metricRegistry);
+
+        when(connectorProvider.getConnector(any(), any())).thenReturn(connector);
+        bulkheadConnector = new BulkheadConnectorProvider(connectorProvider,
+                ImmutableMap.of(CONNECTOR_URL, connectorBulkhead, CONNECTOR_DD_URL, directDebitBulkhead))
+                .getConnector(mock(Client.class), mock(Configuration.class));
+    }
+
+    @Test
+    public void shouldReleasePermit_onceRequestHasBeenSent() {
+        ClientRequest request = requestTo(CONNECTOR_URL + "/v1/api/accounts/1/charges/abc");
+        when(connector.apply(request)).thenReturn(clientResponse);
+
+        assertThat(bulkheadConnector.apply(request), is(clientResponse));
+        assertThat(bulkheadConnector.apply(request), is(clientResponse));
+    }
+
+    @Test
+    public void shouldRejectRequest_whenUpstreamBulkheadIsFull() {
+        connectorBulkhead.tryAcquire();
+
+        try {
+            bulkheadConnector.apply(requestTo(CONNECTOR_URL + "/v1/api/accounts/1/charges/abc"));
+            fail("Expected BulkheadFullException");
+        } catch (BulkheadFullException e) {
+            verify(connector, never()).apply(any(ClientRequest.class));
+        }
+    }
+
+    @Test
+    public void shouldUseBulkheadOfLongestMatchingBaseUrl_soOneFullUpstreamDoesNotAffectAnother() {
+        directDebitBulkhead.tryAcquire();
+        ClientRequest cardRequest = requestTo(CONNECTOR_URL + "/v1/api/accounts/1/charges/abc");
+        when(connector.apply(cardRequest)).thenReturn(clientResponse);
+
+        assertThat(bulkheadConnector.apply(cardRequest), is(clientResponse));
+        try {
+            bulkheadConnector.apply(requestTo(CONNECTOR_DD_URL + "/v1/api/accounts/1/mandates"));
+            fail("Expected BulkheadFullException");
+        } catch (BulkheadFullException e) {
+            assertThat(e.getMessage(), is("Too many calls in flight through bulkhead direct-debit-connector"));
+        }
+    }
+
+    @Test
+    public void shouldSendRequestsToOtherUrls_withoutABulkhead() {
+        connectorBulkhead.tryAcquire();
+        ClientRequest request = requestTo("http://publicauth:9600/v1/api/auth");
+        when(connector.apply(request)).thenReturn(clientResponse);
+
+        assertThat(bulkheadConnector.apply(request), is(clientResponse));
+    }
+
+    @Test
+    public void shouldHoldPermitOfAsyncRequest_untilItCompletes() {
+        ClientRequest request = requestTo(CONNECTOR_URL + "/v1/api/accounts/1/charges/abc");
+        AsyncConnectorCallback callback = mock(AsyncConnectorCallback.class);
+        ArgumentCaptor<AsyncConnectorCallback> connectorCallback = ArgumentCaptor.forClass(AsyncConnectorCallback.class);
+
+        bulkheadConnector.apply(request, callback);
+        verify(connector).apply(any(ClientRequest.class), connectorCallback.capture());
+        assertThat(connectorBulkhead.tryAcquire(), is(false));
+
+        connectorCallback.getValue().response(clientResponse);
+
+        verify(callback).response(clientResponse);
+        assertThat(connectorBulkhead.tryAcquire(), is(true));
+    }
+
+    @Test
+    public void shouldFailAsyncRequest_whenUpstreamBulkheadIsFull() {
+        connectorBulkhead.tryAcquire();
+        AsyncConnectorCallback callback = mock(AsyncConnectorCallback.class);
+        ArgumentCaptor<Throwable> failure = ArgumentCaptor.forClass(Throwable.class);
+
+        bulkheadConnector.apply(requestTo(CONNECTOR_URL + "/v1/api/accounts/1/charges/abc"), callback);
+
+        verify(callback).failure(failure.capture());
+        assertThat(failure.getValue(), instanceOf(BulkheadFullException.class));
+        verify(connector, never()).apply(any(ClientRequest.class), any(AsyncConnectorCallback.class));
+    }
+
+    private static ClientRequest requestTo(String uri) {
+        ClientRequest request = mock(ClientRequest.class);
+        when(request.getUri()).thenReturn(URI.create(uri));
+        return request;
+    }
+}
@@ -0,0 +1,65 @@
+package uk.gov.pay.api.resilience;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class BulkheadTest {
+
+    private MetricRegistry metricRegistry;
+    private Bulkhead bulkhead;
+
+    @Before
+    public void setup() {
+        metricRegistry = new MetricRegistry();
+        bulkhead = new Bulkhead("test", 2, 0, metricRegistry);
+    }
+
+    @Test
+    public void shouldReject_whenMaxConcurrentCallsAreInFlight() {
+        assertThat(bulkhead.tryAcquire(), is(true));
+        assertThat(bulkhead.tryAcquire(), is(true));
+
+        assertThat(bulkhead.tryAcquire(), is(false));
+        assertThat(metricRegistry.meter("test.rejected").getCount(), is(1L));
+        assertThat(metricRegistry.getGauges().get("test.available").getValue(), is(0));
+    }
+
+    @Test
+    public void shouldAllowCallsAgain_onceOthersHaveFinished() {
+        bulkhead.tryAcquire();
+        bulkhead.tryAcquire();
+
+        bulkhead.release();
+
+        assertThat(bulkhead.tryAcquire(), is(true));
+        assertThat(metricRegistry.meter("test.rejected").getCount(), is(0L));
+    }
+
+    @Test
+    public void shouldWaitUpToMaxWaitForAPermit_beforeRejecting() throws Exception {
+        Bulkhead waitingBulkhead = new Bulkhead("waiting", 1, 1000, metricRegistry);
+        waitingBulkhead.tryAcquire();
+
+        Thread releaser = new Thread(() -> {
+            sleep(50);
+            waitingBulkhead.release();
+        });
+        releaser.start();
+
+        assertThat(waitingBulkhead.tryAcquire(), is(true));
+        releaser.join();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
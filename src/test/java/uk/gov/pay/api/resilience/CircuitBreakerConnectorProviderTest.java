@@ -0,0 +1,181 @@
+package uk.gov.pay.api.resilience;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.api.resilience.CircuitBreakerConnectorProvider.ReadWriteCircuitBreakers;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Configuration;
+import java.net.URI;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CircuitBreakerConnectorProviderTest {
+
+    private static final String CONNECTOR_URL = "http://connector:9300";
+    private static final String CHARGE_URL = CONNECTOR_URL + "/v1/api/accounts/1/charges/abc";
+
+    @Mock
+    private ConnectorProvider connectorProvider;
+
+    @Mock
+    private Connector connector;
+
+    private CircuitBreaker read;
+    private CircuitBreaker write;
+    private Connector circuitBreakerConnector;
+
+    @Before
+    public void setup() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        read = new CircuitBreaker("connector.read", 2, 10000, metricRegistry);
+        write = new CircuitBreaker("connector.write", 2, 10000, metricRegistry);
+
+        when(connectorProvider.getConnector(any(), any())).thenReturn(connector);
+        circuitBreakerConnector = new CircuitBreakerConnectorProvider(connectorProvider,
+                ImmutableMap.of(CONNECTOR_URL, new ReadWriteCircuitBreakers(read, write)))
+                .getConnector(mock(Client.class), mock(Configuration.class));
+    }
+
+    @Test
+    public void shouldFailFast_afterConsecutiveServerErrors() {
+        ClientRequest request = request("GET", CHARGE_URL);
+        ClientResponse serverError = response(500);
+        when(connector.apply(request)).thenReturn(serverError);
+
+        circuitBreakerConnector.apply(request);
+        circuitBreakerConnector.apply(request);
+
+        try {
+            circuitBreakerConnector.apply(request);
+            fail("Expected CircuitBreakerOpenException");
+        } catch (CircuitBreakerOpenException e) {
+            assertThat(e.getMessage(), is("Circuit breaker connector.read is open"));
+        }
+        verify(connector, times(2)).apply(request);
+    }
+
+    @Test
+    public void shouldCountTimeoutsAsFailures() {
+        ClientRequest request = request("POST", CHARGE_URL + "/cancel");
+        when(connector.apply(request)).thenThrow(new ProcessingException("Read timed out"));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                circuitBreakerConnector.apply(request);
+                fail("Expected ProcessingException");
+            } catch (ProcessingException e) {
+                assertThat(e, instanceOf(ProcessingException.class));
+            }
+        }
+
+        assertThat(write.getState(), is(CircuitBreaker.State.OPEN));
+        assertThat(read.getState(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void shouldNotCountFailures_afterCallersDeadlineHasPassed() {
+        ClientRequest request = request("GET", CHARGE_URL);
+        when(request.getProperty(Deadline.PROPERTY)).thenReturn(Deadline.after(0));
+        when(connector.apply(request)).thenThrow(new ProcessingException("Read timed out"));
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                circuitBreakerConnector.apply(request);
+                fail("Expected ProcessingException");
+            } catch (ProcessingException e) {
+                // expected
+            }
+        }
+
+        assertThat(read.getState(), is(CircuitBreaker.State.CLOSED));
+        verify(connector, times(3)).apply(request);
+    }
+
+    @Test
+    public void shouldNotCountClientErrorsOrBulkheadRejectionsAsFailures() {
+        ClientRequest notFound = request("GET", CHARGE_URL);
+        ClientRequest rejected = request("GET", CHARGE_URL + "/events");
+        ClientResponse notFoundResponse = response(404);
+        when(connector.apply(notFound)).thenReturn(notFoundResponse);
+        when(connector.apply(rejected)).thenThrow(new BulkheadFullException("connector"));
+
+        for (int i = 0; i < 2; i++) {
+            circuitBreakerConnector.apply(notFound);
+            try {
+                circuitBreakerConnector.apply(rejected);
+            } catch (BulkheadFullException e) {
+                // expected
+            }
+        }
+
+        assertThat(read.getState(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void shouldSendRequestsToOtherUrls_withoutACircuitBreaker() {
+        read.recordFailure();
+        read.recordFailure();
+        ClientRequest request = request("GET", "http://publicauth:9600/v1/api/auth");
+        ClientResponse ok = mock(ClientResponse.class);
+        when(connector.apply(request)).thenReturn(ok);
+
+        assertThat(circuitBreakerConnector.apply(request), is(ok));
+    }
+
+    @Test
+    public void shouldRecordOutcomeOfAsyncRequests_whenTheyComplete() {
+        ClientRequest request = request("GET", CHARGE_URL);
+        AsyncConnectorCallback callback = mock(AsyncConnectorCallback.class);
+        ArgumentCaptor<AsyncConnectorCallback> connectorCallback = ArgumentCaptor.forClass(AsyncConnectorCallback.class);
+
+        circuitBreakerConnector.apply(request, callback);
+        circuitBreakerConnector.apply(request, callback);
+        verify(connector, times(2)).apply(any(ClientRequest.class), connectorCallback.capture());
+        for (AsyncConnectorCallback value : connectorCallback.getAllValues()) {
+            value.failure(new ProcessingException("Connection refused"));
+        }
+
+        circuitBreakerConnector.apply(request, callback);
+
+        ArgumentCaptor<Throwable> failure = ArgumentCaptor.forClass(Throwable.class);
+        verify(callback, times(3)).failure(failure.capture());
+        assertThat(failure.getValue(), instanceOf(CircuitBreakerOpenException.class));
+        verify(connector, never()).apply(request);
+    }
+
+    private static ClientRequest request(String method, String uri) {
+        ClientRequest request = mock(ClientRequest.class);
+        when(request.getUri()).thenReturn(URI.create(uri));
+        when(request.getMethod()).thenReturn(method);
+        return request;
+    }
+
+    private static ClientResponse response(int status) {
+        ClientResponse response = mock(ClientResponse.class);
+        when(response.getStatus()).thenReturn(status);
+        return response;
+    }
+}
@@ -0,0 +1,107 @@
+package uk.gov.pay.api.resilience;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class CircuitBreakerTest {
+
+    private FakeTicker ticker;
+    private MetricRegistry metricRegistry;
+    private CircuitBreaker circuitBreaker;
+
+    @Before
+    public void setup() {
+        ticker = new FakeTicker();
+        metricRegistry = new MetricRegistry();
+        circuitBreaker = new CircuitBreaker("test", 3, 1000, metricRegistry, ticker);
+    }
+
+    @Test
+    public void shouldOpen_afterConsecutiveFailuresReachThreshold() {
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        assertThat(circuitBreaker.allowRequest(), is(true));
+
+        circuitBreaker.recordFailure();
+
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.OPEN));
+        assertThat(circuitBreaker.allowRequest(), is(false));
+        assertThat(metricRegistry.meter("test.opened").getCount(), is(1L));
+        assertThat(metricRegistry.meter("test.rejected").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldNotOpen_whenFailuresAreNotConsecutive() {
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void shouldLetASingleProbeThrough_afterOpenDuration() {
+        openCircuit();
+
+        ticker.advance(1000);
+
+        assertThat(circuitBreaker.allowRequest(), is(true));
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+        assertThat(circuitBreaker.allowRequest(), is(false));
+    }
+
+    @Test
+    public void shouldClose_whenProbeSucceeds() {
+        openCircuit();
+        ticker.advance(1000);
+        circuitBreaker.allowRequest();
+
+        circuitBreaker.recordSuccess();
+
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.CLOSED));
+        assertThat(circuitBreaker.allowRequest(), is(true));
+        assertThat(metricRegistry.meter("test.closed").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldReopen_whenProbeFails() {
+        openCircuit();
+        ticker.advance(1000);
+        circuitBreaker.allowRequest();
+
+        circuitBreaker.recordFailure();
+
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.OPEN));
+        assertThat(circuitBreaker.allowRequest(), is(false));
+        ticker.advance(1000);
+        assertThat(circuitBreaker.allowRequest(), is(true));
+    }
+
+    private void openCircuit() {
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+    }
+
+    private static class FakeTicker extends Ticker {
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long millis) {
+            nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package uk.gov.pay.api.resilience;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableMap;
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.JerseyClient;
+import org.glassfish.jersey.client.JerseyClientBuilder;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Configuration;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HedgingConnectorProviderTest {
+
+    private static final String CONNECTOR_URL = "http://connector:9300";
+    private static final String CHARGE_URL = CONNECTOR_URL + "/v1/api/accounts/1/charges/abc";
+    private static final JerseyClient CLIENT = new JerseyClientBuilder().build();
+
+    @Mock
+    private ConnectorProvider connectorProvider;
+
+    @Mock
+    private Connector connector;
+
+    @Mock
+    private AsyncConnectorCallback callback;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final Timer latency = metricRegistry.timer("hedging.connector.latency");
+    private final AtomicReference<AsyncConnectorCallback> firstAttempt = new AtomicReference<>();
+    private final AtomicReference<Thread> firstAttemptThread = new AtomicReference<>();
+
+    @Before
+    public void setup() {
+        when(connectorProvider.getConnector(any(), any())).thenReturn(connector);
+    }
+
+    @After
+    public void tearDown() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldSendHedgeFromExecutor_whenFirstAttemptIsSlow_andUseWhicheverRespondsFirst() {
+        ClientRequest request = request("GET", CHARGE_URL);
+        ClientResponse slow = mock(ClientResponse.class);
+        ClientResponse fast = mock(ClientResponse.class);
+        givenFirstAttemptIsStillInFlight(request);
+        when(connector.apply(any(ClientRequest.class))).thenReturn(fast);
+
+        hedgingConnector(10).apply(request, callback);
+
+        verify(callback, timeout(1000)).response(fast);
+        verify(connector).apply(argThat((ClientRequest hedge) -> hedge != request && hedge.getUri().equals(request.getUri())));
+        firstAttempt.get().response(slow);
+        verify(slow).close();
+        verify(callback, never()).response(slow);
+        assertThat(firstAttemptThread.get(), is(Thread.currentThread()));
+        assertThat(metricRegistry.meter("hedging.hedges").getCount(), is(1L));
+        assertThat(metricRegistry.meter("hedging.hedges-won").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldNotSendHedge_whenFirstAttemptIsQuick() throws Exception {
+        ClientRequest request = request("GET", CHARGE_URL);
+        ClientResponse ok = mock(ClientResponse.class);
+        when(connector.apply(eq(request), any(AsyncConnectorCallback.class))).thenAnswer(invocation -> {
+            invocation.<AsyncConnectorCallback>getArgument(1).response(ok);
+            return null;
+        });
+
+        hedgingConnector(10).apply(request, callback);
+
+        Thread.sleep(50);
+        verify(callback).response(ok);
+        verify(connector, never()).apply(any(ClientRequest.class));
+        assertThat(latency.getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldNotSendHedge_whenBudgetIsUsedUp() throws Exception {
+        ClientRequest request = request("GET", CHARGE_URL);
+        givenFirstAttemptIsStillInFlight(request);
+
+        hedgingConnector(0).apply(request, callback);
+
+        Thread.sleep(50);
+        verify(connector, never()).apply(any(ClientRequest.class));
+        assertThat(metricRegistry.meter("hedging.hedges").getCount(), is(0L));
+    }
+
+    @Test
+    public void shouldNotSendHedge_whenRequestDeadlineHasPassed() throws Exception {
+        ClientRequest request = request("GET", CHARGE_URL);
+        request.setProperty(Deadline.PROPERTY, Deadline.after(0));
+        givenFirstAttemptIsStillInFlight(request);
+
+        hedgingConnector(10).apply(request, callback);
+
+        Thread.sleep(50);
+        verify(connector, never()).apply(any(ClientRequest.class));
+    }
+
+    @Test
+    public void shouldNotSendHedge_whenExecutorHasNoThreadFree() throws Exception {
+        ClientRequest request = request("GET", CHARGE_URL);
+        ClientResponse ok = mock(ClientResponse.class);
+        ExecutorService busyExecutor = mock(ExecutorService.class);
+        doThrow(new RejectedExecutionException()).when(busyExecutor).execute(any(Runnable.class));
+        givenFirstAttemptIsStillInFlight(request);
+
+        hedgingConnector(10, busyExecutor).apply(request, callback);
+
+        verify(busyExecutor, timeout(1000)).execute(any(Runnable.class));
+        firstAttempt.get().response(ok);
+        verify(callback).response(ok);
+        assertThat(metricRegistry.meter("hedging.hedges").getCount(), is(0L));
+    }
+
+    @Test
+    public void shouldFail_whenFirstAttemptFailsBeforeHedgeIsSent() throws Exception {
+        ClientRequest request = request("GET", CHARGE_URL);
+        ProcessingException refused = new ProcessingException("Connection refused");
+        when(connector.apply(eq(request), any(AsyncConnectorCallback.class))).thenAnswer(invocation -> {
+            invocation.<AsyncConnectorCallback>getArgument(1).failure(refused);
+            return null;
+        });
+
+        hedgingConnector(10).apply(request, callback);
+
+        Thread.sleep(50);
+        verify(callback).failure(refused);
+        verify(connector, never()).apply(any(ClientRequest.class));
+    }
+
+    @Test
+    public void shouldFailWithLastFailure_whenFirstAttemptAndHedgeBothFail() {
+        ClientRequest request = request("GET", CHARGE_URL);
+        ProcessingException hedgeFailure = new ProcessingException("Read timed out");
+        ProcessingException firstFailure = new ProcessingException("Connection reset");
+        givenFirstAttemptIsStillInFlight(request);
+        when(connector.apply(any(ClientRequest.class))).thenThrow(hedgeFailure);
+
+        hedgingConnector(10).apply(request, callback);
+
+        verify(connector, timeout(1000)).apply(any(ClientRequest.class));
+        verify(callback, never()).failure(any());
+        firstAttempt.get().failure(firstFailure);
+        verify(callback).failure(firstFailure);
+    }
+
+    @Test
+    public void shouldSendBlockingRequests_withoutHedging() {
+        ClientRequest request = request("GET", CHARGE_URL);
+        ClientResponse ok = mock(ClientResponse.class);
+        when(connector.apply(request)).thenReturn(ok);
+
+        assertThat(hedgingConnector(10).apply(request), is(ok));
+
+        assertThat(latency.getCount(), is(0L));
+    }
+
+    @Test
+    public void shouldSendWritesAndRequestsToOtherUrls_withoutHedging() {
+        ClientRequest post = request("POST", CHARGE_URL + "/cancel");
+        ClientRequest auth = request("GET", "http://publicauth:9600/v1/api/auth");
+        hedgingConnector(10).apply(post, callback);
+        hedgingConnector(10).apply(auth, callback);
+
+        verify(connector).apply(post, callback);
+        verify(connector).apply(auth, callback);
+        assertThat(latency.getCount(), is(0L));
+    }
+
+    @Test
+    public void shouldWaitForRecentPercentile_butNoLessThanMinDelay() {
+        HedgingConnectorProvider hedgingConnectorProvider = new HedgingConnectorProvider(connectorProvider,
+                ImmutableMap.of(CONNECTOR_URL, latency), 95, 20, new RetryBudget(5, 10), timer, executor,
+                metricRegistry, "hedging");
+
+        assertThat(hedgingConnectorProvider.hedgeDelayMillis(latency), is(20L));
+
+        for (int i = 1; i <= 100; i++) {
+            latency.update(i, TimeUnit.MILLISECONDS);
+        }
+        assertThat(hedgingConnectorProvider.hedgeDelayMillis(latency), is(95L));
+    }
+
+    private void givenFirstAttemptIsStillInFlight(ClientRequest request) {
+        when(connector.apply(eq(request), any(AsyncConnectorCallback.class))).thenAnswer(invocation -> {
+            firstAttempt.set(invocation.getArgument(1));
+            firstAttemptThread.set(Thread.currentThread());
+            return null;
+        });
+    }
+
+    private Connector hedgingConnector(int budgetMaxTokens) {
+        return hedgingConnector(budgetMaxTokens, executor);
+    }
+
+    private Connector hedgingConnector(int budgetMaxTokens, ExecutorService executor) {
+        return new HedgingConnectorProvider(connectorProvider, ImmutableMap.of(CONNECTOR_URL, latency), 95, 10,
+                new RetryBudget(0, budgetMaxTokens), timer, executor, metricRegistry, "hedging")
+                .getConnector(mock(Client.class), mock(Configuration.class));
+    }
+
+    private static ClientRequest request(String method, String uri) {
+        ClientRequest request = new ClientRequest(URI.create(uri), CLIENT.getConfiguration(), new MapPropertiesDelegate()) {
+        };
+        request.setMethod(method);
+        return request;
+    }
+}
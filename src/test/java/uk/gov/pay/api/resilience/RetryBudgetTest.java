@@ -0,0 +1,40 @@
+package uk.gov.pay.api.resilience;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class RetryBudgetTest {
+
+    @Test
+    public void shouldAllowSavedUpRetries_thenOnlyAPercentageOfRequests() {
+        RetryBudget retryBudget = new RetryBudget(10, 2);
+
+        assertThat(retryBudget.tryWithdraw(), is(true));
+        assertThat(retryBudget.tryWithdraw(), is(true));
+        assertThat(retryBudget.tryWithdraw(), is(false));
+
+        for (int i = 0; i < 9; i++) {
+            retryBudget.recordRequest();
+        }
+        assertThat(retryBudget.tryWithdraw(), is(false));
+
+        retryBudget.recordRequest();
+        assertThat(retryBudget.tryWithdraw(), is(true));
+        assertThat(retryBudget.tryWithdraw(), is(false));
+    }
+
+    @Test
+    public void shouldNotSaveUpMoreThanMaxTokens() {
+        RetryBudget retryBudget = new RetryBudget(50, 1);
+
+        for (int i = 0; i < 10; i++) {
+            retryBudget.recordRequest();
+        }
+
+        assertThat(retryBudget.getTokens(), is(1.0));
+        assertThat(retryBudget.tryWithdraw(), is(true));
+        assertThat(retryBudget.tryWithdraw(), is(false));
+    }
+}
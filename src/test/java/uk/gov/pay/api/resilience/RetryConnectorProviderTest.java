@@ -0,0 +1,230 @@
+package uk.gov.pay.api.resilience;
+
+import com.codahale.metrics.MetricRegistry;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.JerseyClientBuilder;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Configuration;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.api.filter.DeadlineFilter.HEADER_REQUEST_TIMEOUT;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RetryConnectorProviderTest {
+
+    @Mock
+    private ConnectorProvider connectorProvider;
+
+    @Mock
+    private Connector connector;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    @Before
+    public void setup() {
+        when(connectorProvider.getConnector(any(), any())).thenReturn(connector);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void shouldRetryReads_afterServiceUnavailable() {
+        ClientRequest request = request("GET");
+        ClientResponse unavailable = response(503);
+        ClientResponse ok = response(200);
+        when(connector.apply(request)).thenReturn(unavailable, ok);
+
+        assertThat(retryConnector(3, 10).apply(request), is(ok));
+
+        verify(unavailable).close();
+        assertThat(metricRegistry.meter("retries.retries").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldRetryReads_afterConnectionFailures_upToMaxAttempts() {
+        ClientRequest request = request("GET");
+        ProcessingException refused = new ProcessingException(new ConnectException("Connection refused"));
+        when(connector.apply(request)).thenThrow(refused);
+
+        try {
+            retryConnector(3, 10).apply(request);
+            fail("Expected ProcessingException");
+        } catch (ProcessingException e) {
+            assertThat(e, is(refused));
+        }
+
+        verify(connector, times(3)).apply(request);
+    }
+
+    @Test
+    public void shouldNotRetryTimeoutsOrWrites() {
+        ClientRequest timedOut = request("GET");
+        ClientRequest post = request("POST");
+        when(connector.apply(timedOut)).thenThrow(new ProcessingException(new SocketTimeoutException("Read timed out")));
+        ClientResponse unavailable = mock(ClientResponse.class);
+        when(connector.apply(post)).thenReturn(unavailable);
+        Connector retryConnector = retryConnector(3, 10);
+
+        try {
+            retryConnector.apply(timedOut);
+            fail("Expected ProcessingException");
+        } catch (ProcessingException e) {
+            verify(connector).apply(timedOut);
+        }
+        assertThat(retryConnector.apply(post), is(unavailable));
+        verify(connector).apply(post);
+    }
+
+    @Test
+    public void shouldStopRetrying_whenBudgetIsUsedUp() {
+        ClientRequest request = request("GET");
+        ClientResponse unavailable = response(503);
+        when(connector.apply(request)).thenReturn(unavailable);
+
+        assertThat(retryConnector(3, 1).apply(request), is(unavailable));
+
+        verify(connector, times(2)).apply(request);
+        assertThat(metricRegistry.meter("retries.budget-exhausted").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldRetryAsyncReads_onTheScheduler() {
+        ClientRequest request = request("HEAD");
+        AsyncConnectorCallback callback = mock(AsyncConnectorCallback.class);
+        ClientResponse ok = mock(ClientResponse.class);
+        ArgumentCaptor<AsyncConnectorCallback> connectorCallback = ArgumentCaptor.forClass(AsyncConnectorCallback.class);
+
+        retryConnector(3, 10).apply(request, callback);
+        verify(connector).apply(any(ClientRequest.class), connectorCallback.capture());
+        connectorCallback.getValue().failure(new ProcessingException(new ConnectException("Connection refused")));
+
+        verify(connector, timeout(1000).times(2)).apply(any(ClientRequest.class), connectorCallback.capture());
+        connectorCallback.getValue().response(ok);
+
+        verify(callback).response(ok);
+        verify(callback, never()).failure(any());
+    }
+
+    @Test
+    public void shouldLimitRetryToTimeLeftBeforeDeadline() {
+        ClientRequest request = request("GET", Deadline.after(5000));
+        request.setProperty(ClientProperties.READ_TIMEOUT, 30000);
+        request.getHeaders().putSingle(HEADER_REQUEST_TIMEOUT, "30000");
+        ClientResponse unavailable = response(503);
+        ClientResponse ok = mock(ClientResponse.class);
+        List<Integer> retryReadTimeout = new ArrayList<>();
+        when(connector.apply(request)).thenReturn(unavailable).thenAnswer(invocation -> {
+            retryReadTimeout.add((Integer) request.getProperty(ClientProperties.READ_TIMEOUT));
+            retryReadTimeout.add(Integer.valueOf(request.getHeaderString(HEADER_REQUEST_TIMEOUT)));
+            return ok;
+        });
+
+        assertThat(retryConnector(3, 10).apply(request), is(ok));
+
+        assertThat(retryReadTimeout, everyItem(is(both(greaterThan(4000)).and(lessThanOrEqualTo(5000)))));
+    }
+
+    @Test
+    public void shouldNotRetry_whenTooLittleTimeIsLeftBeforeDeadline() {
+        ClientRequest request = request("GET", Deadline.after(50));
+        ClientResponse unavailable = response(503);
+        when(connector.apply(request)).thenReturn(unavailable);
+
+        assertThat(retryConnector(3, 10).apply(request), is(unavailable));
+
+        verify(connector).apply(request);
+    }
+
+    @Test
+    public void shouldFailAsyncRequest_whenRetryCannotBeSent() {
+        ClientRequest request = request("GET");
+        AsyncConnectorCallback callback = mock(AsyncConnectorCallback.class);
+        IllegalStateException closed = new IllegalStateException("Connection pool shut down");
+        ArgumentCaptor<AsyncConnectorCallback> connectorCallback = ArgumentCaptor.forClass(AsyncConnectorCallback.class);
+        when(connector.apply(any(ClientRequest.class), connectorCallback.capture())).thenReturn(null).thenThrow(closed);
+
+        retryConnector(3, 10).apply(request, callback);
+        connectorCallback.getValue().failure(new ProcessingException(new ConnectException("Connection refused")));
+
+        verify(callback, timeout(1000)).failure(closed);
+    }
+
+    @Test
+    public void shouldBackOffExponentially_withJitter_upToMaxBackoff() {
+        RetryConnectorProvider retryConnectorProvider = new RetryConnectorProvider(connectorProvider, 5, 100, 300, 0,
+                new RetryBudget(10, 10), scheduler, metricRegistry, "retries");
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(retryConnectorProvider.backoffMillis(1), is(both(greaterThanOrEqualTo(0L)).and(lessThanOrEqualTo(100L))));
+            assertThat(retryConnectorProvider.backoffMillis(2), is(both(greaterThanOrEqualTo(0L)).and(lessThanOrEqualTo(200L))));
+            assertThat(retryConnectorProvider.backoffMillis(4), is(both(greaterThanOrEqualTo(0L)).and(lessThanOrEqualTo(300L))));
+        }
+    }
+
+    private Connector retryConnector(int maxAttempts, int budgetMaxTokens) {
+        return new RetryConnectorProvider(connectorProvider, maxAttempts, 0, 0, 100,
+                new RetryBudget(0, budgetMaxTokens), scheduler, metricRegistry, "retries")
+                .getConnector(mock(Client.class), mock(Configuration.class));
+    }
+
+    private static ClientRequest request(String method) {
+        ClientRequest request = mock(ClientRequest.class);
+        when(request.getMethod()).thenReturn(method);
+        return request;
+    }
+
+    private static ClientRequest request(String method, Deadline deadline) {
+        ClientRequest request = new ClientRequest(URI.create("http://connector:9300/v1/api/charges/abc"),
+                new JerseyClientBuilder().build().getConfiguration(), new MapPropertiesDelegate()) {
+        };
+        request.setMethod(method);
+        request.setProperty(Deadline.PROPERTY, deadline);
+        return request;
+    }
+
+    private static ClientResponse response(int status) {
+        ClientResponse response = mock(ClientResponse.class);
+        when(response.getStatus()).thenReturn(status);
+        return response;
+    }
+}
@@ -6,14 +6,20 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import uk.gov.pay.api.service.ConnectorUriGenerator;
+import uk.gov.pay.api.model.links.directdebit.DirectDebitEventsResponse;
 import uk.gov.pay.api.service.DirectDebitEventService;
 
 import javax.ws.rs.client.Client;
+import javax.ws.rs.container.AsyncResponse;
 import java.time.ZonedDateTime;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 
 @RunWith(MockitoJUnitRunner.class)
@@ -27,6 +33,9 @@ public class DirectDebitEventsResourceTest {
     
     @Mock
     private DirectDebitEventService directDebitEventService;
+
+    @Mock
+    private AsyncResponse asyncResponse;
     
     private DirectDebitEventsResource directDebitEventsResource;
     
@@ -34,18 +43,20 @@ public class DirectDebitEventsResourceTest {
     @Before
     public void setUp() {
         directDebitEventsResource = new DirectDebitEventsResource(client, connectorUriGenerator, directDebitEventService);
+        when(directDebitEventService.getResponseAsync(any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(DirectDebitEventsResponse.class)));
     }
     
     @Test
     public void testAllNullValues() {
-        directDebitEventsResource.getDirectDebitEvents(null, null, null, null, null, null, null);
+        directDebitEventsResource.getDirectDebitEvents(null, null, null, null, null, null, null, asyncResponse);
         verify(connectorUriGenerator, times(1)).eventsURI(null, Optional.empty(), Optional.empty(), null, null, null, null);
     }
 
     @Test
     public void testWithADate() {
         ZonedDateTime toDate = ZonedDateTime.now();
-        directDebitEventsResource.getDirectDebitEvents(null, toDate.toString(), null, null, null, null, null);
+        directDebitEventsResource.getDirectDebitEvents(null, toDate.toString(), null, null, null, null, null, asyncResponse);
         verify(connectorUriGenerator, times(1)).eventsURI(null, Optional.of(toDate), Optional.empty(), null, null, null, null);
     }
 
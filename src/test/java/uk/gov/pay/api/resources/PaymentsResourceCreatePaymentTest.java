@@ -4,9 +4,12 @@ import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import uk.gov.pay.api.auth.Account;
+import uk.gov.pay.api.exception.CreateChargeException;
 import uk.gov.pay.api.model.Address;
 import uk.gov.pay.api.model.CardDetails;
 import uk.gov.pay.api.model.CreatePaymentRequest;
@@ -18,6 +21,7 @@ import uk.gov.pay.api.model.ValidCreatePaymentRequest;
 import uk.gov.pay.api.model.links.PaymentWithAllLinks;
 import uk.gov.pay.api.service.CancelPaymentService;
 import uk.gov.pay.api.service.CapturePaymentService;
+import uk.gov.pay.api.service.ConnectorRequests;
 import uk.gov.pay.api.service.ConnectorUriGenerator;
 import uk.gov.pay.api.service.CreatePaymentService;
 import uk.gov.pay.api.service.GetPaymentService;
@@ -26,14 +30,19 @@ import uk.gov.pay.api.service.PublicApiUriGenerator;
 import uk.gov.pay.commons.model.SupportedLanguage;
 
 import javax.ws.rs.client.Client;
+import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.core.Response;
 import java.net.URI;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
 
 import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -65,6 +74,15 @@ public class PaymentsResourceCreatePaymentTest {
     @Mock
     private CancelPaymentService cancelPaymentService;
 
+    @Mock
+    private ConnectorRequests connectorRequests;
+
+    @Mock
+    private AsyncResponse asyncResponse;
+
+    @Captor
+    private ArgumentCaptor<Response> responseCaptor;
+
     private final String paymentUri = "https://my.link/v1/payments/abc123";
 
     @Before
@@ -76,8 +94,8 @@ public class PaymentsResourceCreatePaymentTest {
                 connectorUriGenerator,
                 getPaymentService,
                 capturePaymentService,
-                cancelPaymentService);
-        when(publicApiUriGenerator.getPaymentURI(anyString())).thenReturn(URI.create(paymentUri));
+                cancelPaymentService,
+                connectorRequests);
     }
 
     @Test
@@ -91,15 +109,39 @@ public class PaymentsResourceCreatePaymentTest {
                 .build());
         PaymentWithAllLinks injectedResponse = aSuccessfullyCreatedPayment();
 
-        when(createPaymentService.create(account, createPaymentRequest)).thenReturn(injectedResponse);
+        when(publicApiUriGenerator.getPaymentURI(anyString())).thenReturn(URI.create(paymentUri));
+        when(createPaymentService.createAsync(account, createPaymentRequest)).thenReturn(CompletableFuture.completedFuture(injectedResponse));
+        when(asyncResponse.resume(any(Response.class))).thenReturn(true);
 
-        final Response newPayment = paymentsResource.createNewPayment(account, createPaymentRequest);
+        paymentsResource.createNewPayment(account, createPaymentRequest, asyncResponse);
 
+        verify(asyncResponse).resume(responseCaptor.capture());
+        Response newPayment = responseCaptor.getValue();
         assertThat(newPayment.getStatus(), is(201));
         assertThat(newPayment.getLocation(), is(URI.create(paymentUri)));
         assertThat(newPayment.getEntity(), sameInstance(injectedResponse));
     }
 
+    @Test
+    public void createNewPayment_resumesWithTheExceptionFromCreatePaymentService_soThatItIsMapped() {
+        final Account account = new Account("foo", TokenPaymentType.CARD);
+        final ValidCreatePaymentRequest createPaymentRequest = new ValidCreatePaymentRequest(CreatePaymentRequest.builder()
+                .amount(100)
+                .returnUrl("https://somewhere.test")
+                .reference("my_ref")
+                .description("New Passport")
+                .build());
+        CreateChargeException exception = new CreateChargeException(mock(Response.class));
+        CompletableFuture<PaymentWithAllLinks> failedCreation = new CompletableFuture<>();
+
+        when(createPaymentService.createAsync(account, createPaymentRequest)).thenReturn(failedCreation);
+
+        paymentsResource.createNewPayment(account, createPaymentRequest, asyncResponse);
+        failedCreation.completeExceptionally(exception);
+
+        verify(asyncResponse).resume(exception);
+    }
+
     @NotNull
     private PaymentWithAllLinks aSuccessfullyCreatedPayment() {
         final Address cardholderAddress = new Address("123 Acacia Ave", "", "", "London", "GB");
@@ -52,7 +52,7 @@ public class AgreementServiceTest {
         // We will actually send real requests here, which will be intercepted by pact
         when(mockConfiguration.getConnectorDDUrl()).thenReturn(ddConnectorRule.getUrl());
         Client client = RestClientFactory.buildClient(new RestClientConfig(false));
-        agreementService = new AgreementService(client, mockConfiguration, mockPublicApiUriGenerator);
+        agreementService = new AgreementService(client, mockConfiguration, mockPublicApiUriGenerator, new ConnectorRequests(false));
     }
 
     @Test
@@ -65,7 +65,7 @@ public class AgreementServiceTest {
                 AgreementType.ON_DEMAND,
                 null
         );
-        Response connectorResponse = agreementService.createMandate(account, mandateConnectorRequest);
+        Response connectorResponse = agreementService.createMandate(account, mandateConnectorRequest).toCompletableFuture().join();
         MandateConnectorResponse mandateConnectorResponse = connectorResponse.readEntity(MandateConnectorResponse.class);
 
         assertThat(mandateConnectorResponse.getMandateId(), is(MANDATE_ID));
@@ -108,7 +108,7 @@ public class AgreementServiceTest {
                 AgreementType.ON_DEMAND,
                 SERVICE_REFERENCE
         );
-        Response connectorResponse = agreementService.createMandate(account, mandateConnectorRequest);
+        Response connectorResponse = agreementService.createMandate(account, mandateConnectorRequest).toCompletableFuture().join();
         MandateConnectorResponse mandateConnectorResponse = connectorResponse.readEntity(MandateConnectorResponse.class);
 
         assertThat(mandateConnectorResponse.getMandateId(), is(MANDATE_ID));
@@ -146,7 +146,7 @@ public class AgreementServiceTest {
     @Pacts(pacts = {"publicapi-direct-debit-connector-get-agreement"})
     public void shouldGetAMandateSuccessfully_withReference() {
         Account account = new Account("9ddfcc27-acf5-43f9-92d5-52247540714c", TokenPaymentType.DIRECT_DEBIT);
-        Response connectorResponse = agreementService.getMandate(account, MANDATE_ID);
+        Response connectorResponse = agreementService.getMandate(account, MANDATE_ID).toCompletableFuture().join();
         MandateConnectorResponse mandateConnectorResponse = connectorResponse.readEntity(MandateConnectorResponse.class);
 
         assertThat(mandateConnectorResponse.getMandateId(), is(MANDATE_ID));
@@ -42,7 +42,7 @@ public class CancelPaymentServiceTest {
 
         ConnectorUriGenerator connectorUriGenerator = new ConnectorUriGenerator(mockConfiguration);
         Client client = RestClientFactory.buildClient(new RestClientConfig(false));
-        cancelPaymentService = new CancelPaymentService(client, connectorUriGenerator);
+        cancelPaymentService = new CancelPaymentService(client, connectorUriGenerator, new ConnectorRequests(false));
     }
 
     @Test
@@ -50,7 +50,7 @@ public class CancelPaymentServiceTest {
     @Pacts(pacts = {"publicapi-connector-cancel-payment-with-created-state"})
     public void cancelAPaymentWithCreatedState() {
         
-        Response cancelPaymentResponse = cancelPaymentService.cancel(ACCOUNT, CHARGE_ID);
+        Response cancelPaymentResponse = cancelPaymentService.cancelAsync(ACCOUNT, CHARGE_ID).toCompletableFuture().join();
 
         assertThat(cancelPaymentResponse.getStatus(), is(204));
     }
@@ -42,7 +42,7 @@ public class CapturePaymentServiceTest {
 
         ConnectorUriGenerator connectorUriGenerator = new ConnectorUriGenerator(mockConfiguration);
         Client client = RestClientFactory.buildClient(new RestClientConfig(false));
-        capturePaymentService = new CapturePaymentService(client, connectorUriGenerator);
+        capturePaymentService = new CapturePaymentService(client, connectorUriGenerator, new ConnectorRequests(false));
     }
 
     @Test
@@ -51,7 +51,7 @@ public class CapturePaymentServiceTest {
     public void testCapturePayment() {
         Account account = new Account(ACCOUNT_ID, TokenPaymentType.CARD);
 
-        Response capturePaymentResponse = capturePaymentService.capture(account, CHARGE_ID);
+        Response capturePaymentResponse = capturePaymentService.captureAsync(account, CHARGE_ID).toCompletableFuture().join();
 
         assertThat(capturePaymentResponse.getStatus(), is(204));
     }
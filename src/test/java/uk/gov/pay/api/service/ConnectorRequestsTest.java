@@ -0,0 +1,102 @@
+package uk.gov.pay.api.service;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.api.utils.ResponseFuture;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.AsyncInvoker;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.api.filter.LoggingFilter.HEADER_REQUEST_ID;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConnectorRequestsTest {
+
+    @Mock
+    private Invocation.Builder request;
+
+    @Mock
+    private AsyncInvoker asyncInvoker;
+
+    @Mock
+    private Response response;
+
+    private final Entity<String> entity = Entity.json("{}");
+
+    @Test
+    public void shouldSendRequestOnTheCallingThread_whenAsyncRequestsAreDisabled() throws Exception {
+        when(request.get()).thenReturn(response);
+
+        CompletableFuture<Response> result = new ConnectorRequests(false).get(request).toCompletableFuture();
+
+        assertThat(result.isDone(), is(true));
+        assertThat(result.get(), is(response));
+        verify(request, never()).async();
+    }
+
+    @Test
+    public void shouldCompleteExceptionally_whenRequestOnTheCallingThreadFails() throws Exception {
+        when(request.post(entity)).thenThrow(new ProcessingException("connection refused"));
+
+        assertFailsWith(new ConnectorRequests(false).post(request, entity).toCompletableFuture(), ProcessingException.class);
+    }
+
+    @Test
+    public void shouldCompleteWhenConnectorResponds_whenAsyncRequestsAreEnabled() throws Exception {
+        ResponseFuture[] callback = new ResponseFuture[1];
+        when(request.header(eq(HEADER_REQUEST_ID), anyString())).thenReturn(request);
+        when(request.async()).thenReturn(asyncInvoker);
+        doAnswer(invocation -> {
+            callback[0] = invocation.getArgument(1);
+            return callback[0];
+        }).when(asyncInvoker).post(eq(entity), any(ResponseFuture.class));
+
+        CompletableFuture<Response> result = new ConnectorRequests(true).post(request, entity).toCompletableFuture();
+        assertThat(result.isDone(), is(false));
+
+        callback[0].completed(response);
+
+        assertThat(result.get(), is(response));
+        verify(request, never()).post(entity);
+    }
+
+    @Test
+    public void shouldCompleteExceptionally_whenAsyncRequestFails() throws Exception {
+        when(request.header(eq(HEADER_REQUEST_ID), anyString())).thenReturn(request);
+        when(request.async()).thenReturn(asyncInvoker);
+        doAnswer(invocation -> {
+            ResponseFuture callback = invocation.getArgument(0);
+            callback.failed(new ProcessingException("read timed out"));
+            return callback;
+        }).when(asyncInvoker).get(any(ResponseFuture.class));
+
+        assertFailsWith(new ConnectorRequests(true).get(request).toCompletableFuture(), ProcessingException.class);
+    }
+
+    private static void assertFailsWith(CompletableFuture<Response> result, Class<? extends Throwable> expected) throws Exception {
+        try {
+            result.get();
+            fail("Expected " + expected.getSimpleName());
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(expected));
+        }
+    }
+}
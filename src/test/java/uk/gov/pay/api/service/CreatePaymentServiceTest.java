@@ -53,7 +53,7 @@ public class CreatePaymentServiceTest {
         Client client = RestClientFactory.buildClient(new RestClientConfig(false));
 
         createPaymentService = new CreatePaymentService(client,
-                publicApiUriGenerator, connectorUriGenerator);
+                publicApiUriGenerator, connectorUriGenerator, new ConnectorRequests(false));
     }
 
     @Test
@@ -68,7 +68,7 @@ public class CreatePaymentServiceTest {
                 .description("a description")
                 .build());
 
-        PaymentWithAllLinks paymentResponse = createPaymentService.create(account, requestPayload);
+        PaymentWithAllLinks paymentResponse = createPaymentService.createAsync(account, requestPayload).toCompletableFuture().join();
         CardPayment payment = (CardPayment) paymentResponse.getPayment();
 
         assertThat(payment.getPaymentId(), is("ch_ab2341da231434l"));
@@ -101,7 +101,7 @@ public class CreatePaymentServiceTest {
                 .delayedCapture(Boolean.TRUE)
                 .build());
 
-        PaymentWithAllLinks paymentResponse = createPaymentService.create(account, requestPayload);
+        PaymentWithAllLinks paymentResponse = createPaymentService.createAsync(account, requestPayload).toCompletableFuture().join();
         CardPayment payment = (CardPayment) paymentResponse.getPayment();
 
         assertThat(payment.getPaymentId(), is("ch_ab2341da231434l"));
@@ -134,7 +134,7 @@ public class CreatePaymentServiceTest {
                 .language("cy")
                 .build());
 
-        PaymentWithAllLinks paymentResponse = createPaymentService.create(account, requestPayload);
+        PaymentWithAllLinks paymentResponse = createPaymentService.createAsync(account, requestPayload).toCompletableFuture().join();
         CardPayment payment = (CardPayment) paymentResponse.getPayment();
 
         assertThat(payment.getPaymentId(), is("ch_ab2341da231434l"));
@@ -1,6 +1,7 @@
 package uk.gov.pay.api.service;
 
 import au.com.dius.pact.consumer.PactVerification;
+import com.codahale.metrics.MetricRegistry;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -16,6 +17,7 @@ import uk.gov.pay.api.model.PaymentState;
 import uk.gov.pay.api.model.TokenPaymentType;
 import uk.gov.pay.api.model.links.PaymentWithAllLinks;
 import uk.gov.pay.api.model.links.PostLink;
+import uk.gov.pay.api.utils.RequestCollapser;
 import uk.gov.pay.commons.model.SupportedLanguage;
 import uk.gov.pay.commons.testing.pact.consumers.PactProviderRule;
 import uk.gov.pay.commons.testing.pact.consumers.Pacts;
@@ -53,7 +55,8 @@ public class GetPaymentServiceTest {
         PublicApiUriGenerator publicApiUriGenerator = new PublicApiUriGenerator(mockConfiguration);
         ConnectorUriGenerator connectorUriGenerator = new ConnectorUriGenerator(mockConfiguration);
         Client client = RestClientFactory.buildClient(new RestClientConfig(false));
-        getPaymentService = new GetPaymentService(client, publicApiUriGenerator, connectorUriGenerator);
+        getPaymentService = new GetPaymentService(client, publicApiUriGenerator, connectorUriGenerator, new ConnectorRequests(false),
+                new RequestCollapser<>("request-collapsing.get-payment", new MetricRegistry()));
     }
 
     @Test
@@ -62,7 +65,7 @@ public class GetPaymentServiceTest {
     public void testGetPayment() {
         Account account = new Account(ACCOUNT_ID, TokenPaymentType.CARD);
 
-        PaymentWithAllLinks paymentResponse = getPaymentService.getPayment(account, CHARGE_ID);
+        PaymentWithAllLinks paymentResponse = getPaymentService.getPaymentAsync(account, CHARGE_ID).toCompletableFuture().join();
         CardPayment payment = (CardPayment) paymentResponse.getPayment();
 
         assertThat(payment.getAmount(), is(100L));
@@ -98,7 +101,7 @@ public class GetPaymentServiceTest {
     public void testGetPaymentWithCorporateCardSurcharge() {
         Account account = new Account(ACCOUNT_ID, TokenPaymentType.CARD);
 
-        PaymentWithAllLinks paymentResponse = getPaymentService.getPayment(account, CHARGE_ID);
+        PaymentWithAllLinks paymentResponse = getPaymentService.getPaymentAsync(account, CHARGE_ID).toCompletableFuture().join();
         CardPayment payment = (CardPayment) paymentResponse.getPayment();
         assertThat(payment.getCorporateCardSurcharge().get(), is(250L));
         assertThat(payment.getTotalAmount().get(), is(2250L));
@@ -110,7 +113,7 @@ public class GetPaymentServiceTest {
     @Pacts(pacts = {"publicapi-connector-get-payment-with-awaiting-capture-request-state"})
     public void testGetPaymentWithChargeInAwaitingCaptureRequest() {
         Account account = new Account(ACCOUNT_ID, TokenPaymentType.CARD);
-        PaymentWithAllLinks paymentResponse = getPaymentService.getPayment(account, CHARGE_ID);
+        PaymentWithAllLinks paymentResponse = getPaymentService.getPaymentAsync(account, CHARGE_ID).toCompletableFuture().join();
         assertThat(paymentResponse.getLinks().getCapture().getHref(), 
                 containsString("v1/payments/" + CHARGE_ID + "/capture"));
         assertThat(paymentResponse.getLinks().getCapture().getMethod(), is("POST"));
@@ -0,0 +1,163 @@
+package uk.gov.pay.api.utils;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+import uk.gov.pay.api.exception.CollapsedRequestException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+
+public class RequestCollapserTest {
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final RequestCollapser<String, Object> requestCollapser = new RequestCollapser<>("collapsing", metricRegistry);
+
+    @Test
+    public void shouldShareOneCall_betweenIdenticalRequestsInFlightAtTheSameTime() throws Exception {
+        CompletableFuture<Object> upstream = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+        Object charge = new Object();
+
+        CompletionStage<Object> first = requestCollapser.callAsync("account-1 /charges/abc", () -> {
+            calls.incrementAndGet();
+            return upstream;
+        });
+        CompletionStage<Object> second = requestCollapser.callAsync("account-1 /charges/abc", () -> {
+            calls.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        upstream.complete(charge);
+
+        assertThat(calls.get(), is(1));
+        assertThat(first.toCompletableFuture().get(), sameInstance(charge));
+        assertThat(second.toCompletableFuture().get(), sameInstance(charge));
+        assertThat(metricRegistry.meter("collapsing.requests").getCount(), is(2L));
+        assertThat(metricRegistry.meter("collapsing.collapsed").getCount(), is(1L));
+        assertThat(metricRegistry.getGauges().containsKey("collapsing.ratio"), is(true));
+    }
+
+    @Test
+    public void shouldNotCollapseDifferentKeys_orRequestsMadeAfterTheCallCompleted() {
+        AtomicInteger calls = new AtomicInteger();
+
+        requestCollapser.callAsync("account-1 /charges/abc", () -> CompletableFuture.completedFuture(calls.incrementAndGet()));
+        requestCollapser.callAsync("account-1 /charges/abc", () -> CompletableFuture.completedFuture(calls.incrementAndGet()));
+        requestCollapser.callAsync("account-2 /charges/abc", () -> CompletableFuture.completedFuture(calls.incrementAndGet()));
+
+        assertThat(calls.get(), is(3));
+        assertThat(metricRegistry.meter("collapsing.collapsed").getCount(), is(0L));
+    }
+
+    @Test
+    public void shouldGiveEveryWaiterAnExceptionOfItsOwn_causedByTheCallsException_whenTheCallFails() throws Exception {
+        IllegalStateException failure = new IllegalStateException("connector returned 500");
+        CompletableFuture<Object> upstream = new CompletableFuture<>();
+
+        CompletionStage<Object> leader = requestCollapser.callAsync("key", () -> upstream);
+        CompletionStage<Object> firstWaiter = requestCollapser.callAsync("key", () -> {
+            throw new AssertionError("should have waited for the call in flight");
+        });
+        CompletionStage<Object> secondWaiter = requestCollapser.callAsync("key", () -> {
+            throw new AssertionError("should have waited for the call in flight");
+        });
+        upstream.completeExceptionally(failure);
+
+        Throwable firstWaiterFailure = failureOf(firstWaiter.toCompletableFuture());
+        Throwable secondWaiterFailure = failureOf(secondWaiter.toCompletableFuture());
+        assertThat(firstWaiterFailure, instanceOf(CollapsedRequestException.class));
+        assertThat(firstWaiterFailure.getCause(), sameInstance(failure));
+        assertThat(secondWaiterFailure, instanceOf(CollapsedRequestException.class));
+        assertThat(secondWaiterFailure.getCause(), sameInstance(failure));
+        assertThat(secondWaiterFailure, not(sameInstance(firstWaiterFailure)));
+        assertThat(failureOf(leader.toCompletableFuture()), sameInstance(failure));
+    }
+
+    @Test
+    public void shouldEndTheCall_whenItThrowsACheckedExceptionSneakily() throws Exception {
+        Exception failure = new Exception("checked");
+        CountDownLatch callStarted = new CountDownLatch(1);
+        CountDownLatch failCall = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        Future<CompletionStage<Object>> leader = executor.submit(() -> requestCollapser.callAsync("key", () -> {
+            callStarted.countDown();
+            await(failCall);
+            return sneakyThrow(failure);
+        }));
+        callStarted.await(1, TimeUnit.SECONDS);
+        CompletionStage<Object> waiter = requestCollapser.callAsync("key", () -> {
+            throw new AssertionError("should have waited for the call in flight");
+        });
+        failCall.countDown();
+
+        assertThat(failureOf(leader.get(1, TimeUnit.SECONDS).toCompletableFuture()), sameInstance(failure));
+        assertThat(failureOf(waiter.toCompletableFuture()).getCause(), sameInstance(failure));
+        Object charge = new Object();
+        assertThat(requestCollapser.callAsync("key", () -> CompletableFuture.completedFuture(charge))
+                .toCompletableFuture().get(1, TimeUnit.SECONDS), sameInstance(charge));
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldEndTheCallAndRethrow_whenItThrowsAnError() throws Exception {
+        StackOverflowError failure = new StackOverflowError();
+        CountDownLatch callStarted = new CountDownLatch(1);
+        CountDownLatch failCall = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        Future<CompletionStage<Object>> leader = executor.submit(() -> requestCollapser.callAsync("key", () -> {
+            callStarted.countDown();
+            await(failCall);
+            throw failure;
+        }));
+        callStarted.await(1, TimeUnit.SECONDS);
+        CompletionStage<Object> waiter = requestCollapser.callAsync("key", () -> {
+            throw new AssertionError("should have waited for the call in flight");
+        });
+        failCall.countDown();
+
+        assertThat(failureOf(leader), sameInstance(failure));
+        assertThat(failureOf(waiter.toCompletableFuture()).getCause(), sameInstance(failure));
+        Object charge = new Object();
+        assertThat(requestCollapser.callAsync("key", () -> CompletableFuture.completedFuture(charge))
+                .toCompletableFuture().get(1, TimeUnit.SECONDS), sameInstance(charge));
+        executor.shutdown();
+    }
+
+    private static Throwable failureOf(Future<?> future) throws Exception {
+        try {
+            future.get(1, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail("Expected the call to fail");
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T, E extends Throwable> T sneakyThrow(Throwable t) throws E {
+        throw (E) t;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}